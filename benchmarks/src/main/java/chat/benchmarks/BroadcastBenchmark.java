@@ -0,0 +1,85 @@
+// BroadcastBenchmark.java - Time from sending a chat message until every node in a loopback cluster delivered it
+package chat.benchmarks;
+
+import chat.ChatListener;
+import chat.ChatMessage;
+import chat.DeliveryMode;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Node 1 sends one message per operation and the operation ends when every
+ * node, itself included, has handed it to its client listeners - the latency
+ * a user sees. Only one message is in flight at a time. Select the cluster
+ * with -p nodes=..., -p transport=rmi|nio and -p order=total|causal|sequencer|gossip.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BroadcastBenchmark {
+    private static final long DELIVERY_TIMEOUT_SECONDS = 10;
+
+    @Param({"3", "5", "9"})
+    public int nodes;
+
+    @Param({"rmi", "nio"})
+    public String transport;
+
+    @Param({"total", "causal", "sequencer", "gossip"})
+    public String order;
+
+    private LoopbackCluster cluster;
+    private volatile CountDownLatch pending = new CountDownLatch(0);
+    private long sent;
+
+    @Setup
+    public void setUp() throws Exception {
+        cluster = new LoopbackCluster(nodes, transport, DeliveryMode.valueOf(order.toUpperCase()));
+        for (int i = 0; i < nodes; i++) {
+            cluster.get(i).subscribe(new DeliveryListener());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        cluster.close();
+    }
+
+    @Benchmark
+    public void broadcastToAll() throws Exception {
+        CountDownLatch delivered = new CountDownLatch(nodes);
+        pending = delivered;
+        cluster.get(0).sendChatMessage("benchmark message " + ++sent);
+        if (!delivered.await(DELIVERY_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Message " + sent + " reached only " + (nodes - delivered.getCount())
+                + " of " + nodes + " nodes within " + DELIVERY_TIMEOUT_SECONDS + "s");
+        }
+    }
+
+    // Registered in-process, so pushes are plain method calls from the node's pusher thread
+    private class DeliveryListener implements ChatListener {
+        @Override
+        public void onMessages(long firstSequence, List<ChatMessage> messages) {
+            CountDownLatch delivered = pending;
+            for (int i = 0; i < messages.size(); i++) {
+                delivered.countDown();
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+// ElectionBenchmark.java - Election convergence time and message count with an in-memory network
+package chat.benchmarks;
+
+import java.math.BigInteger;
+
+/*
+ * Runs an ElectionCluster of N nodes once per size and compares the message
+ * count with the recursive election this replaced. ElectionConvergenceBenchmark
+ * measures the same scenario under JMH.
+ * Usage: java -cp benchmarks.jar chat.benchmarks.ElectionBenchmark [nodeCounts...] (default 5 20 50)
+ */
+public class ElectionBenchmark {
+    private static final long NETWORK_DELAY_MS = 1;
+    private static final long OK_TIMEOUT_MS = 100;
+    private static final long COORDINATOR_TIMEOUT_MS = 400;
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = args.length == 0 ? new int[] {5, 20, 50} : new int[args.length];
+        for (int i = 0; i < args.length; i++) {
+            sizes[i] = Integer.parseInt(args[i]);
+        }
+
+        System.out.println("nodes  convergence(ms)  messages  elections  suppressed  legacy recursive calls");
+        for (int n : sizes) {
+            run(n);
+        }
+    }
+
+    private static void run(int n) throws InterruptedException {
+        ElectionCluster cluster = new ElectionCluster(n, NETWORK_DELAY_MS, OK_TIMEOUT_MS, COORDINATOR_TIMEOUT_MS);
+        long elapsedMillis = cluster.converge(30_000);
+        // Let stragglers finish so the message count is complete
+        Thread.sleep(COORDINATOR_TIMEOUT_MS);
+
+        long messages = cluster.getMessagesSent();
+        long elections = cluster.getElectionsStarted();
+        long suppressed = cluster.getElectionsSuppressed();
+        cluster.close();
+
+        // The old startElection recursed into every higher node: node i made 2^(n-i) - 1 calls
+        BigInteger legacy = BigInteger.ZERO;
+        for (int i = 1; i < n; i++) {
+            legacy = legacy.add(BigInteger.TWO.pow(n - i).subtract(BigInteger.ONE));
+        }
+
+        System.out.printf("%5d  %15s  %8d  %9d  %10d  %s%n", n, elapsedMillis >= 0 ? String.valueOf(elapsedMillis) : "timeout",
+            messages, elections, suppressed, legacy.bitLength() > 40 ? "~2^" + (legacy.bitLength() - 1) : legacy);
+    }
+}
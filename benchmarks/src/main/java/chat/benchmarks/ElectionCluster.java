@@ -0,0 +1,102 @@
+// ElectionCluster.java - Bully election state machines on an in-memory network whose coordinator has crashed
+package chat.benchmarks;
+
+import chat.BullyElection;
+import chat.ElectionMessage;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Nodes 1..n-1 all know each other and still believe node n (crashed) is the
+ * coordinator. converge() has every survivor detect the crash at the same
+ * moment - the election storm the failure detector causes in practice - and
+ * waits until all of them have accepted node n-1.
+ */
+public class ElectionCluster {
+    private final ScheduledExecutorService network = Executors.newScheduledThreadPool(4);
+    private final Map<Integer, BullyElection> nodes = new ConcurrentHashMap<>();
+    private final CountDownLatch converged;
+
+    public ElectionCluster(int n, long networkDelayMillis, long okTimeoutMillis, long coordinatorTimeoutMillis) {
+        List<Integer> ids = new ArrayList<>();
+        for (int id = 1; id <= n; id++) {
+            ids.add(id);
+        }
+        int crashed = n;
+        int expected = n - 1;
+        converged = new CountDownLatch(n - 1);
+
+        for (int id = 1; id < n; id++) {
+            BullyElection.Messenger messenger = new BullyElection.Messenger() {
+                @Override
+                public Collection<Integer> peers() {
+                    return ids;
+                }
+
+                @Override
+                public void send(int peerId, ElectionMessage message) {
+                    if (peerId == crashed) {
+                        return;
+                    }
+                    network.schedule(() -> nodes.get(peerId).handle(message), networkDelayMillis, TimeUnit.MILLISECONDS);
+                }
+            };
+            BullyElection.Listener listener = (coordinator, epoch, millis) -> {
+                if (coordinator == expected) {
+                    converged.countDown();
+                }
+            };
+            BullyElection election = new BullyElection(id, messenger, listener, network,
+                okTimeoutMillis, coordinatorTimeoutMillis);
+            election.observeCoordinator(crashed, 1);
+            nodes.put(id, election);
+        }
+    }
+
+    // Milliseconds until every survivor accepted the new coordinator, or -1 on timeout
+    public long converge(long timeoutMillis) throws InterruptedException {
+        long start = System.nanoTime();
+        for (BullyElection election : nodes.values()) {
+            election.startElection();
+        }
+        if (!converged.await(timeoutMillis, TimeUnit.MILLISECONDS)) {
+            return -1;
+        }
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    public long getMessagesSent() {
+        long messages = 0;
+        for (BullyElection election : nodes.values()) {
+            messages += election.getMessagesSent();
+        }
+        return messages;
+    }
+
+    public long getElectionsStarted() {
+        long elections = 0;
+        for (BullyElection election : nodes.values()) {
+            elections += election.getElectionsStarted();
+        }
+        return elections;
+    }
+
+    public long getElectionsSuppressed() {
+        long suppressed = 0;
+        for (BullyElection election : nodes.values()) {
+            suppressed += election.getElectionsSuppressed();
+        }
+        return suppressed;
+    }
+
+    public void close() {
+        network.shutdownNow();
+    }
+}
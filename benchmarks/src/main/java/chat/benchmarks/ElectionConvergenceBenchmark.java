@@ -0,0 +1,62 @@
+// ElectionConvergenceBenchmark.java - Time for all survivors to agree on a coordinator after it crashes
+package chat.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Each invocation is one election storm on a fresh ElectionCluster. The
+ * timeouts are the node's own (500ms for an OK, 2s for the COORDINATOR
+ * message), so the result is what a real cluster sees minus failure
+ * detection; networkDelay is the one-way delay of every election message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ElectionConvergenceBenchmark {
+    private static final long OK_TIMEOUT_MS = 500;
+    private static final long COORDINATOR_TIMEOUT_MS = 2000;
+    private static final long CONVERGENCE_TIMEOUT_MS = 30_000;
+
+    @Param({"5", "20", "50"})
+    public int nodes;
+
+    @Param({"1"})
+    public long networkDelay;
+
+    private ElectionCluster cluster;
+
+    @Setup(Level.Invocation)
+    public void setUp() {
+        cluster = new ElectionCluster(nodes, networkDelay, OK_TIMEOUT_MS, COORDINATOR_TIMEOUT_MS);
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() {
+        cluster.close();
+    }
+
+    @Benchmark
+    public long converge() throws InterruptedException {
+        long millis = cluster.converge(CONVERGENCE_TIMEOUT_MS);
+        if (millis < 0) {
+            throw new IllegalStateException("Election among " + (nodes - 1) + " nodes did not converge");
+        }
+        return millis;
+    }
+}
@@ -0,0 +1,65 @@
+// LamportClockBenchmark.java - Contention on the shared Lamport clock
+package chat.benchmarks;
+
+import chat.LamportClock;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * One clock shared by all benchmark threads, as in a node where RMI threads
+ * update it on receive while the console thread ticks it on send. Incoming
+ * timestamps come from a per-thread counter that falls behind the clock, the
+ * common case of a peer that is not ahead of us. Run with -t 1 for the
+ * uncontended cost.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LamportClockBenchmark {
+    private final LamportClock clock = new LamportClock();
+
+    @State(Scope.Thread)
+    public static class Peer {
+        long timestamp;
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public long tick() {
+        return clock.tick();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public long update(Peer peer) {
+        return clock.update(++peer.timestamp);
+    }
+
+    @Benchmark
+    @Group("sendAndReceive")
+    @GroupThreads(1)
+    public long send() {
+        return clock.tick();
+    }
+
+    @Benchmark
+    @Group("sendAndReceive")
+    @GroupThreads(3)
+    public long receive(Peer peer) {
+        return clock.update(++peer.timestamp);
+    }
+}
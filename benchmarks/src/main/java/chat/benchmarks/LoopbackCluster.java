@@ -0,0 +1,114 @@
+// LoopbackCluster.java - Chat nodes started inside one JVM that talk to each other over loopback
+package chat.benchmarks;
+
+import chat.ChatNodeImpl;
+import chat.DeliveryMode;
+import chat.EventLog;
+import chat.NioTransport;
+import chat.NodeConfig;
+import chat.NodeStats;
+import chat.RmiTransport;
+import chat.Transport;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/*
+ * Nodes 1..n are started one after another exactly as separate processes
+ * would be: each binds its transport (RMI registry on 1099, NIO on 20000+id)
+ * and joins through whoever is already registered. The constructor returns
+ * once every node sees all n members and node n is the coordinator, so a
+ * benchmark never measures cluster formation. Message logs go to a temporary
+ * directory that close() removes.
+ */
+public class LoopbackCluster implements AutoCloseable {
+    private static final long FORMATION_TIMEOUT_MS = 30_000;
+    private static final long POLL_INTERVAL_MS = 20;
+
+    private final List<ChatNodeImpl> nodes = new ArrayList<>();
+    private final Path logDirectory;
+
+    public LoopbackCluster(int size, String transport, DeliveryMode deliveryMode) throws Exception {
+        // Keep the benchmark's console quiet; warnings still show up
+        EventLog.configure(EventLog.Level.WARN, false);
+        logDirectory = Files.createTempDirectory("chat-bench");
+        try {
+            for (int id = 1; id <= size; id++) {
+                NodeConfig config = new NodeConfig()
+                    .setTransport(createTransport(transport))
+                    .setDeliveryMode(deliveryMode)
+                    .setLogDirectory(logDirectory.toString())
+                    .setStatsIntervalSeconds(0)
+                    .setInteractive(false);
+                ChatNodeImpl node = new ChatNodeImpl(id, "node-" + id, config);
+                nodes.add(node);
+                node.start();
+            }
+            awaitFormation();
+        } catch (Exception e) {
+            close();
+            throw e;
+        }
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    // Node with ID index + 1
+    public ChatNodeImpl get(int index) {
+        return nodes.get(index);
+    }
+
+    @Override
+    public void close() {
+        for (ChatNodeImpl node : nodes) {
+            node.shutdown();
+        }
+        nodes.clear();
+        try (Stream<Path> files = Files.walk(logDirectory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            System.err.println("Could not remove " + logDirectory + ": " + e.getMessage());
+        }
+    }
+
+    private void awaitFormation() throws Exception {
+        long deadline = System.currentTimeMillis() + FORMATION_TIMEOUT_MS;
+        while (!isFormed()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("Cluster of " + nodes.size() + " nodes did not form within "
+                    + FORMATION_TIMEOUT_MS + "ms");
+            }
+            Thread.sleep(POLL_INTERVAL_MS);
+        }
+    }
+
+    private boolean isFormed() throws Exception {
+        for (ChatNodeImpl node : nodes) {
+            if (node.getRegisteredNodes().size() != nodes.size()) {
+                return false;
+            }
+            NodeStats stats = node.getNodeStats();
+            if (stats.isCoordinator() != (stats.getNodeID() == nodes.size())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Transport createTransport(String name) {
+        switch (name) {
+            case "rmi":
+                return new RmiTransport();
+            case "nio":
+                return new NioTransport();
+            default:
+                throw new IllegalArgumentException("Unknown transport: " + name);
+        }
+    }
+}
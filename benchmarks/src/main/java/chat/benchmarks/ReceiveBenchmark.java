@@ -0,0 +1,111 @@
+// ReceiveBenchmark.java - receiveMessage throughput of one node under concurrent callers
+package chat.benchmarks;
+
+import chat.ChatMessage;
+import chat.ChatNodeImpl;
+import chat.EventLog;
+import chat.NodeConfig;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Calls the node directly, without a transport in between, so the result is
+ * the cost of the receive path itself: clock update, hold-back queue,
+ * delivery, message log append and listener publish. The node has no peers,
+ * so every message is stable and delivered on arrival. Use -t to change the
+ * number of concurrent callers.
+ *
+ * Only one caller delivers at a time and a call that finds delivery busy
+ * returns at once, so unchecked callers queue messages far faster than they
+ * are delivered. Callers therefore wait while more than `window` messages are
+ * accepted but undelivered, as a peer's send window would make them, and the
+ * score is the rate the node sustains.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class ReceiveBenchmark {
+    @Param({"64"})
+    public int batchSize;
+
+    @Param({"1024"})
+    public int window;
+
+    private Path logDirectory;
+    private ChatNodeImpl node;
+    private List<ChatMessage> batch;
+    private final AtomicLong accepted = new AtomicLong();
+
+    @State(Scope.Thread)
+    public static class Caller {
+        long timestamp;
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        EventLog.configure(EventLog.Level.WARN, false);
+        logDirectory = Files.createTempDirectory("chat-bench");
+        node = new ChatNodeImpl(1, "bench", new NodeConfig()
+            .setLogDirectory(logDirectory.toString())
+            .setStatsIntervalSeconds(0)
+            .setInteractive(false));
+        batch = new ArrayList<>();
+        for (int i = 0; i < batchSize; i++) {
+            batch.add(new ChatMessage("burst line " + i + " pasted from a log file", "peer", 2, i + 1));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        node.shutdown();
+        try (Stream<Path> files = Files.walk(logDirectory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void receiveMessage(Caller caller) throws RemoteException {
+        long ticket = accepted.incrementAndGet();
+        node.receiveMessage("peer", "hello, this is a typical chat line", ++caller.timestamp);
+        awaitWindow(ticket);
+    }
+
+    // Operations are batches; multiply by batchSize for messages per second
+    @Benchmark
+    public void receiveMessages() throws RemoteException {
+        long ticket = accepted.addAndGet(batchSize);
+        node.receiveMessages(batch);
+        awaitWindow(ticket);
+    }
+
+    private void awaitWindow(long ticket) {
+        while (ticket - node.getDeliveredCount() > window) {
+            Thread.yield();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+// SerializationBenchmark.java - Cost of encoding and decoding a ChatMessage for each transport
+package chat.benchmarks;
+
+import chat.ChatMessage;
+import chat.WireCodec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Java serialization is what RMI does for every argument; WireCodec is the
+ * NIO transport's frame format. The decode benchmarks start from bytes
+ * produced once in setup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+    @Param({"32", "512"})
+    public int contentLength;
+
+    private List<ChatMessage> messages;
+    private byte[] serialized;
+    private ByteBuffer frame;
+
+    @Setup
+    public void setUp() throws IOException {
+        StringBuilder content = new StringBuilder();
+        while (content.length() < contentLength) {
+            content.append("hello, this is a typical chat line ");
+        }
+        ChatMessage message = new ChatMessage(content.substring(0, contentLength), "Alice", 1, 42);
+        message.setSenderSequence(ChatMessage.firstSenderSequence(System.currentTimeMillis()));
+        message.setOriginTimeMillis(System.currentTimeMillis());
+        messages = List.of(message);
+        serialized = javaSerialize();
+        frame = ByteBuffer.allocate(WireCodec.messagesFrameSize(messages));
+    }
+
+    @Benchmark
+    public byte[] javaSerialize() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(messages.get(0));
+        }
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public Object javaDeserialize() throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serialized))) {
+            return in.readObject();
+        }
+    }
+
+    @Benchmark
+    public ByteBuffer wireEncode() {
+        frame.clear();
+        WireCodec.writeMessages(frame, 1, messages);
+        return frame;
+    }
+
+    @Benchmark
+    public List<ChatMessage> wireDecode() {
+        frame.clear();
+        WireCodec.writeMessages(frame, 1, messages);
+        frame.position(WireCodec.LENGTH_FIELD + WireCodec.HEADER_SIZE);
+        return WireCodec.readMessages(frame);
+    }
+}
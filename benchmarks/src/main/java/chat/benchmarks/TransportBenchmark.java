@@ -0,0 +1,186 @@
+// TransportBenchmark.java - Loopback throughput and latency comparison of the RMI and NIO transports
+package chat.benchmarks;
+
+import chat.BufferPool;
+import chat.ChatListener;
+import chat.ChatMessage;
+import chat.ChatNode;
+import chat.ElectionMessage;
+import chat.GossipDigest;
+import chat.HistoryChunk;
+import chat.MemberEntry;
+import chat.NioPeer;
+import chat.NioServer;
+import chat.NioTransport;
+import chat.NodeStats;
+import java.net.InetSocketAddress;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TransportBenchmark {
+    private static final int WARMUP_CALLS = 5_000;
+    private static final int LATENCY_CALLS = 20_000;
+    private static final int THROUGHPUT_BATCHES = 5_000;
+    private static final int BATCH_SIZE = 64;
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : NioTransport.BASE_PORT;
+
+        SinkNode sink = new SinkNode();
+        ChatNode rmiStub = (ChatNode) UnicastRemoteObject.exportObject(sink, 0);
+
+        BufferPool pool = new BufferPool(64 * 1024, 16);
+        NioServer server = new NioServer(sink, port, pool);
+        server.start();
+        NioPeer nioPeer = new NioPeer(rmiStub, new InetSocketAddress("localhost", server.getPort()), pool);
+
+        System.out.println("transport  p50(us)  p99(us)  max(us)  throughput(msg/s)");
+        run("rmi", rmiStub);
+        run("nio", nioPeer);
+
+        nioPeer.close();
+        server.close();
+        UnicastRemoteObject.unexportObject(sink, true);
+        System.out.println("messages received by sink: " + sink.received.get());
+    }
+
+    private static void run(String name, ChatNode target) throws RemoteException {
+        List<ChatMessage> single = List.of(new ChatMessage("hello, this is a typical chat line", "Alice", 1, 42));
+        List<ChatMessage> batch = new ArrayList<>();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(new ChatMessage("burst line " + i + " pasted from a log file", "Alice", 1, 100 + i));
+        }
+
+        for (int i = 0; i < WARMUP_CALLS; i++) {
+            target.receiveMessages(single);
+        }
+
+        long[] latencies = new long[LATENCY_CALLS];
+        for (int i = 0; i < LATENCY_CALLS; i++) {
+            long start = System.nanoTime();
+            target.receiveMessages(single);
+            latencies[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(latencies);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < THROUGHPUT_BATCHES; i++) {
+            target.receiveMessages(batch);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        double throughput = THROUGHPUT_BATCHES * (double) BATCH_SIZE / seconds;
+
+        System.out.printf("%-9s  %7d  %7d  %7d  %17.0f%n", name,
+            latencies[LATENCY_CALLS / 2] / 1_000,
+            latencies[LATENCY_CALLS * 99 / 100] / 1_000,
+            latencies[LATENCY_CALLS - 1] / 1_000,
+            throughput);
+    }
+
+    private static class SinkNode implements ChatNode {
+        final AtomicLong received = new AtomicLong();
+
+        @Override
+        public void receiveMessage(String sender, String message, long timestamp) {
+            received.incrementAndGet();
+        }
+
+        @Override
+        public void receiveMessages(List<ChatMessage> messages) {
+            received.addAndGet(messages.size());
+        }
+
+        @Override
+        public void pingNode() {
+        }
+
+        @Override
+        public void electCoordinator(int newCoordinatorId) {
+        }
+
+        @Override
+        public void startElection() {
+        }
+
+        @Override
+        public void handleElectionMessage(ElectionMessage message) {
+        }
+
+        @Override
+        public void registerNode(int nodeId, String nodeName) {
+        }
+
+        @Override
+        public Map<Integer, String> getRegisteredNodes() {
+            return new HashMap<>();
+        }
+
+        @Override
+        public InetSocketAddress getDataAddress() {
+            return null;
+        }
+
+        @Override
+        public List<ChatMessage> fetchSequenced(String room, long fromSequence, int maxMessages) {
+            return new ArrayList<>();
+        }
+
+        @Override
+        public List<ChatMessage> fetchCausal(String room, long fromSequence, long toSequence) {
+            return new ArrayList<>();
+        }
+
+        @Override
+        public List<ChatMessage> pullMessages(String room, Map<Integer, Long> digest, int maxMessages) {
+            return new ArrayList<>();
+        }
+
+        @Override
+        public HistoryChunk fetchHistory(String room, long fromTimestamp, long cursor, int maxBytes) {
+            return new HistoryChunk(new byte[0], 0, cursor, true, 0);
+        }
+
+        @Override
+        public List<ChatMessage> fetchHistoryBefore(long beforeSequence, int maxMessages) {
+            return new ArrayList<>();
+        }
+
+        @Override
+        public long subscribe(ChatListener listener) {
+            return 0;
+        }
+
+        @Override
+        public void unsubscribe(ChatListener listener) {
+        }
+
+        @Override
+        public void sendChatMessage(String message) {
+        }
+
+        @Override
+        public NodeStats getNodeStats() {
+            return new NodeStats(0, "sink", false, 0, 0);
+        }
+
+        @Override
+        public GossipDigest gossip(int fromId, List<MemberEntry> updates, long sinceVersion) {
+            return new GossipDigest(new ArrayList<>(), 0);
+        }
+
+        @Override
+        public int getNodeId() {
+            return 0;
+        }
+
+        @Override
+        public void start() {
+        }
+    }
+}
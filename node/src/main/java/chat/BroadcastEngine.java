@@ -0,0 +1,166 @@
+// BroadcastEngine.java - Concurrent fan-out of chat messages to all peers
+package chat;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+public class BroadcastEngine {
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    private final Map<Integer, PeerSender> senders = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+    private final int queueCapacity;
+    private final OverflowPolicy overflowPolicy;
+    private final PeerSender.RetryListener retryListener;
+
+    // Broadcast latency is the time until the slowest peer has answered
+    private final LongAdder broadcasts = new LongAdder();
+    private final LongAdder totalLatencyNanos = new LongAdder();
+    private final AtomicLong lastLatencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    public BroadcastEngine() {
+        this(DEFAULT_QUEUE_CAPACITY, OverflowPolicy.DEGRADE, null);
+    }
+
+    public BroadcastEngine(int queueCapacity, OverflowPolicy overflowPolicy, PeerSender.RetryListener retryListener) {
+        this.queueCapacity = queueCapacity;
+        this.overflowPolicy = overflowPolicy;
+        this.retryListener = retryListener;
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "peer-sender");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // The user's own messages: under BLOCK the caller waits for room in each peer's window
+    public CompletableFuture<BroadcastResult> broadcast(Map<Integer, ChatNode> targets, ChatMessage message) {
+        return broadcast(targets, message, true);
+    }
+
+    // Relays and forwards from internal threads: a full window rejects at once instead of blocking
+    public CompletableFuture<BroadcastResult> relay(Map<Integer, ChatNode> targets, ChatMessage message) {
+        return broadcast(targets, message, false);
+    }
+
+    // Clock beacons and similar: outside the data window, and a newer one replaces one not yet sent
+    public void sendControl(Map<Integer, ChatNode> targets, ChatMessage message) {
+        for (Map.Entry<Integer, ChatNode> target : targets.entrySet()) {
+            senderFor(target.getKey(), target.getValue()).sendControl(message);
+        }
+    }
+
+    private CompletableFuture<BroadcastResult> broadcast(Map<Integer, ChatNode> targets, ChatMessage message, boolean mayBlock) {
+        long start = System.nanoTime();
+        Map<Integer, CompletableFuture<Void>> sends = new ConcurrentHashMap<>();
+        Set<Integer> deferred = ConcurrentHashMap.newKeySet();
+        for (Map.Entry<Integer, ChatNode> target : targets.entrySet()) {
+            PeerSender sender = senderFor(target.getKey(), target.getValue());
+            CompletableFuture<Void> send = sender.enqueue(message, mayBlock);
+            // A degraded peer still gets the message, but the broadcast does not wait for it
+            if (sender.isDegraded() && !send.isDone()) {
+                deferred.add(target.getKey());
+            } else {
+                sends.put(target.getKey(), send);
+            }
+        }
+
+        return CompletableFuture.allOf(sends.values().toArray(new CompletableFuture<?>[0]))
+            .handle((ignored, error) -> {
+                long latency = System.nanoTime() - start;
+                recordLatency(latency);
+
+                Map<Integer, Throwable> failures = new ConcurrentHashMap<>();
+                Set<Integer> delivered = ConcurrentHashMap.newKeySet();
+                for (Map.Entry<Integer, CompletableFuture<Void>> send : sends.entrySet()) {
+                    try {
+                        send.getValue().join();
+                        delivered.add(send.getKey());
+                    } catch (Exception e) {
+                        failures.put(send.getKey(), e.getCause() != null ? e.getCause() : e);
+                    }
+                }
+                return new BroadcastResult(delivered, failures, deferred, latency);
+            });
+    }
+
+    public void removePeer(int peerId) {
+        PeerSender sender = senders.remove(peerId);
+        if (sender != null) {
+            sender.stop();
+        }
+    }
+
+    public void shutdown() {
+        for (PeerSender sender : senders.values()) {
+            sender.stop();
+        }
+        senders.clear();
+        executor.shutdownNow();
+    }
+
+    public int getQueueDepth(int peerId) {
+        PeerSender sender = senders.get(peerId);
+        return sender == null ? 0 : sender.getQueueDepth();
+    }
+
+    public Map<Integer, PeerSender> getSenders() {
+        return Collections.unmodifiableMap(senders);
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public double getAverageBatchSize() {
+        long batches = 0;
+        long messages = 0;
+        for (PeerSender sender : senders.values()) {
+            batches += sender.getBatchesSent();
+            messages += sender.getMessagesSent();
+        }
+        return batches == 0 ? 0.0 : (double) messages / batches;
+    }
+
+    public long getBroadcastCount() {
+        return broadcasts.sum();
+    }
+
+    public long getLastLatencyNanos() {
+        return lastLatencyNanos.get();
+    }
+
+    public long getMaxLatencyNanos() {
+        return maxLatencyNanos.get();
+    }
+
+    public long getAverageLatencyNanos() {
+        long count = broadcasts.sum();
+        return count == 0 ? 0 : totalLatencyNanos.sum() / count;
+    }
+
+    private PeerSender senderFor(int peerId, ChatNode stub) {
+        PeerSender sender = senders.computeIfAbsent(peerId, id -> {
+            PeerSender created = new PeerSender(id, stub, queueCapacity, overflowPolicy, retryListener);
+            created.start(executor);
+            return created;
+        });
+        sender.updateStub(stub);
+        return sender;
+    }
+
+    private void recordLatency(long latency) {
+        broadcasts.increment();
+        totalLatencyNanos.add(latency);
+        lastLatencyNanos.set(latency);
+        maxLatencyNanos.accumulateAndGet(latency, Math::max);
+    }
+}
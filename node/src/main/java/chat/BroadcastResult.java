@@ -0,0 +1,47 @@
+// BroadcastResult.java - Per-peer outcome of a single broadcast
+package chat;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+public class BroadcastResult {
+    private final Set<Integer> delivered;
+    private final Map<Integer, Throwable> failures;
+    private final Set<Integer> deferred;
+    private final long latencyNanos;
+
+    public BroadcastResult(Set<Integer> delivered, Map<Integer, Throwable> failures, Set<Integer> deferred, long latencyNanos) {
+        this.delivered = Collections.unmodifiableSet(delivered);
+        this.failures = Collections.unmodifiableMap(failures);
+        this.deferred = Collections.unmodifiableSet(deferred);
+        this.latencyNanos = latencyNanos;
+    }
+
+    public Set<Integer> getDelivered() {
+        return delivered;
+    }
+
+    public Map<Integer, Throwable> getFailures() {
+        return failures;
+    }
+
+    // Degraded peers the message was queued for but not waited on
+    public Set<Integer> getDeferred() {
+        return deferred;
+    }
+
+    public boolean isFullyDelivered() {
+        return failures.isEmpty() && deferred.isEmpty();
+    }
+
+    public long getLatencyNanos() {
+        return latencyNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "delivered=" + delivered + " failed=" + failures.keySet() + " deferred=" + deferred
+            + " latency=" + (latencyNanos / 1_000) + "us";
+    }
+}
@@ -0,0 +1,217 @@
+// BullyElection.java - Asynchronous, epoch-based bully election state machine
+package chat;
+
+import java.util.Collection;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * States: IDLE -> ELECTING (ELECTION sent to higher nodes, waiting for OK)
+ *   -> AWAITING_COORDINATOR (got an OK, waiting for the winner) -> IDLE.
+ * Every election runs in an epoch; messages from older epochs are ignored and
+ * a node that is already electing does not start another round, so concurrent
+ * failure detections collapse into one election. Handlers never block: sends
+ * go through the Messenger, which is expected to be asynchronous.
+ */
+public class BullyElection {
+    public interface Messenger {
+        Collection<Integer> peers();
+        void send(int peerId, ElectionMessage message);
+    }
+
+    public interface Listener {
+        void onCoordinatorElected(int coordinatorId, long epoch, long convergenceMillis);
+    }
+
+    public enum State { IDLE, ELECTING, AWAITING_COORDINATOR }
+
+    private final int selfId;
+    private final Messenger messenger;
+    private final Listener listener;
+    private final ScheduledExecutorService scheduler;
+    private final long okTimeoutMillis;
+    private final long coordinatorTimeoutMillis;
+
+    private State state = State.IDLE;
+    private long epoch;
+    private int coordinatorId;
+    private long electionStartedAt;
+
+    private final LongAdder electionsStarted = new LongAdder();
+    private final LongAdder electionsSuppressed = new LongAdder();
+    private final LongAdder messagesSent = new LongAdder();
+    private volatile long lastConvergenceMillis = -1;
+
+    public BullyElection(int selfId, Messenger messenger, Listener listener, ScheduledExecutorService scheduler,
+                         long okTimeoutMillis, long coordinatorTimeoutMillis) {
+        this.selfId = selfId;
+        this.messenger = messenger;
+        this.listener = listener;
+        this.scheduler = scheduler;
+        this.okTimeoutMillis = okTimeoutMillis;
+        this.coordinatorTimeoutMillis = coordinatorTimeoutMillis;
+        this.coordinatorId = selfId;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized long getEpoch() {
+        return epoch;
+    }
+
+    public synchronized int getCoordinatorId() {
+        return coordinatorId;
+    }
+
+    public long getElectionsStarted() {
+        return electionsStarted.sum();
+    }
+
+    public long getElectionsSuppressed() {
+        return electionsSuppressed.sum();
+    }
+
+    public long getMessagesSent() {
+        return messagesSent.sum();
+    }
+
+    public long getLastConvergenceMillis() {
+        return lastConvergenceMillis;
+    }
+
+    // Local trigger (failure detector, console, GUI); ignored while an election is running
+    public synchronized void startElection() {
+        if (state != State.IDLE) {
+            electionsSuppressed.increment();
+            return;
+        }
+        beginElection(epoch + 1);
+    }
+
+    // Adopt an epoch learned elsewhere (e.g. from a peer at join time)
+    public synchronized void observeCoordinator(int coordinatorId, long epoch) {
+        if (epoch >= this.epoch && state == State.IDLE) {
+            this.epoch = epoch;
+            this.coordinatorId = coordinatorId;
+        }
+    }
+
+    public synchronized void handle(ElectionMessage message) {
+        long messageEpoch = message.getEpoch();
+        int sender = message.getSenderId();
+        switch (message.getType()) {
+            case ELECTION:
+                if (sender < selfId) {
+                    // Tell the lower node to stand down, then join in at its epoch
+                    send(sender, ElectionMessage.Type.OK, Math.max(epoch, messageEpoch));
+                    if (messageEpoch > epoch) {
+                        if (state == State.IDLE) {
+                            beginElection(messageEpoch);
+                        } else {
+                            epoch = messageEpoch;
+                            electionsSuppressed.increment();
+                        }
+                    } else if (state == State.IDLE && coordinatorId != selfId) {
+                        beginElection(epoch + 1);
+                    } else if (state == State.IDLE) {
+                        // We already lead; remind the lower node
+                        send(sender, ElectionMessage.Type.COORDINATOR, epoch);
+                    } else {
+                        electionsSuppressed.increment();
+                    }
+                }
+                break;
+            case OK:
+                if (state == State.ELECTING && messageEpoch >= epoch) {
+                    epoch = messageEpoch;
+                    state = State.AWAITING_COORDINATOR;
+                    long awaited = epoch;
+                    scheduler.schedule(() -> coordinatorTimeout(awaited), coordinatorTimeoutMillis, TimeUnit.MILLISECONDS);
+                }
+                break;
+            case COORDINATOR:
+                if (messageEpoch < epoch) {
+                    // A higher node that (re)joined behind our epoch: rerun so it wins at a current epoch
+                    if (sender > selfId && sender > coordinatorId && state == State.IDLE) {
+                        beginElection(epoch + 1);
+                    }
+                    break;
+                }
+                if (sender < selfId) {
+                    // A lower node claimed leadership without hearing from us
+                    if (state == State.IDLE) {
+                        beginElection(messageEpoch + 1);
+                    }
+                    break;
+                }
+                epoch = messageEpoch;
+                elected(sender);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void beginElection(long newEpoch) {
+        epoch = newEpoch;
+        state = State.ELECTING;
+        electionStartedAt = System.currentTimeMillis();
+        electionsStarted.increment();
+
+        boolean higherExists = false;
+        for (int peer : messenger.peers()) {
+            if (peer > selfId) {
+                higherExists = true;
+                send(peer, ElectionMessage.Type.ELECTION, epoch);
+            }
+        }
+        if (!higherExists) {
+            becomeCoordinator();
+            return;
+        }
+        long started = epoch;
+        scheduler.schedule(() -> okTimeout(started), okTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void okTimeout(long electionEpoch) {
+        if (state == State.ELECTING && epoch == electionEpoch) {
+            becomeCoordinator();
+        }
+    }
+
+    private synchronized void coordinatorTimeout(long electionEpoch) {
+        if (state == State.AWAITING_COORDINATOR && epoch == electionEpoch) {
+            // The node that answered OK died before announcing itself
+            state = State.IDLE;
+            beginElection(epoch + 1);
+        }
+    }
+
+    private void becomeCoordinator() {
+        for (int peer : messenger.peers()) {
+            if (peer != selfId) {
+                send(peer, ElectionMessage.Type.COORDINATOR, epoch);
+            }
+        }
+        elected(selfId);
+    }
+
+    private void elected(int newCoordinatorId) {
+        boolean wasElecting = state != State.IDLE;
+        state = State.IDLE;
+        coordinatorId = newCoordinatorId;
+        long convergence = wasElecting ? System.currentTimeMillis() - electionStartedAt : 0;
+        if (wasElecting) {
+            lastConvergenceMillis = convergence;
+        }
+        listener.onCoordinatorElected(newCoordinatorId, epoch, convergence);
+    }
+
+    private void send(int peer, ElectionMessage.Type type, long messageEpoch) {
+        messagesSent.increment();
+        messenger.send(peer, new ElectionMessage(type, selfId, messageEpoch));
+    }
+}
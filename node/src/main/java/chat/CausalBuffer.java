@@ -0,0 +1,516 @@
+// CausalBuffer.java - Holds messages until everything they causally depend on is delivered
+package chat;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/*
+ * The local vector counts delivered messages per sender. A message from j
+ * with vector V is deliverable when V[j] == local[j] + 1 and V[k] <= local[k]
+ * for every other k. Messages are first decoded in per-sender sequence order
+ * (deltas need the sender's previous vector), then delivered as their
+ * dependencies are met. At most maxBuffered messages are held; beyond that the
+ * oldest is forced out (decoded) or dropped (undecodable).
+ *
+ * A sender's own entry starts at its incarnation's sequence base, so a
+ * restarted sender is recognised by a higher base and its entry is reset.
+ *
+ * A delta that cannot be decoded (a late join, or lost messages) is repaired
+ * by asking the sender to resend the missing range with full vectors; the
+ * sender keeps its last RESEND_WINDOW messages for that. Only when the sender
+ * cannot answer does a FULL keyframe at or past the expected position start a
+ * new base: the messages before it are skipped, counted and logged.
+ *
+ * Messages are delivered with their full vector, so a logged message carries
+ * what a node catching up from the log needs to seed its own vector.
+ */
+public class CausalBuffer {
+    // Every KEYFRAME_INTERVAL-th message carries a full vector so gaps can be recovered without the sender
+    public static final int KEYFRAME_INTERVAL = 32;
+    public static final int RESEND_WINDOW = 1024;
+
+    public interface Repair {
+        // Asks the sender for its messages fromSequence..toSequence; answered by onRepair or onRepairFailed
+        void request(int senderId, long fromSequence, long toSequence);
+    }
+
+    private final int selfId;
+    private final int maxBuffered;
+    private final Repair repair;
+    private final Consumer<ChatMessage> deliver;
+
+    private final VectorClock local = new VectorClock();
+    private VectorClock lastSent;
+    private final ArrayDeque<Sent> sent = new ArrayDeque<>();
+
+    private final Map<Integer, TreeMap<Long, Held>> undecoded = new HashMap<>();
+    private final Map<Integer, ArrayDeque<Held>> decoded = new HashMap<>();
+    private final Map<Integer, VectorClock> lastDecoded = new HashMap<>();
+    // Senders with a repair request outstanding, and how far their last repair reached
+    private final Map<Integer, Long> repairing = new HashMap<>();
+    private final Map<Integer, Long> repairedTo = new HashMap<>();
+    private int depth;
+    private Held arriving;
+
+    private int maxDepth;
+    private long delivered;
+    private long heldCount;
+    private long totalHoldNanos;
+    private long maxHoldNanos;
+    private long forced;
+    private long dropped;
+    private long repairs;
+    private long repaired;
+    private long skipped;
+
+    public CausalBuffer(int selfId, int maxBuffered, Consumer<ChatMessage> deliver) {
+        this(selfId, 0, maxBuffered, null, deliver);
+    }
+
+    // sequenceBase is where this node's own entry starts, normally ChatMessage.firstSenderSequence(incarnation)
+    public CausalBuffer(int selfId, long sequenceBase, int maxBuffered, Consumer<ChatMessage> deliver) {
+        this(selfId, sequenceBase, maxBuffered, null, deliver);
+    }
+
+    // Without a repair, gaps are only recovered at the sender's next keyframe
+    public CausalBuffer(int selfId, long sequenceBase, int maxBuffered, Repair repair, Consumer<ChatMessage> deliver) {
+        this.selfId = selfId;
+        this.maxBuffered = maxBuffered;
+        this.repair = repair;
+        this.deliver = deliver;
+        if (sequenceBase > 0) {
+            local.set(selfId, sequenceBase);
+        }
+    }
+
+    // Stamps an outgoing message; our own messages are delivered locally at send time
+    public synchronized void stampOutgoing(ChatMessage message) {
+        long sequence = local.increment(selfId);
+        boolean keyframe = lastSent == null || sequence % KEYFRAME_INTERVAL == 1;
+        message.setCausalClock(local.encode(selfId, keyframe ? null : lastSent));
+        lastSent = new VectorClock(local);
+        sent.addLast(new Sent(message, lastSent));
+        if (sent.size() > RESEND_WINDOW) {
+            sent.removeFirst();
+        }
+    }
+
+    // Copies of our messages fromSequence..toSequence that are still kept, each with a full vector
+    public synchronized List<ChatMessage> resend(long fromSequence, long toSequence) {
+        List<ChatMessage> messages = new ArrayList<>();
+        for (Sent s : sent) {
+            long sequence = s.vector.get(selfId);
+            if (sequence >= fromSequence && sequence <= toSequence) {
+                messages.add(withClock(s.message, s.vector.encode(selfId, null)));
+            }
+        }
+        return messages;
+    }
+
+    // The sender's answer to a repair request: its messages with full vectors, as far back as it still had them
+    public synchronized void onRepair(int sender, List<ChatMessage> messages) {
+        Long requested = repairing.remove(sender);
+        if (requested == null) {
+            return; // the sender was reset or forgotten meanwhile
+        }
+        repairedTo.merge(sender, requested, Math::max);
+        VectorClock previous = lastDecoded.get(sender);
+        long decodedUpTo = previous != null ? previous.get(sender) : local.get(sender);
+        TreeMap<Long, Held> pending = undecoded.computeIfAbsent(sender, id -> new TreeMap<>());
+        for (ChatMessage message : messages) {
+            byte[] encoded = message.getCausalClock();
+            long sequence = VectorClock.sequenceOf(encoded);
+            if (sequence <= decodedUpTo || !VectorClock.isFull(encoded)) {
+                continue;
+            }
+            Held held = pending.get(sequence);
+            if (held == null) {
+                pending.put(sequence, new Held(message, System.nanoTime()));
+                depth++;
+                repaired++;
+            } else {
+                held.message = message;
+            }
+        }
+        maxDepth = Math.max(maxDepth, depth);
+        decodeReady(sender);
+        deliverReady();
+        while (depth > maxBuffered) {
+            evictOldest();
+            deliverReady();
+        }
+    }
+
+    // The sender could not be asked; its gap is skipped at its next keyframe instead
+    public synchronized void onRepairFailed(int sender) {
+        onRepair(sender, List.of());
+    }
+
+    public synchronized void receive(ChatMessage message) {
+        int sender = message.getSenderID();
+        byte[] encoded = message.getCausalClock();
+        if (encoded == null) {
+            deliver.accept(message);
+            return;
+        }
+        if (sender == selfId) {
+            // The same object may still be on its way to peers, so a full vector goes on a copy
+            VectorClock vector = VectorClock.isFull(encoded) ? null : sentVector(VectorClock.sequenceOf(encoded));
+            deliver.accept(vector == null ? message : withClock(message, vector.encode(selfId, null)));
+            return;
+        }
+        long sequence = VectorClock.sequenceOf(encoded);
+        long base = ChatMessage.sequenceBase(sequence);
+        if (base > ChatMessage.sequenceBase(local.get(sender))) {
+            // The sender restarted: nothing of its old incarnation is coming any more
+            resetSender(sender, base);
+        }
+        VectorClock previous = lastDecoded.get(sender);
+        if (sequence <= local.get(sender) || (previous != null && sequence <= previous.get(sender))) {
+            return; // already delivered or decoded
+        }
+        arriving = new Held(message, System.nanoTime());
+        if (undecoded.computeIfAbsent(sender, id -> new TreeMap<>()).putIfAbsent(sequence, arriving) != null) {
+            arriving = null;
+            return; // a resent copy is already held
+        }
+        depth++;
+        maxDepth = Math.max(maxDepth, depth);
+
+        decodeReady(sender);
+        deliverReady();
+        while (depth > maxBuffered) {
+            evictOldest();
+            deliverReady();
+        }
+        arriving = null;
+    }
+
+    // Counts a message that arrived another way (history catch-up) as delivered, along with everything it depended on
+    public synchronized void markDelivered(ChatMessage message) {
+        byte[] encoded = message.getCausalClock();
+        if (encoded == null) {
+            return;
+        }
+        int sender = message.getSenderID();
+        long sequence = VectorClock.sequenceOf(encoded);
+        boolean full = VectorClock.isFull(encoded);
+        VectorClock vector = full ? VectorClock.decode(encoded, null) : new VectorClock();
+        vector.set(sender, Math.max(vector.get(sender), sequence));
+        List<Integer> advanced = new ArrayList<>();
+        for (Map.Entry<Integer, Long> entry : vector.asMap().entrySet()) {
+            int id = entry.getKey();
+            long position = entry.getValue();
+            if (id == selfId || position <= local.get(id)) {
+                continue;
+            }
+            if (ChatMessage.sequenceBase(position) > ChatMessage.sequenceBase(local.get(id))) {
+                resetSender(id, position);
+            } else {
+                local.set(id, position);
+            }
+            advanced.add(id);
+        }
+        // The sender's next delta is encoded against this vector, so it decodes without a repair
+        VectorClock previous = lastDecoded.get(sender);
+        if (full && sender != selfId && sequence == local.get(sender)
+            && (previous == null || previous.get(sender) < sequence)) {
+            lastDecoded.put(sender, vector);
+        }
+        for (int id : advanced) {
+            pruneDelivered(id);
+        }
+        deliverReady();
+    }
+
+    // The sender was declared dead: drop what it left behind and stop waiting for its missing messages
+    public synchronized void forgetSender(int sender) {
+        long waitedFor = local.get(sender);
+        for (Map.Entry<Integer, ArrayDeque<Held>> queue : decoded.entrySet()) {
+            if (queue.getKey() != sender) {
+                for (Held held : queue.getValue()) {
+                    waitedFor = Math.max(waitedFor, held.vector.get(sender));
+                }
+            }
+        }
+        resetSender(sender, waitedFor);
+        deliverReady();
+    }
+
+    public synchronized VectorClock snapshot() {
+        return new VectorClock(local);
+    }
+
+    // Messages held until their causal predecessors arrive
+    public synchronized int size() {
+        return depth;
+    }
+
+    public synchronized String getMetrics() {
+        long avgHoldMicros = heldCount == 0 ? 0 : totalHoldNanos / heldCount / 1_000;
+        return "depth=" + depth + " maxDepth=" + maxDepth + " delivered=" + delivered
+            + " held=" + heldCount + " avgHold=" + avgHoldMicros + "us maxHold=" + maxHoldNanos / 1_000 + "us"
+            + " forced=" + forced + " dropped=" + dropped + " repairs=" + repairs + " repaired=" + repaired
+            + " skipped=" + skipped;
+    }
+
+    // Messages recovered from their sender after a gap
+    public synchronized long getRepairedCount() {
+        return repaired;
+    }
+
+    // Sender positions given up on: neither the message nor its vector could be recovered
+    public synchronized long getSkippedCount() {
+        return skipped;
+    }
+
+    private void decodeReady(int sender) {
+        TreeMap<Long, Held> pending = undecoded.get(sender);
+        while (pending != null && !pending.isEmpty()) {
+            VectorClock previous = lastDecoded.get(sender);
+            long expected = (previous != null ? previous.get(sender) : local.get(sender)) + 1;
+            Map.Entry<Long, Held> first = pending.firstEntry();
+            if (first.getKey() < expected) {
+                pending.pollFirstEntry();
+                depth--;
+                dropped++;
+                continue;
+            }
+            boolean gap = first.getKey() > expected;
+            boolean rebase = previous == null || gap;
+            if (gap || (rebase && !VectorClock.isFull(first.getValue().message.getCausalClock()))) {
+                // Without a base only a full vector can be decoded, and a gap is lost messages: ask the sender first
+                if (repairing.containsKey(sender)) {
+                    return;
+                }
+                if (repair != null && repairedTo.getOrDefault(sender, Long.MIN_VALUE) < first.getKey()) {
+                    repairing.put(sender, first.getKey());
+                    repairs++;
+                    repair.request(sender, Math.max(expected, first.getKey() - RESEND_WINDOW + 1), first.getKey());
+                    return;
+                }
+                Map.Entry<Long, Held> keyframe = firstKeyframe(pending);
+                if (keyframe == null) {
+                    return;
+                }
+                while (pending.firstKey() < keyframe.getKey()) {
+                    pending.pollFirstEntry();
+                    depth--;
+                    dropped++;
+                }
+                first = keyframe;
+                if (first.getKey() > expected) {
+                    skip(sender, first.getKey() - expected);
+                }
+            }
+            if (rebase) {
+                previous = null;
+            }
+            pending.pollFirstEntry();
+            Held held = first.getValue();
+            held.vector = VectorClock.decode(held.message.getCausalClock(), previous);
+            held.rebase = rebase;
+            lastDecoded.put(sender, held.vector);
+            decoded.computeIfAbsent(sender, id -> new ArrayDeque<>()).add(held);
+        }
+    }
+
+    private static Map.Entry<Long, Held> firstKeyframe(TreeMap<Long, Held> pending) {
+        for (Map.Entry<Long, Held> entry : pending.entrySet()) {
+            if (VectorClock.isFull(entry.getValue().message.getCausalClock())) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private VectorClock sentVector(long sequence) {
+        Iterator<Sent> newest = sent.descendingIterator();
+        while (newest.hasNext()) {
+            Sent s = newest.next();
+            if (s.vector.get(selfId) == sequence) {
+                return s.vector;
+            }
+        }
+        return null;
+    }
+
+    private void skip(int sender, long count) {
+        skipped += count;
+        EventLog.warn("causal", "Skipped {} messages from node {} that could not be recovered", count, sender);
+    }
+
+    private void resetSender(int sender, long position) {
+        TreeMap<Long, Held> pending = undecoded.remove(sender);
+        ArrayDeque<Held> ready = decoded.remove(sender);
+        int removed = (pending == null ? 0 : pending.size()) + (ready == null ? 0 : ready.size());
+        depth -= removed;
+        dropped += removed;
+        lastDecoded.remove(sender);
+        repairing.remove(sender);
+        repairedTo.remove(sender);
+        local.set(sender, position);
+    }
+
+    private void deliverReady() {
+        boolean progress = true;
+        while (progress) {
+            progress = false;
+            for (Map.Entry<Integer, ArrayDeque<Held>> queue : decoded.entrySet()) {
+                Held head = queue.getValue().peek();
+                if (head != null && isDeliverable(queue.getKey(), head)) {
+                    queue.getValue().poll();
+                    deliverHeld(queue.getKey(), head);
+                    progress = true;
+                }
+            }
+        }
+    }
+
+    private boolean isDeliverable(int sender, Held held) {
+        VectorClock vector = held.vector;
+        // A keyframe that started a new base skips the sender's messages before it
+        long own = vector.get(sender);
+        if (held.rebase ? own <= local.get(sender) : own != local.get(sender) + 1) {
+            return false;
+        }
+        for (Map.Entry<Integer, Long> entry : vector.asMap().entrySet()) {
+            if (entry.getKey() != sender && entry.getValue() > local.get(entry.getKey())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void deliverHeld(int sender, Held held) {
+        local.set(sender, Math.max(local.get(sender), held.vector.get(sender)));
+        if (!VectorClock.isFull(held.message.getCausalClock())) {
+            held.message.setCausalClock(held.vector.encode(sender, null));
+        }
+        depth--;
+        delivered++;
+        // Only messages that had to wait for a dependency count as held
+        if (held != arriving) {
+            long holdNanos = System.nanoTime() - held.arrivalNanos;
+            heldCount++;
+            totalHoldNanos += holdNanos;
+            maxHoldNanos = Math.max(maxHoldNanos, holdNanos);
+        }
+        deliver.accept(held.message);
+    }
+
+    // Memory bound: force out the oldest decoded message, or drop the oldest undecodable one
+    private void evictOldest() {
+        Held oldest = null;
+        int oldestSender = 0;
+        boolean oldestDecoded = false;
+        for (Map.Entry<Integer, ArrayDeque<Held>> queue : decoded.entrySet()) {
+            Held head = queue.getValue().peek();
+            if (head != null && (oldest == null || head.arrivalNanos < oldest.arrivalNanos)) {
+                oldest = head;
+                oldestSender = queue.getKey();
+                oldestDecoded = true;
+            }
+        }
+        for (Map.Entry<Integer, TreeMap<Long, Held>> pending : undecoded.entrySet()) {
+            for (Held held : pending.getValue().values()) {
+                if (oldest == null || held.arrivalNanos < oldest.arrivalNanos) {
+                    oldest = held;
+                    oldestSender = pending.getKey();
+                    oldestDecoded = false;
+                }
+            }
+        }
+        if (oldest == null) {
+            return;
+        }
+        if (oldestDecoded) {
+            decoded.get(oldestSender).poll();
+            forced++;
+            // Skip the dependencies we gave up waiting for
+            for (Map.Entry<Integer, Long> entry : oldest.vector.asMap().entrySet()) {
+                if (entry.getKey() != oldestSender) {
+                    local.set(entry.getKey(), Math.max(local.get(entry.getKey()), entry.getValue()));
+                }
+            }
+            deliverHeld(oldestSender, oldest);
+            // Messages we skipped past can no longer be delivered in order
+            List<Integer> senders = new ArrayList<>(undecoded.keySet());
+            senders.addAll(decoded.keySet());
+            for (int sender : senders) {
+                pruneDelivered(sender);
+            }
+        } else {
+            Iterator<Held> it = undecoded.get(oldestSender).values().iterator();
+            while (it.hasNext()) {
+                if (it.next() == oldest) {
+                    it.remove();
+                    break;
+                }
+            }
+            depth--;
+            dropped++;
+        }
+    }
+
+    private void pruneDelivered(int sender) {
+        long skippedTo = local.get(sender);
+        VectorClock previous = lastDecoded.get(sender);
+        if (previous != null && previous.get(sender) < skippedTo) {
+            lastDecoded.remove(sender);
+        }
+        ArrayDeque<Held> ready = decoded.get(sender);
+        while (ready != null && !ready.isEmpty() && ready.peek().vector.get(sender) <= skippedTo) {
+            ready.poll();
+            depth--;
+            dropped++;
+        }
+        TreeMap<Long, Held> pending = undecoded.get(sender);
+        while (pending != null && !pending.isEmpty() && pending.firstKey() <= skippedTo) {
+            pending.pollFirstEntry();
+            depth--;
+            dropped++;
+        }
+        decodeReady(sender);
+    }
+
+    private static ChatMessage withClock(ChatMessage message, byte[] causalClock) {
+        ChatMessage copy = new ChatMessage(message.getText(), message.getSender(), message.getSenderID(),
+            message.getLogicalTimestamp());
+        copy.setSenderSequence(message.getSenderSequence());
+        copy.setOriginTimeMillis(message.getOriginTimeMillis());
+        copy.setRoom(message.getRoom());
+        copy.setRoomSequence(message.getRoomSequence());
+        copy.setGlobalSequence(message.getGlobalSequence());
+        copy.setCausalClock(causalClock);
+        return copy;
+    }
+
+    private static class Sent {
+        final ChatMessage message;
+        final VectorClock vector;
+
+        Sent(ChatMessage message, VectorClock vector) {
+            this.message = message;
+            this.vector = vector;
+        }
+    }
+
+    private static class Held {
+        ChatMessage message;
+        final long arrivalNanos;
+        VectorClock vector;
+        boolean rebase;
+
+        Held(ChatMessage message, long arrivalNanos) {
+            this.message = message;
+            this.arrivalNanos = arrivalNanos;
+        }
+    }
+}
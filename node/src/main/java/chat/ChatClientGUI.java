@@ -0,0 +1,362 @@
+package chat;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.*;
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class ChatClientGUI extends JFrame {
+    private static final long serialVersionUID = 1L;
+    // Pushed messages are shown at most once per frame (about 60 updates a second)
+    private static final long FRAME_NANOS = TimeUnit.MILLISECONDS.toNanos(16);
+    // Rows kept in memory unless a window size is given; scroll-back loads 200 rows at a time
+    public static final int DEFAULT_WINDOW_ROWS = 10_000;
+    private static final int HISTORY_PAGE = 200;
+
+    private JList<String> chatList;
+    private JScrollPane scrollPane;
+    private JScrollBar scrollBar;
+    private final MessageRingModel model;
+    private JTextField inputField;
+    private JButton sendButton, nodesButton, electionButton;
+    private ChatNode nodeStub;
+    private int nodeId;
+    private String nodeName;
+    private ChatListener listener;
+    private final ConcurrentLinkedQueue<Batch> incoming = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private volatile long lastFlushNanos;
+    private final ScheduledExecutorService frameScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "gui-frame");
+        t.setDaemon(true);
+        return t;
+    });
+    private final ExecutorService historyLoader = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "gui-history");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Scroll-back state, only touched on the EDT
+    private long liveNext = -1;
+    private boolean loading;
+    private boolean reachedStart;
+    // Newest rows were evicted to make room for older ones; live messages are not shown until the user returns
+    private boolean detached;
+    private boolean resuming;
+    private final List<Batch> heldWhileResuming = new ArrayList<>();
+
+    public ChatClientGUI(int nodeId, String nodeName, int windowRows) {
+        this.nodeId = nodeId;
+        this.nodeName = nodeName;
+        this.model = new MessageRingModel(windowRows);
+        setTitle("Distributed Chat - Node " + nodeId);
+        setSize(500, 400);
+        setDefaultCloseOperation(EXIT_ON_CLOSE);
+        initComponents();
+        connectToNode();
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                disconnect();
+            }
+        });
+        setVisible(true);
+    }
+
+    private void initComponents() {
+        chatList = new JList<>(model);
+        // Fixed cell sizes let the list lay out and paint only the visible rows; long lines are clipped
+        chatList.setFixedCellHeight(chatList.getFontMetrics(chatList.getFont()).getHeight() + 2);
+        chatList.setFixedCellWidth(1);
+        scrollPane = new JScrollPane(chatList, ScrollPaneConstants.VERTICAL_SCROLLBAR_ALWAYS,
+            ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER);
+        scrollBar = scrollPane.getVerticalScrollBar();
+        scrollBar.addAdjustmentListener(e -> onScroll());
+
+        inputField = new JTextField();
+        sendButton = new JButton("Send");
+        nodesButton = new JButton("Show Nodes");
+        electionButton = new JButton("Start Election");
+
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(inputField, BorderLayout.CENTER);
+        panel.add(sendButton, BorderLayout.EAST);
+
+        JPanel bottomPanel = new JPanel(new BorderLayout());
+        bottomPanel.add(panel, BorderLayout.CENTER);
+
+        JPanel controlPanel = new JPanel();
+        controlPanel.add(nodesButton);
+        controlPanel.add(electionButton);
+        bottomPanel.add(controlPanel, BorderLayout.SOUTH);
+
+        add(scrollPane, BorderLayout.CENTER);
+        add(bottomPanel, BorderLayout.SOUTH);
+
+        sendButton.addActionListener(e -> sendMessage());
+        inputField.addActionListener(e -> sendMessage());
+
+        nodesButton.addActionListener(e -> showNodes());
+        electionButton.addActionListener(e -> startElection());
+    }
+
+    private void connectToNode() {
+        try {
+            Registry registry = LocateRegistry.getRegistry("localhost", 1099);
+            nodeStub = (ChatNode) registry.lookup("ChatNode_" + nodeId);
+            // The node calls back with delivered messages; nothing runs while the chat is idle
+            listener = new PushListener();
+            liveNext = nodeStub.subscribe((ChatListener) UnicastRemoteObject.exportObject(listener, 0));
+            showStatus("[SYSTEM] Connected to node: " + nodeName);
+            loadOlder();
+        } catch (Exception e) {
+            JOptionPane.showMessageDialog(this, "Error connecting to node: " + e.getMessage());
+        }
+    }
+
+    private void sendMessage() {
+        String message = inputField.getText().trim();
+        if (message.isEmpty()) return;
+        try {
+            nodeStub.sendChatMessage(message);
+            inputField.setText("");
+        } catch (Exception e) {
+            showStatus("[ERROR] Failed to send message: " + e.getMessage());
+        }
+    }
+
+    private void showNodes() {
+        try {
+            Map<Integer, String> nodes = nodeStub.getRegisteredNodes();
+            showStatus("[SYSTEM] Registered nodes:");
+            for (Map.Entry<Integer, String> entry : nodes.entrySet()) {
+                showStatus("- Node " + entry.getKey() + " (" + entry.getValue() + ")");
+            }
+        } catch (Exception e) {
+            showStatus("[ERROR] Could not fetch nodes: " + e.getMessage());
+        }
+    }
+
+    private void startElection() {
+        try {
+            nodeStub.startElection();
+            showStatus("[SYSTEM] Election initiated.");
+        } catch (Exception e) {
+            showStatus("[ERROR] Failed to start election: " + e.getMessage());
+        }
+    }
+
+    private void disconnect() {
+        if (listener == null) {
+            return;
+        }
+        try {
+            nodeStub.unsubscribe(listener);
+        } catch (Exception e) {
+            // The node drops listeners it can no longer reach
+        }
+        try {
+            UnicastRemoteObject.unexportObject(listener, true);
+        } catch (Exception e) {
+        }
+    }
+
+    private void showStatus(String line) {
+        appendRows(List.of(line), List.of(-1L));
+    }
+
+    // Called on an RMI thread; a burst of batches within one frame becomes a single EDT update
+    private void enqueue(Batch batch) {
+        incoming.add(batch);
+        if (flushScheduled.compareAndSet(false, true)) {
+            long delay = lastFlushNanos + FRAME_NANOS - System.nanoTime();
+            if (delay <= 0) {
+                SwingUtilities.invokeLater(this::flushMessages);
+            } else {
+                frameScheduler.schedule(() -> SwingUtilities.invokeLater(this::flushMessages), delay, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private void flushMessages() {
+        flushScheduled.set(false);
+        lastFlushNanos = System.nanoTime();
+        List<String> lines = new ArrayList<>();
+        List<Long> sequences = new ArrayList<>();
+        Batch batch;
+        while ((batch = incoming.poll()) != null) {
+            liveNext = Math.max(liveNext, batch.firstSequence + batch.messages.size());
+            if (resuming) {
+                heldWhileResuming.add(batch);
+            } else if (!detached) {
+                batch.addTo(lines, sequences, Long.MIN_VALUE);
+            }
+        }
+        if (!lines.isEmpty()) {
+            appendRows(lines, sequences);
+        }
+    }
+
+    private void appendRows(List<String> lines, List<Long> sequences) {
+        boolean atBottom = isAtBottom();
+        int value = scrollBar.getValue();
+        int evicted = model.append(lines, sequences);
+        if (evicted > 0) {
+            reachedStart = false;
+        }
+        // Lay the list out now so the scroll bar range matches the new rows
+        scrollPane.validate();
+        if (atBottom) {
+            chatList.ensureIndexIsVisible(model.getSize() - 1);
+        } else if (evicted > 0) {
+            // Keep the rows the user is reading in place while the oldest ones fall off
+            scrollBar.setValue(Math.max(0, value - evicted * chatList.getFixedCellHeight()));
+        }
+    }
+
+    private boolean isAtBottom() {
+        return scrollBar.getValue() + scrollBar.getVisibleAmount() >= scrollBar.getMaximum() - chatList.getFixedCellHeight();
+    }
+
+    private void onScroll() {
+        if (loading || nodeStub == null) {
+            return;
+        }
+        if (scrollBar.getValue() == scrollBar.getMinimum() && !reachedStart
+                && scrollBar.getMaximum() > scrollBar.getVisibleAmount()) {
+            loadOlder();
+        } else if (detached && isAtBottom()) {
+            resumeLive();
+        }
+    }
+
+    // Fetches the page just above the oldest row from the node's message log
+    private void loadOlder() {
+        long oldest = model.getOldestSequence();
+        long before = oldest >= 0 ? oldest : liveNext;
+        if (before <= 0) {
+            reachedStart = true;
+            return;
+        }
+        loading = true;
+        historyLoader.execute(() -> {
+            List<ChatMessage> page = fetchPage(before);
+            SwingUtilities.invokeLater(() -> {
+                loading = false;
+                // Live rows may have pushed the oldest row out meanwhile; the next scroll asks again
+                if (page == null || model.getOldestSequence() != oldest) {
+                    return;
+                }
+                List<String> lines = new ArrayList<>();
+                List<Long> sequences = new ArrayList<>();
+                new Batch(before - page.size(), page).addTo(lines, sequences, Long.MIN_VALUE);
+                boolean atBottom = isAtBottom();
+                int value = scrollBar.getValue();
+                if (model.prepend(lines, sequences) > 0) {
+                    detached = true;
+                }
+                reachedStart = page.size() < HISTORY_PAGE;
+                scrollPane.validate();
+                if (atBottom && !detached) {
+                    chatList.ensureIndexIsVisible(model.getSize() - 1);
+                } else {
+                    scrollBar.setValue(value + lines.size() * chatList.getFixedCellHeight());
+                }
+            });
+        });
+    }
+
+    // Back at the bottom after scroll-back evicted the newest rows: reload the live tail
+    private void resumeLive() {
+        long before = liveNext;
+        loading = true;
+        resuming = true;
+        historyLoader.execute(() -> {
+            List<ChatMessage> page = fetchPage(before);
+            SwingUtilities.invokeLater(() -> {
+                loading = false;
+                resuming = false;
+                if (page == null) {
+                    heldWhileResuming.clear();
+                    return;
+                }
+                detached = false;
+                model.clear();
+                List<String> lines = new ArrayList<>();
+                List<Long> sequences = new ArrayList<>();
+                new Batch(before - page.size(), page).addTo(lines, sequences, Long.MIN_VALUE);
+                for (Batch held : heldWhileResuming) {
+                    held.addTo(lines, sequences, before);
+                }
+                heldWhileResuming.clear();
+                reachedStart = false;
+                appendRows(lines, sequences);
+                chatList.ensureIndexIsVisible(model.getSize() - 1);
+            });
+        });
+    }
+
+    private List<ChatMessage> fetchPage(long before) {
+        try {
+            return nodeStub.fetchHistoryBefore(before, HISTORY_PAGE);
+        } catch (Exception e) {
+            SwingUtilities.invokeLater(() -> showStatus("[ERROR] Failed to load history: " + e.getMessage()));
+            return null;
+        }
+    }
+
+    private static String format(ChatMessage message) {
+        return message.getSender() + ": " + message.getContent();
+    }
+
+    // Messages with consecutive log sequences starting at firstSequence
+    private static class Batch {
+        final long firstSequence;
+        final List<ChatMessage> messages;
+
+        Batch(long firstSequence, List<ChatMessage> messages) {
+            this.firstSequence = firstSequence;
+            this.messages = messages;
+        }
+
+        void addTo(List<String> lines, List<Long> sequences, long fromSequence) {
+            for (int i = 0; i < messages.size(); i++) {
+                if (firstSequence + i >= fromSequence) {
+                    lines.add(format(messages.get(i)));
+                    sequences.add(firstSequence + i);
+                }
+            }
+        }
+    }
+
+    private class PushListener implements ChatListener {
+        @Override
+        public void onMessages(long firstSequence, List<ChatMessage> messages) throws RemoteException {
+            enqueue(new Batch(firstSequence, messages));
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Usage: java -cp chat-node.jar chat.ChatClientGUI <nodeId> <nodeName> [windowRows]");
+            System.exit(0);
+        }
+        int id = Integer.parseInt(args[0]);
+        String name = args[1];
+        int windowRows = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_WINDOW_ROWS;
+        SwingUtilities.invokeLater(() -> new ChatClientGUI(id, name, windowRows));
+    }
+}
@@ -0,0 +1,11 @@
+// ChatListener.java - Remote callback through which a node pushes delivered messages to GUI clients
+package chat;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.util.List;
+
+public interface ChatListener extends Remote {
+    // Messages in delivery order; they hold consecutive log sequences starting at firstSequence
+    void onMessages(long firstSequence, List<ChatMessage> messages) throws RemoteException;
+}
@@ -0,0 +1,150 @@
+// ChatMessage.java - Class representing messages with logical timestamps
+package chat;
+
+import java.io.Serializable;
+
+public class ChatMessage implements Serializable, Comparable<ChatMessage> {
+    private static final long serialVersionUID = 8L;
+    // Sender sequence numbers start at incarnation << SEQUENCE_BASE_SHIFT, so a restart never reuses one
+    public static final int SEQUENCE_BASE_SHIFT = 20;
+    // Room of messages that do not name one, and of every message written before rooms existed
+    public static final String DEFAULT_ROOM = "general";
+    
+    private final MessageText content;
+    private final String sender;
+    private final int senderID;
+    private long logicalTimestamp;
+    private final boolean clockBeacon;
+    private byte[] causalClock;
+    private long senderSequence;
+    private long globalSequence;
+    private long roomSequence;
+    private long originTimeMillis;
+    private String room = DEFAULT_ROOM;
+    
+    public ChatMessage(String content, String sender, int senderID, long logicalTimestamp) {
+        this(MessageText.of(content), sender, senderID, logicalTimestamp, false);
+    }
+
+    public ChatMessage(MessageText content, String sender, int senderID, long logicalTimestamp) {
+        this(content, sender, senderID, logicalTimestamp, false);
+    }
+
+    private ChatMessage(MessageText content, String sender, int senderID, long logicalTimestamp, boolean clockBeacon) {
+        this.content = content;
+        this.sender = sender;
+        this.senderID = senderID;
+        this.logicalTimestamp = logicalTimestamp;
+        this.clockBeacon = clockBeacon;
+    }
+
+    // Carries only the sender's clock so receivers can advance its watermark;
+    // in sequencer mode a sequenced beacon fills a number lost with the old coordinator
+    public static ChatMessage clockBeacon(String sender, int senderID, long logicalTimestamp) {
+        return new ChatMessage(MessageText.EMPTY, sender, senderID, logicalTimestamp, true);
+    }
+    
+    // Builds the text on first use; code that only forwards or stores a message should use getText()
+    public String getContent() {
+        return content.get();
+    }
+
+    public MessageText getText() {
+        return content;
+    }
+    
+    public String getSender() {
+        return sender;
+    }
+    
+    public int getSenderID() {
+        return senderID;
+    }
+    
+    public long getLogicalTimestamp() {
+        return logicalTimestamp;
+    }
+    
+    public void setLogicalTimestamp(long timestamp) {
+        this.logicalTimestamp = timestamp;
+    }
+
+    public boolean isClockBeacon() {
+        return clockBeacon;
+    }
+
+    // Encoded vector clock, only set in causal delivery mode
+    public byte[] getCausalClock() {
+        return causalClock;
+    }
+
+    public void setCausalClock(byte[] causalClock) {
+        this.causalClock = causalClock;
+    }
+
+    // Per-sender sequence number used to discard retransmitted duplicates; 0 means unsequenced
+    public long getSenderSequence() {
+        return senderSequence;
+    }
+
+    public void setSenderSequence(long senderSequence) {
+        this.senderSequence = senderSequence;
+    }
+
+    // Position in the coordinator's global order, only set in sequencer mode; 0 means not yet sequenced
+    public long getGlobalSequence() {
+        return globalSequence;
+    }
+
+    public void setGlobalSequence(long globalSequence) {
+        this.globalSequence = globalSequence;
+    }
+
+    // The sender's own count of its messages in this room, only set in gossip mode; numbered like senderSequence
+    public long getRoomSequence() {
+        return roomSequence;
+    }
+
+    public void setRoomSequence(long roomSequence) {
+        this.roomSequence = roomSequence;
+    }
+
+    // Wall-clock send time at the original sender, used for delivery latency
+    public long getOriginTimeMillis() {
+        return originTimeMillis;
+    }
+
+    public void setOriginTimeMillis(long originTimeMillis) {
+        this.originTimeMillis = originTimeMillis;
+    }
+
+    // Room the message was posted to; only the room's subscribers and owner receive it
+    public String getRoom() {
+        return room;
+    }
+
+    public void setRoom(String room) {
+        this.room = room;
+    }
+
+    public static long firstSenderSequence(long incarnation) {
+        return incarnation << SEQUENCE_BASE_SHIFT;
+    }
+
+    // First sequence number of the incarnation that produced senderSequence
+    public static long sequenceBase(long senderSequence) {
+        return senderSequence >>> SEQUENCE_BASE_SHIFT << SEQUENCE_BASE_SHIFT;
+    }
+
+    @Override
+    public int compareTo(ChatMessage other) {
+        return LamportClock.compare(logicalTimestamp, senderID, other.logicalTimestamp, other.senderID);
+    }
+    
+    @Override
+    public String toString() {
+        String prefix = DEFAULT_ROOM.equals(room) ? "" : "#" + room + " ";
+        return "[" + logicalTimestamp + "] " + prefix + sender + ": " + content;
+    }
+}
+
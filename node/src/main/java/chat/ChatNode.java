@@ -0,0 +1,30 @@
+package chat;
+
+import java.net.InetSocketAddress;
+import java.rmi.RemoteException;
+import java.util.List;
+import java.util.Map;
+
+public interface ChatNode extends java.rmi.Remote {
+    void receiveMessage(String sender, String message, long timestamp) throws RemoteException;
+    void receiveMessages(List<ChatMessage> messages) throws RemoteException;
+    void pingNode() throws RemoteException;
+    void electCoordinator(int newCoordinatorId) throws RemoteException;
+    void startElection() throws RemoteException;
+    void handleElectionMessage(ElectionMessage message) throws RemoteException;
+    void registerNode(int nodeId, String nodeName) throws RemoteException;
+    Map<Integer, String> getRegisteredNodes() throws RemoteException;
+    GossipDigest gossip(int fromId, List<MemberEntry> updates, long sinceVersion) throws RemoteException;
+    List<ChatMessage> fetchSequenced(String room, long fromSequence, int maxMessages) throws RemoteException;
+    List<ChatMessage> fetchCausal(String room, long fromSequence, long toSequence) throws RemoteException;
+    List<ChatMessage> pullMessages(String room, Map<Integer, Long> digest, int maxMessages) throws RemoteException;
+    HistoryChunk fetchHistory(String room, long fromTimestamp, long cursor, int maxBytes) throws RemoteException;
+    List<ChatMessage> fetchHistoryBefore(long beforeSequence, int maxMessages) throws RemoteException;
+    long subscribe(ChatListener listener) throws RemoteException;
+    void unsubscribe(ChatListener listener) throws RemoteException;
+    void sendChatMessage(String message) throws RemoteException;
+    NodeStats getNodeStats() throws RemoteException;
+    int getNodeId() throws RemoteException;
+    InetSocketAddress getDataAddress() throws RemoteException;
+    void start() throws RemoteException;
+}
\ No newline at end of file
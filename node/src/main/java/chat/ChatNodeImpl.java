@@ -0,0 +1,1279 @@
+package chat;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.rmi.RemoteException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ChatNodeImpl implements ChatNode, HeartbeatMonitor.Listener, BullyElection.Listener {
+    // Longest a message waits for silent peers before it is delivered anyway
+    private static final long HOLD_BACK_TIMEOUT_MS = 500;
+    // Delay before answering received messages with a clock beacon, so beacons coalesce
+    private static final long BEACON_DELAY_MS = 20;
+    // Failure detection: heartbeat every 200ms, suspect at phi 8 (roughly 600ms of silence)
+    private static final long HEARTBEAT_INTERVAL_MS = 200;
+    private static final double PHI_THRESHOLD = 8.0;
+    private static final double MIN_HEARTBEAT_STD_DEV_MS = 50;
+    private static final double ACCEPTABLE_HEARTBEAT_PAUSE_MS = 150;
+    // Election: wait this long for an OK from a higher node, then for its COORDINATOR message
+    private static final long ELECTION_OK_TIMEOUT_MS = 500;
+    private static final long ELECTION_COORDINATOR_TIMEOUT_MS = 2000;
+    // Membership gossip: 3 random peers every 500ms; suspects die after 3s, tombstones kept 60s
+    private static final int GOSSIP_FANOUT = 3;
+    private static final long GOSSIP_INTERVAL_MS = 500;
+    private static final long SUSPECT_TIMEOUT_MS = 3000;
+    private static final long DEAD_RETENTION_MS = 60_000;
+    // Stub cache: refresh after 60s, back off failed lookups from 250ms up to 30s
+    private static final long STUB_STALE_AFTER_MS = 60_000;
+    private static final long STUB_REFRESH_INTERVAL_MS = 1000;
+    private static final long LOOKUP_INITIAL_BACKOFF_MS = 250;
+    private static final long LOOKUP_MAX_BACKOFF_MS = 30_000;
+    // Receivers remember the last 4096 sequence numbers per sender to discard retransmissions
+    private static final int DEDUP_WINDOW_SIZE = 4096;
+    // Sequencer mode: relay tree with 4 children per node, request gaps open for 100ms, resubmit after 2s
+    private static final int SEQUENCER_FANOUT = 4;
+    private static final long SEQUENCER_NACK_DELAY_MS = 100;
+    private static final long SEQUENCER_RESUBMIT_MS = 2000;
+    // Gossip dissemination: forward to at least 3 random peers (ln n + 1 in larger clusters), repair every second
+    private static final int DISSEMINATION_FANOUT = 3;
+    private static final long ANTI_ENTROPY_INTERVAL_MS = 1000;
+    // Message log: 16MB segments, keep 256MB or 7 days, fsync dirty pages every 50ms
+    private static final int LOG_SEGMENT_BYTES = 16 * 1024 * 1024;
+    private static final long LOG_RETENTION_BYTES = 256L * 1024 * 1024;
+    private static final long LOG_RETENTION_MS = TimeUnit.DAYS.toMillis(7);
+    private static final long LOG_FLUSH_INTERVAL_MS = 50;
+    private static final int HISTORY_DEFAULT_COUNT = 20;
+    // History catch-up: pull 256KB chunks one at a time; never serve more than 4MB per call
+    // Messages sent while our join spreads by gossip are pulled once more after this long
+    private static final long CATCH_UP_SETTLE_MS = 5 * GOSSIP_INTERVAL_MS;
+    private static final int HISTORY_CHUNK_BYTES = 256 * 1024;
+    private static final int MAX_HISTORY_CHUNK_BYTES = 4 * 1024 * 1024;
+    // Scroll-back pages for GUI clients are capped at 1000 messages
+    private static final int MAX_HISTORY_PAGE = 1000;
+    // Room ownership: each node takes 64 points on the consistent-hash ring
+    private static final int RING_VIRTUAL_NODES = 64;
+
+    private int nodeId;
+    private String nodeName;
+    private final LamportClock clock = new LamportClock();
+    private volatile int coordinatorId;
+    private Map<Integer, String> registeredNodes = new ConcurrentHashMap<>();
+    private final Transport transport;
+    private ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+    private final PhiAccrualFailureDetector failureDetector = new PhiAccrualFailureDetector(
+        PHI_THRESHOLD, MIN_HEARTBEAT_STD_DEV_MS, ACCEPTABLE_HEARTBEAT_PAUSE_MS, HEARTBEAT_INTERVAL_MS);
+    private final HeartbeatMonitor heartbeatMonitor;
+    private final BullyElection election;
+    private final MembershipList membership;
+    private final PeerConnectionManager connections;
+    private final GossipMembership gossipMembership;
+    private final ExecutorService electionExecutor = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "election-sender");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicLong messageCounter = new AtomicLong();
+    private final DeliveryMode deliveryMode;
+    private final int causalBufferLimit;
+    private final RoomIndex roomIndex;
+    private volatile String currentRoom;
+    // Each room is ordered on its own, so one slow room never holds back another
+    private final Map<String, HoldBackQueue> holdBackQueues = new ConcurrentHashMap<>();
+    private final Map<String, CausalBuffer> causalBuffers = new ConcurrentHashMap<>();
+    private final Map<String, SequencerBroadcast> sequencers = new ConcurrentHashMap<>();
+    // Highest global sequence per room that history catch-up delivered, for sequencers created later
+    private final Map<String, Long> caughtUpSequences = new ConcurrentHashMap<>();
+    private final Set<String> beaconRooms = ConcurrentHashMap.newKeySet();
+    private final GossipDissemination dissemination;
+    private final MessageLog messageLog;
+    private final ListenerRegistry listeners = new ListenerRegistry();
+    private final NodeMetrics metrics = new NodeMetrics();
+    private final AtomicLong failoverStartNanos = new AtomicLong();
+    private final long statsIntervalSeconds;
+    private final boolean interactive;
+    private final Path statsFile;
+    private final AtomicBoolean beaconScheduled = new AtomicBoolean();
+    private volatile boolean started;
+    private final BroadcastEngine broadcastEngine;
+    private final DedupWindow dedupWindow = new DedupWindow(DEDUP_WINDOW_SIZE);
+    private final long sequenceBase;
+    private final AtomicLong outgoingSequence;
+    // Gossip numbers each room separately too, so anti-entropy digests have no gaps from other rooms
+    private final Map<String, AtomicLong> roomSequences = new ConcurrentHashMap<>();
+
+    public ChatNodeImpl(int nodeId, String nodeName) throws RemoteException {
+        this(nodeId, nodeName, new NodeConfig());
+    }
+
+    public ChatNodeImpl(int nodeId, String nodeName, NodeConfig config) throws RemoteException {
+        this.nodeId = nodeId;
+        this.nodeName = nodeName;
+        this.transport = config.getTransport();
+        this.deliveryMode = config.getDeliveryMode();
+        this.causalBufferLimit = config.getCausalBufferLimit();
+        this.statsIntervalSeconds = config.getStatsIntervalSeconds();
+        this.interactive = config.isInteractive();
+        this.coordinatorId = nodeId; // Initially assume self as coordinator
+        Path nodeDirectory = Paths.get(config.getLogDirectory(), "node-" + nodeId);
+        this.statsFile = nodeDirectory.resolve("stats.txt");
+        try {
+            this.messageLog = new MessageLog(nodeDirectory, LOG_SEGMENT_BYTES,
+                LOG_RETENTION_BYTES, LOG_RETENTION_MS, LOG_FLUSH_INTERVAL_MS);
+        } catch (IOException e) {
+            throw new RemoteException("Cannot open message log: " + e.getMessage(), e);
+        }
+        this.registeredNodes.put(nodeId, nodeName);
+        this.connections = new PeerConnectionManager(transport, scheduler, STUB_STALE_AFTER_MS,
+            LOOKUP_INITIAL_BACKOFF_MS, LOOKUP_MAX_BACKOFF_MS);
+        // Incarnation starts at the wall clock so a restarted node outranks its old entry
+        long incarnation = System.currentTimeMillis();
+        Set<String> rooms = new TreeSet<>(config.getRooms());
+        this.roomIndex = new RoomIndex(nodeId, RING_VIRTUAL_NODES);
+        this.roomIndex.update(nodeId, rooms);
+        this.currentRoom = rooms.iterator().next();
+        this.membership = new MembershipList(nodeId, nodeName, incarnation, rooms, this::onMemberChanged);
+        this.sequenceBase = ChatMessage.firstSenderSequence(incarnation);
+        this.outgoingSequence = new AtomicLong(sequenceBase);
+        this.broadcastEngine = new BroadcastEngine(config.getSendWindow(), config.getOverflowPolicy(), this::onSendRetry);
+        this.gossipMembership = new GossipMembership(nodeId, membership, connections, scheduler,
+            GOSSIP_FANOUT, GOSSIP_INTERVAL_MS, SUSPECT_TIMEOUT_MS, DEAD_RETENTION_MS);
+        for (String room : rooms) {
+            holdBackQueue(room);
+        }
+        this.dissemination = new GossipDissemination(nodeId, DISSEMINATION_FANOUT, ANTI_ENTROPY_INTERVAL_MS, scheduler,
+            new GossipDissemination.Network() {
+                @Override
+                public Collection<String> rooms() {
+                    List<String> rooms = new ArrayList<>();
+                    for (String room : roomIndex.rooms()) {
+                        if (roomIndex.owner(room) == nodeId || roomIndex.isSubscribed(nodeId, room)) {
+                            rooms.add(room);
+                        }
+                    }
+                    return rooms;
+                }
+
+                @Override
+                public Collection<Integer> members(String room) {
+                    return roomMembers(room);
+                }
+
+                @Override
+                public void send(int peerId, ChatMessage message) {
+                    sendToPeer(peerId, message);
+                }
+
+                @Override
+                public List<ChatMessage> pull(int peerId, String room, Map<Integer, Long> digest, int maxMessages)
+                        throws Exception {
+                    ChatNode node = connections.resolve(peerId);
+                    if (node == null) {
+                        throw new RemoteException("Node " + peerId + " is unreachable");
+                    }
+                    return node.pullMessages(room, digest, maxMessages);
+                }
+            }, this::deliverMessage);
+        this.heartbeatMonitor = new HeartbeatMonitor(nodeId, registeredNodes.keySet(), connections,
+            failureDetector, scheduler, this, HEARTBEAT_INTERVAL_MS);
+        this.election = new BullyElection(nodeId, new BullyElection.Messenger() {
+            @Override
+            public Collection<Integer> peers() {
+                return registeredNodes.keySet();
+            }
+
+            @Override
+            public void send(int peerId, ElectionMessage message) {
+                sendElectionMessage(peerId, message);
+            }
+        }, this, scheduler, ELECTION_OK_TIMEOUT_MS, ELECTION_COORDINATOR_TIMEOUT_MS);
+        
+        EventLog.info("node", "Node initialized with ID " + nodeId + " and name " + nodeName);
+    }
+
+    @Override
+    public void start() throws RemoteException {
+        try {
+            // Publish this node through the configured transport
+            transport.bind(nodeId, this);
+            EventLog.info("node", "Using " + transport.getName() + " transport with "
+                + deliveryMode.name().toLowerCase() + " delivery order");
+
+            // Carry the Lamport clock over from before a restart
+            if (messageLog.getMaxTimestamp() != Long.MIN_VALUE) {
+                clock.advanceTo(messageLog.getMaxTimestamp());
+            }
+
+            // Discover existing nodes
+            discoverNodes();
+
+            // Release held-back messages whose hold timeout has passed
+            scheduler.scheduleWithFixedDelay(this::drainHoldBack, 50, 50, TimeUnit.MILLISECONDS);
+
+            // Start heartbeats to all peers and membership gossip
+            connections.start(STUB_REFRESH_INTERVAL_MS);
+            heartbeatMonitor.start();
+            gossipMembership.start();
+            started = true;
+            if (deliveryMode == DeliveryMode.SEQUENCER) {
+                onRoomsChanged();
+            } else if (deliveryMode == DeliveryMode.GOSSIP) {
+                dissemination.start();
+            }
+            if (statsIntervalSeconds > 0) {
+                scheduler.scheduleWithFixedDelay(this::dumpStats, statsIntervalSeconds, statsIntervalSeconds, TimeUnit.SECONDS);
+            }
+
+            // Start user input processing
+            if (interactive) {
+                startUserInputProcessing();
+            }
+
+        } catch (Exception e) {
+            EventLog.error("node", "Node startup error: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private void discoverNodes() {
+        try {
+            // One full exchange with any reachable node is enough; gossip spreads the rest
+            List<Integer> candidates = new ArrayList<>(transport.listNodeIds());
+            Collections.shuffle(candidates);
+            for (int node : candidates) {
+                if (node != nodeId) {
+                    try {
+                        ChatNode seed = connections.resolve(node);
+                        if (seed == null) {
+                            continue;
+                        }
+                        // Read the seed's view without registering, so room owners are known before catching up
+                        List<MemberEntry> view = seed.gossip(nodeId, List.of(), 0).getEntries();
+                        // Catch up before joining, so most history is in before live traffic; peers only send to us
+                        // once the join has reached them, so what they sent meanwhile is pulled in a second pass
+                        List<HistoryCursor> cursors = catchUpHistory(node, seed, view);
+                        gossipMembership.join(node, seed);
+                        EventLog.info("membership", "Joined cluster through node " + node);
+                        scheduler.schedule(() -> cursors.forEach(this::catchUpRoom), CATCH_UP_SETTLE_MS,
+                            TimeUnit.MILLISECONDS);
+                        break;
+                    } catch (Exception e) {
+                        EventLog.warn("membership", "Error connecting to node " + node + ": " + e.getMessage());
+                    }
+                }
+            }
+            
+            // Start election if other nodes were found
+            if (registeredNodes.size() > 1) {
+                startElection();
+            }
+        } catch (Exception e) {
+            EventLog.warn("membership", "Error discovering nodes: " + e.getMessage());
+        }
+    }
+
+    // Each room's history comes from its owner: the rooms we subscribe to, and the rooms we will own once joined.
+    // Returns where each room's catch-up stopped
+    private List<HistoryCursor> catchUpHistory(int seedId, ChatNode seed, List<MemberEntry> view) {
+        HashRing before = new HashRing(RING_VIRTUAL_NODES);
+        HashRing after = new HashRing(RING_VIRTUAL_NODES);
+        after.add(nodeId);
+        Set<String> rooms = new TreeSet<>(roomIndex.roomsOf(nodeId));
+        Set<String> known = new TreeSet<>(rooms);
+        for (MemberEntry entry : view) {
+            if (entry.getNodeId() != nodeId && entry.getState() != MemberEntry.State.DEAD) {
+                before.add(entry.getNodeId());
+                after.add(entry.getNodeId());
+                known.addAll(entry.getRooms());
+            }
+        }
+        for (String room : known) {
+            if (after.owner(room) == nodeId) {
+                rooms.add(room);
+            }
+        }
+
+        boolean restarted = messageLog.getNextSequence() > messageLog.getFirstSequence();
+        long fromTimestamp = restarted ? messageLog.getMaxTimestamp() : Long.MIN_VALUE;
+        if (restarted) {
+            // Records at the boundary timestamp may already be in our own log
+            messageLog.scan(fromTimestamp, 0, (sequence, timestamp, record) -> {
+                ChatMessage own = MessageLog.decode(record);
+                if (own.getSenderSequence() != 0) {
+                    dedupWindow.markSeen(own.getSenderID(), own.getSenderSequence());
+                    dissemination.markDelivered(own);
+                }
+                return true;
+            });
+        }
+        List<HistoryCursor> cursors = new ArrayList<>();
+        for (String room : rooms) {
+            int owner = before.owner(room);
+            ChatNode source = owner < 0 || owner == seedId ? null : connections.resolve(owner);
+            if (source == null) {
+                owner = seedId;
+                source = seed;
+            }
+            HistoryCursor cursor = new HistoryCursor(room, owner, source, fromTimestamp);
+            catchUpRoom(cursor);
+            cursors.add(cursor);
+        }
+        return cursors;
+    }
+
+    // Pulls the peer's log in bounded chunks from the cursor on; only one chunk is in flight or in memory at a time
+    private void catchUpRoom(HistoryCursor history) {
+        String room = history.room;
+        int peerId = history.peerId;
+        long start = System.currentTimeMillis();
+        long applied = 0;
+        long bytes = 0;
+        int chunks = 0;
+        try {
+            HistoryChunk chunk;
+            do {
+                chunk = history.peer.fetchHistory(room, history.fromTimestamp, history.cursor, HISTORY_CHUNK_BYTES);
+                chunks++;
+                bytes += chunk.getRecords().length;
+                ByteBuffer records = ByteBuffer.wrap(chunk.getRecords());
+                while (records.hasRemaining()) {
+                    int length = records.getInt(records.position());
+                    ChatMessage message = MessageLog.decode(records);
+                    records.position(records.position() + 4 + length);
+                    if (message.getSenderSequence() == 0
+                        || dedupWindow.markSeen(message.getSenderID(), message.getSenderSequence())) {
+                        if (message.getSenderSequence() != 0) {
+                            // Anti-entropy would otherwise pull the same messages again
+                            dissemination.markDelivered(message);
+                        }
+                        clock.advanceTo(message.getLogicalTimestamp());
+                        advanceWatermarks(message.getSenderID(), message.getLogicalTimestamp());
+                        messageLog.append(message);
+                        applied++;
+                    }
+                    markCaughtUp(room, message);
+                }
+                clock.advanceTo(chunk.getClock());
+                history.cursor = chunk.getNextCursor();
+            } while (!chunk.isComplete());
+        } catch (Exception e) {
+            EventLog.warn("history", "Error catching up room " + room + " from node " + peerId + ": " + e.getMessage());
+        }
+        if (applied > 0) {
+            EventLog.info("history", "Caught up " + applied + " messages of room " + room + " from node " + peerId
+                + " (" + chunks + " chunks, " + bytes / 1024 + "KB) in " + (System.currentTimeMillis() - start) + "ms");
+        }
+    }
+
+    @Override
+    public HistoryChunk fetchHistory(String room, long fromTimestamp, long cursor, int maxBytes) throws RemoteException {
+        long start = System.nanoTime();
+        try {
+            return messageLog.readChunk(room, fromTimestamp, cursor, Math.min(maxBytes, MAX_HISTORY_CHUNK_BYTES), clock.get());
+        } finally {
+            metrics.record(NodeMetrics.Rpc.HISTORY, start);
+        }
+    }
+
+    @Override
+    public long subscribe(ChatListener listener) throws RemoteException {
+        long start = System.nanoTime();
+        long next;
+        synchronized (listeners) {
+            // Everything from this log sequence on is pushed; older messages come from fetchHistoryBefore
+            listeners.subscribe(listener);
+            next = messageLog.getNextSequence();
+        }
+        EventLog.info("client", "Client subscribed (" + listeners.size() + " connected)");
+        metrics.record(NodeMetrics.Rpc.CLIENT, start);
+        return next;
+    }
+
+    @Override
+    public void unsubscribe(ChatListener listener) throws RemoteException {
+        long start = System.nanoTime();
+        listeners.unsubscribe(listener);
+        EventLog.info("client", "Client unsubscribed (" + listeners.size() + " connected)");
+        metrics.record(NodeMetrics.Rpc.CLIENT, start);
+    }
+
+    @Override
+    public void sendChatMessage(String message) throws RemoteException {
+        // Same path as console input: stamped with this node's clock and broadcast in the configured order
+        long start = System.nanoTime();
+        broadcastMessage(currentRoom, message);
+        metrics.record(NodeMetrics.Rpc.CLIENT, start);
+    }
+
+    @Override
+    public List<ChatMessage> fetchHistoryBefore(long beforeSequence, int maxMessages) throws RemoteException {
+        long start = System.nanoTime();
+        try {
+            return messageLog.readBefore(beforeSequence, Math.min(maxMessages, MAX_HISTORY_PAGE));
+        } finally {
+            metrics.record(NodeMetrics.Rpc.HISTORY, start);
+        }
+    }
+
+    @Override
+    public void registerNode(int nodeId, String nodeName) throws RemoteException {
+        long start = System.nanoTime();
+        if (membership.get(nodeId) == null) {
+            membership.merge(List.of(new MemberEntry(nodeId, nodeName, MemberEntry.State.ALIVE, 0)));
+        }
+        metrics.record(NodeMetrics.Rpc.REGISTER, start);
+    }
+
+    @Override
+    public List<ChatMessage> fetchSequenced(String room, long fromSequence, int maxMessages) throws RemoteException {
+        long start = System.nanoTime();
+        try {
+            SequencerBroadcast sequencer = sequencers.get(room);
+            return sequencer == null ? new ArrayList<>() : sequencer.fetch(fromSequence, maxMessages);
+        } finally {
+            metrics.record(NodeMetrics.Rpc.REPAIR, start);
+        }
+    }
+
+    @Override
+    public List<ChatMessage> fetchCausal(String room, long fromSequence, long toSequence) throws RemoteException {
+        long start = System.nanoTime();
+        try {
+            CausalBuffer buffer = causalBuffers.get(room);
+            return buffer == null ? new ArrayList<>() : buffer.resend(fromSequence, toSequence);
+        } finally {
+            metrics.record(NodeMetrics.Rpc.REPAIR, start);
+        }
+    }
+
+    @Override
+    public List<ChatMessage> pullMessages(String room, Map<Integer, Long> digest, int maxMessages) throws RemoteException {
+        long start = System.nanoTime();
+        try {
+            return dissemination.pull(room, digest, maxMessages);
+        } finally {
+            metrics.record(NodeMetrics.Rpc.REPAIR, start);
+        }
+    }
+
+    @Override
+    public GossipDigest gossip(int fromId, List<MemberEntry> updates, long sinceVersion) throws RemoteException {
+        long start = System.nanoTime();
+        try {
+            return gossipMembership.handle(fromId, updates, sinceVersion);
+        } finally {
+            metrics.record(NodeMetrics.Rpc.GOSSIP, start);
+        }
+    }
+
+    private void onMemberChanged(MemberEntry entry, MemberEntry previous) {
+        int id = entry.getNodeId();
+        switch (entry.getState()) {
+            case ALIVE:
+            case SUSPECT:
+                boolean joinedRing = roomIndex.update(id, entry.getRooms());
+                if (joinedRing || previous == null || !previous.getRooms().equals(entry.getRooms())) {
+                    onRoomsChanged();
+                }
+                if (registeredNodes.put(id, entry.getNodeName()) == null) {
+                    EventLog.info("membership", "Registered node with ID " + id + " (" + entry.getNodeName() + ")");
+                    if (id > nodeId && coordinatorId == nodeId) {
+                        // A higher node that missed our election (or whose COORDINATOR missed us) must take over
+                        EventLog.info("election", "Higher node " + id + " joined while this node leads");
+                        election.startElection();
+                    }
+                } else if (previous != null && previous.getState() != entry.getState()) {
+                    EventLog.info("membership", "Node " + id + " is " + entry.getState().name().toLowerCase());
+                }
+                break;
+            case DEAD:
+                if (registeredNodes.containsKey(id)) {
+                    EventLog.warn("membership", "Node " + id + " (" + entry.getNodeName() + ") is dead");
+                    forgetNode(id);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public Map<Integer, String> getRegisteredNodes() throws RemoteException {
+        return new HashMap<>(registeredNodes);
+    }
+
+    @Override
+    public NodeStats getNodeStats() throws RemoteException {
+        return collectStats();
+    }
+
+    // Messages handed to the console and client listeners so far
+    public long getDeliveredCount() {
+        return messageCounter.get();
+    }
+
+    private NodeStats collectStats() {
+        int heldBack = 0;
+        switch (deliveryMode) {
+            case CAUSAL:
+                for (CausalBuffer buffer : causalBuffers.values()) {
+                    heldBack += buffer.size();
+                }
+                break;
+            case SEQUENCER:
+                for (SequencerBroadcast sequencer : sequencers.values()) {
+                    heldBack += sequencer.getHeldBack();
+                }
+                break;
+            default:
+                for (HoldBackQueue queue : holdBackQueues.values()) {
+                    heldBack += queue.size();
+                }
+                break;
+        }
+        NodeStats stats = new NodeStats(nodeId, nodeName, coordinatorId == nodeId, clock.get(), metrics.getUptimeMillis())
+            .setDeliveryMode(deliveryMode.name().toLowerCase())
+            .setDelivered(messageCounter.get())
+            .setHeldBack(heldBack)
+            .setClientListeners(listeners.size())
+            .setEventsDropped(EventLog.getDropped())
+            .setLogBytes(messageLog.getSizeBytes())
+            .setElections(election.getEpoch(), election.getElectionsStarted(), election.getLastConvergenceMillis())
+            .setSuspicions(heartbeatMonitor.getSuspicions(), heartbeatMonitor.getFalseSuspicions())
+            .setFailovers(metrics.snapshotFailovers())
+            .setRpcLatency(metrics.snapshotRpcs());
+        long now = System.currentTimeMillis();
+        Map<Integer, PeerSender> senders = broadcastEngine.getSenders();
+        for (int id : registeredNodes.keySet()) {
+            if (id == nodeId) {
+                continue;
+            }
+            PeerSender sender = senders.get(id);
+            LatencyHistogram pings = heartbeatMonitor.getPingLatency(id);
+            stats.addPeer(new NodeStats.PeerStats(id, failureDetector.phi(id, now),
+                sender == null ? 0 : sender.getQueueDepth(), sender == null ? 0 : sender.getWindow(),
+                sender != null && sender.isDegraded(), sender == null ? 0 : sender.getRetransmitted(),
+                sender == null ? 0 : sender.getDropped(),
+                sender == null ? new LatencyHistogram().snapshot() : sender.getSendLatency().snapshot(),
+                pings == null ? new LatencyHistogram().snapshot() : pings.snapshot()));
+        }
+        return stats;
+    }
+
+    // Replaces the stats file in one move, so readers never see a half-written dump
+    private void dumpStats() {
+        try {
+            Path temp = statsFile.resolveSibling(statsFile.getFileName() + ".tmp");
+            Files.writeString(temp, new Date() + "\n" + collectStats().format());
+            Files.move(temp, statsFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            EventLog.warn("stats", "Error writing stats file: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public int getNodeId() throws RemoteException {
+        return nodeId;
+    }
+
+    @Override
+    public InetSocketAddress getDataAddress() throws RemoteException {
+        return transport.getDataAddress();
+    }
+
+    @Override
+    public void receiveMessage(String sender, String message, long timestamp) throws RemoteException {
+        receiveMessages(List.of(new ChatMessage(message, sender, -1, timestamp)));
+    }
+
+    @Override
+    public void receiveMessages(List<ChatMessage> messages) throws RemoteException {
+        long start = System.nanoTime();
+        try {
+            receiveBatch(messages);
+        } finally {
+            metrics.record(NodeMetrics.Rpc.RECEIVE, start);
+        }
+    }
+
+    private void receiveBatch(List<ChatMessage> messages) {
+        if (deliveryMode == DeliveryMode.CAUSAL) {
+            for (ChatMessage message : messages) {
+                if (!message.isClockBeacon() && isFirstDelivery(message)) {
+                    clock.update(message.getLogicalTimestamp());
+                    causalBuffer(message.getRoom()).receive(message);
+                }
+            }
+            return;
+        }
+
+        if (deliveryMode == DeliveryMode.GOSSIP) {
+            // Copies arrive from several peers; the dissemination layer counts and drops them
+            for (ChatMessage message : messages) {
+                clock.update(message.getLogicalTimestamp());
+                dissemination.onPush(message);
+            }
+            return;
+        }
+
+        if (deliveryMode == DeliveryMode.SEQUENCER) {
+            // Duplicates are filtered by the sequencer, which also sees resubmissions
+            for (ChatMessage message : messages) {
+                clock.update(message.getLogicalTimestamp());
+                if (message.getGlobalSequence() == 0) {
+                    sequencer(message.getRoom()).onSubmission(message);
+                } else {
+                    sequencer(message.getRoom()).onSequenced(message);
+                }
+            }
+            return;
+        }
+
+        boolean fromPeer = false;
+        for (ChatMessage message : messages) {
+            // Links are FIFO, so any message from a peer bounds what it can still send in every room
+            advanceWatermarks(message.getSenderID(), message.getLogicalTimestamp());
+            if (message.isClockBeacon() || !isFirstDelivery(message)) {
+                continue;
+            }
+            // Updates the logical clock as it queues the message
+            holdBackQueue(message.getRoom()).add(message);
+            if (message.getSenderID() != nodeId) {
+                beaconRooms.add(message.getRoom());
+                fromPeer = true;
+            }
+        }
+        if (fromPeer) {
+            scheduleClockBeacon();
+        }
+        drainHoldBack();
+    }
+
+    private HoldBackQueue holdBackQueue(String room) {
+        return holdBackQueues.computeIfAbsent(room, r ->
+            new HoldBackQueue(nodeId, roomIndex.subscribers(r), clock, HOLD_BACK_TIMEOUT_MS, this::deliverMessage));
+    }
+
+    private void advanceWatermarks(int peerId, long timestamp) {
+        for (HoldBackQueue queue : holdBackQueues.values()) {
+            queue.advance(peerId, timestamp);
+        }
+    }
+
+    private void drainHoldBack() {
+        for (HoldBackQueue queue : holdBackQueues.values()) {
+            queue.drain();
+        }
+    }
+
+    // Live messages continue where the caught-up history ends, instead of waiting for or fetching what it holds
+    private void markCaughtUp(String room, ChatMessage message) {
+        if (deliveryMode == DeliveryMode.CAUSAL) {
+            causalBuffer(room).markDelivered(message);
+        } else if (deliveryMode == DeliveryMode.SEQUENCER && message.getGlobalSequence() > 0) {
+            long globalSequence = message.getGlobalSequence();
+            caughtUpSequences.merge(room, globalSequence, Math::max);
+            sequencers.computeIfPresent(room, (r, sequencer) -> {
+                sequencer.markDelivered(globalSequence);
+                return sequencer;
+            });
+        }
+    }
+
+    private CausalBuffer causalBuffer(String room) {
+        return causalBuffers.computeIfAbsent(room, r -> new CausalBuffer(nodeId, sequenceBase, causalBufferLimit,
+            (senderId, from, to) -> scheduler.execute(() -> repairCausal(r, senderId, from, to)), this::deliverMessage));
+    }
+
+    // Asks a sender for the messages a gap cost us, with full vectors; runs off the buffer's lock
+    private void repairCausal(String room, int senderId, long fromSequence, long toSequence) {
+        CausalBuffer buffer = causalBuffers.get(room);
+        try {
+            ChatNode node = connections.resolve(senderId);
+            if (node == null) {
+                throw new RemoteException("Node " + senderId + " is unreachable");
+            }
+            List<ChatMessage> messages = node.fetchCausal(room, fromSequence, toSequence);
+            for (ChatMessage message : messages) {
+                dedupWindow.markSeen(message.getSenderID(), message.getSenderSequence());
+            }
+            buffer.onRepair(senderId, messages);
+        } catch (Exception e) {
+            EventLog.warn("causal", "Error repairing messages " + fromSequence + ".." + toSequence + " from node "
+                + senderId + ": " + e.getMessage());
+            buffer.onRepairFailed(senderId);
+        }
+    }
+
+    // The room's owner sequences it; members are everyone the room's messages go to
+    private SequencerBroadcast sequencer(String room) {
+        return sequencers.computeIfAbsent(room, r -> {
+            SequencerBroadcast sequencer = new SequencerBroadcast(nodeId, nodeName, r, SEQUENCER_FANOUT,
+                SEQUENCER_NACK_DELAY_MS, SEQUENCER_RESUBMIT_MS, new SequencerBroadcast.Network() {
+                    @Override
+                    public Collection<Integer> members() {
+                        return roomMembers(r);
+                    }
+
+                    @Override
+                    public int coordinator() {
+                        return roomIndex.owner(r);
+                    }
+
+                    @Override
+                    public void send(int peerId, ChatMessage message) {
+                        sendToPeer(peerId, message);
+                    }
+
+                    @Override
+                    public List<ChatMessage> fetch(int peerId, long fromSequence, int maxMessages) throws Exception {
+                        ChatNode node = connections.resolve(peerId);
+                        if (node == null) {
+                            throw new RemoteException("Node " + peerId + " is unreachable");
+                        }
+                        return node.fetchSequenced(r, fromSequence, maxMessages);
+                    }
+                }, this::deliverMessage);
+            Long caughtUp = caughtUpSequences.get(r);
+            if (caughtUp != null) {
+                sequencer.markDelivered(caughtUp);
+            }
+            sequencer.start();
+            return sequencer;
+        });
+    }
+
+    // Subscribers and owner of the room that are registered here
+    private Set<Integer> roomMembers(String room) {
+        Set<Integer> members = roomIndex.targets(room);
+        members.retainAll(registeredNodes.keySet());
+        return members;
+    }
+
+    // Subscriptions or the ring changed: take over newly owned rooms and let every sequencer re-check its owner
+    private void onRoomsChanged() {
+        if (deliveryMode != DeliveryMode.SEQUENCER || !started) {
+            return;
+        }
+        for (String room : roomIndex.rooms()) {
+            if (roomIndex.owner(room) == nodeId || roomIndex.isSubscribed(nodeId, room)) {
+                sequencer(room);
+            }
+        }
+        for (SequencerBroadcast sequencer : sequencers.values()) {
+            sequencer.onCoordinatorChanged();
+        }
+    }
+
+    // Retransmitted batches may arrive twice; only the first copy is processed
+    private boolean isFirstDelivery(ChatMessage message) {
+        return message.getSenderSequence() == 0
+            || dedupWindow.markSeen(message.getSenderID(), message.getSenderSequence());
+    }
+
+    private void deliverMessage(ChatMessage message) {
+        // Total and causal order check this on receipt; gossip and the sequencer can repeat caught-up history
+        if ((deliveryMode == DeliveryMode.GOSSIP || deliveryMode == DeliveryMode.SEQUENCER) && !isFirstDelivery(message)) {
+            return;
+        }
+        boolean subscribed = roomIndex.isSubscribed(nodeId, message.getRoom());
+        if (!subscribed && roomIndex.owner(message.getRoom()) != nodeId) {
+            // Sent on a membership view that is out of date; only subscribers and the owner keep it
+            return;
+        }
+        if (subscribed) {
+            // Printed in delivery order by the event log's writer thread
+            EventLog.message(messageCounter.incrementAndGet(), message);
+        }
+        // Clients see messages in log order, with no gap or overlap against the subscribe position;
+        // the owner also logs rooms it does not subscribe to, so it can serve their history
+        synchronized (listeners) {
+            try {
+                long sequence = messageLog.append(message);
+                if (subscribed) {
+                    listeners.publish(sequence, message);
+                }
+            } catch (RuntimeException e) {
+                EventLog.error("log", "Error appending to message log: {}", e.getMessage());
+            }
+        }
+    }
+
+    // Lets everyone in the rooms we just received from know our clock has passed those messages
+    private void scheduleClockBeacon() {
+        if (beaconScheduled.compareAndSet(false, true)) {
+            scheduler.schedule(() -> {
+                beaconScheduled.set(false);
+                Set<Integer> peers = new HashSet<>();
+                for (Iterator<String> rooms = beaconRooms.iterator(); rooms.hasNext(); ) {
+                    peers.addAll(roomIndex.targets(rooms.next()));
+                    rooms.remove();
+                }
+                broadcastEngine.sendControl(peerTargets(peers, false), ChatMessage.clockBeacon(nodeName, nodeId, clock.get()));
+            }, BEACON_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void pingNode() throws RemoteException {
+        // Simple method to check if node is alive; only counted, so the histogram shows the call rate
+        metrics.record(NodeMetrics.Rpc.PING, System.nanoTime());
+    }
+
+    // Stubs for the given nodes that are registered here; unreachable ones are skipped
+    private Map<Integer, ChatNode> peerTargets(Collection<Integer> ids, boolean includeSelf) {
+        Map<Integer, ChatNode> targets = new HashMap<>();
+        for (int id : ids) {
+            if (!registeredNodes.containsKey(id)) {
+                continue;
+            }
+            if (id == nodeId) {
+                if (includeSelf) {
+                    targets.put(id, this);
+                }
+                continue;
+            }
+            ChatNode node = connections.resolve(id);
+            if (node != null) {
+                targets.put(id, node);
+            }
+        }
+        return targets;
+    }
+
+    @Override
+    public void onSuspected(int peerId, double phi, long silentMillis) {
+        EventLog.warn("failure", "Node {} suspected (phi={}, silent for {}ms)", peerId, Math.round(phi * 10) / 10.0, silentMillis);
+        membership.suspect(peerId);
+        if (peerId == coordinatorId && coordinatorId != nodeId) {
+            failoverStartNanos.compareAndSet(0, System.nanoTime());
+            EventLog.info("election", "Coordinator not responding, starting election");
+            try {
+                startElection();
+            } catch (RemoteException re) {
+                EventLog.error("election", "Error starting election: {}", re.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void onRecovered(int peerId, long suspectedMillis) {
+        EventLog.info("failure", "Node {} is responding again after {}ms", peerId, suspectedMillis);
+        if (peerId > nodeId && coordinatorId == nodeId) {
+            // A partition healed before anyone was declared dead; the higher side must win
+            EventLog.info("election", "Higher node {} is back while this node leads, starting election", peerId);
+            election.startElection();
+        }
+    }
+
+    private void forgetNode(int id) {
+        connections.forget(id);
+        registeredNodes.remove(id);
+        broadcastEngine.removePeer(id);
+        dedupWindow.forget(id);
+        dissemination.forgetSender(id);
+        for (HoldBackQueue queue : holdBackQueues.values()) {
+            queue.forgetPeer(id);
+        }
+        for (CausalBuffer buffer : causalBuffers.values()) {
+            buffer.forgetSender(id);
+        }
+        failureDetector.remove(id);
+        if (roomIndex.remove(id)) {
+            onRoomsChanged();
+        }
+    }
+
+    @Override
+    public void startElection() throws RemoteException {
+        if (election.getState() == BullyElection.State.IDLE) {
+            EventLog.info("election", "Starting election process");
+        }
+        election.startElection();
+    }
+
+    @Override
+    public void handleElectionMessage(ElectionMessage message) throws RemoteException {
+        long start = System.nanoTime();
+        election.handle(message);
+        metrics.record(NodeMetrics.Rpc.ELECTION, start);
+    }
+
+    @Override
+    public void onCoordinatorElected(int newCoordinatorId, long epoch, long convergenceMillis) {
+        this.coordinatorId = newCoordinatorId;
+        String took = convergenceMillis > 0 ? ", election took " + convergenceMillis + "ms" : "";
+        if (newCoordinatorId == nodeId) {
+            EventLog.info("election", "This node is now the coordinator (epoch " + epoch + took + ")");
+        } else {
+            EventLog.info("election", "Coordinator set to node " + newCoordinatorId + " (epoch " + epoch + took + ")");
+        }
+        endFailover();
+    }
+
+    // A coordinator is known again; time since the old one was suspected is the failover duration
+    private void endFailover() {
+        long start = failoverStartNanos.getAndSet(0);
+        if (start != 0) {
+            metrics.recordFailover(System.nanoTime() - start);
+        }
+    }
+
+    private void sendElectionMessage(int peerId, ElectionMessage message) {
+        electionExecutor.execute(() -> {
+            ChatNode node = connections.resolve(peerId);
+            if (node == null) {
+                return;
+            }
+            try {
+                node.handleElectionMessage(message);
+            } catch (Exception e) {
+                connections.reportFailure(peerId);
+                // No answer counts as no OK; the election timeouts take it from here
+                EventLog.warn("election", "Error sending {} to node {}: {}", message.getType(), peerId, e.getMessage());
+            }
+        });
+    }
+
+    @Override
+    public void electCoordinator(int newCoordinatorId) throws RemoteException {
+        long start = System.nanoTime();
+        election.observeCoordinator(newCoordinatorId, election.getEpoch());
+        this.coordinatorId = newCoordinatorId;
+        EventLog.info("election", "Coordinator set to node " + newCoordinatorId);
+        endFailover();
+        metrics.record(NodeMetrics.Rpc.ELECTION, start);
+    }
+
+    // Stops background work and releases the transport and message log
+    public void shutdown() {
+        heartbeatMonitor.stop();
+        gossipMembership.stop();
+        connections.stop();
+        for (SequencerBroadcast sequencer : sequencers.values()) {
+            sequencer.stop();
+        }
+        broadcastEngine.shutdown();
+        scheduler.shutdownNow();
+        electionExecutor.shutdownNow();
+        transport.close();
+        try {
+            messageLog.close();
+        } catch (IOException e) {
+            EventLog.warn("log", "Error closing message log: " + e.getMessage());
+        }
+    }
+
+    private void startUserInputProcessing() {
+        System.out.println("Chat node started. Type 'help' for commands.");
+        
+        Scanner scanner = new Scanner(System.in);
+        while (true) {
+            String input = scanner.nextLine();
+            
+            if (input.equalsIgnoreCase("exit")) {
+                System.out.println("Exiting chat system...");
+                shutdown();
+                System.exit(0);
+            } else if (input.equalsIgnoreCase("help")) {
+                System.out.println("Available commands:");
+                System.out.println("  help - Display this help message");
+                System.out.println("  exit - Exit the chat system");
+                System.out.println("  nodes - List all registered nodes");
+                System.out.println("  election - Start a new coordinator election");
+                System.out.println("  latency - Show broadcast latency statistics");
+                System.out.println("  clock - Show the logical clock and hold-back queue");
+                System.out.println("  health - Show failure detector state for each peer");
+                System.out.println("  history [count] - Show the last messages from the message log");
+                System.out.println("  stats - Show call latency, peer and election metrics");
+                System.out.println("  rooms - List known rooms with their subscribers and owner");
+                System.out.println("  room <name> - Join a room and send to it");
+                System.out.println("  leave <name> - Leave a room");
+                System.out.println("  Any other text will be sent as a chat message to the current room");
+            } else if (input.equalsIgnoreCase("history") || input.toLowerCase().startsWith("history ")) {
+                printHistory(input.substring("history".length()).trim());
+            } else if (input.equalsIgnoreCase("rooms")) {
+                printRooms();
+            } else if (input.toLowerCase().startsWith("room ")) {
+                joinRoom(input.substring("room ".length()).trim());
+            } else if (input.toLowerCase().startsWith("leave ")) {
+                leaveRoom(input.substring("leave ".length()).trim());
+            } else if (input.equalsIgnoreCase("nodes")) {
+                System.out.println("Registered nodes:");
+                for (MemberEntry entry : membership.entries()) {
+                    System.out.println("  Node " + entry.getNodeId() + " (" + entry.getNodeName() + ") "
+                                      + entry.getState() + " incarnation " + entry.getIncarnation()
+                                      + " rooms " + entry.getRooms()
+                                      + (entry.getNodeId() == coordinatorId ? " (coordinator)" : ""));
+                }
+                System.out.println("Gossip: " + gossipMembership.getRounds() + " rounds, "
+                    + gossipMembership.getExchanges() + " exchanges (" + gossipMembership.getExchangesFailed()
+                    + " failed), entries sent " + gossipMembership.getEntriesSent()
+                    + ", received " + gossipMembership.getEntriesReceived());
+            } else if (input.equalsIgnoreCase("stats")) {
+                System.out.print(collectStats().format());
+            } else if (input.equalsIgnoreCase("health")) {
+                printHealth();
+            } else if (input.equalsIgnoreCase("clock")) {
+                printClock();
+            } else if (input.equalsIgnoreCase("latency")) {
+                printBroadcastLatency();
+            } else if (input.equalsIgnoreCase("election")) {
+                try {
+                    startElection();
+                } catch (Exception e) {
+                    System.err.println("Error starting election: " + e.getMessage());
+                }
+            } else {
+                // Stamp with the logical clock and process as chat message
+                broadcastMessage(currentRoom, input);
+            }
+        }
+    }
+
+    private CompletableFuture<BroadcastResult> broadcastMessage(String room, String message) {
+        if (deliveryMode == DeliveryMode.TOTAL) {
+            // Queued locally as it is stamped, so no peer message stamped later can be delivered ahead of it
+            ChatMessage chatMessage = holdBackQueue(room).addOwn(timestamp -> newMessage(room, message, timestamp));
+            CompletableFuture<BroadcastResult> sent = broadcast(peerTargets(roomIndex.targets(room), false), chatMessage);
+            drainHoldBack();
+            return sent;
+        }
+
+        ChatMessage chatMessage = newMessage(room, message, clock.tick());
+        if (deliveryMode == DeliveryMode.SEQUENCER) {
+            // The room's owner orders and relays it; delivery back to us acknowledges it
+            sequencer(room).submit(chatMessage);
+            return CompletableFuture.completedFuture(null);
+        }
+        if (deliveryMode == DeliveryMode.GOSSIP) {
+            dissemination.publish(chatMessage);
+            return CompletableFuture.completedFuture(null);
+        }
+        causalBuffer(room).stampOutgoing(chatMessage);
+        // Send to the room's subscribers and owner, including self so it is delivered in causal order
+        return broadcast(peerTargets(roomIndex.targets(room), true), chatMessage);
+    }
+
+    private ChatMessage newMessage(String room, String message, long timestamp) {
+        ChatMessage chatMessage = new ChatMessage(message, nodeName, nodeId, timestamp);
+        chatMessage.setRoom(room);
+        chatMessage.setSenderSequence(outgoingSequence.incrementAndGet());
+        if (deliveryMode == DeliveryMode.GOSSIP) {
+            chatMessage.setRoomSequence(roomSequences.computeIfAbsent(room, r -> new AtomicLong(sequenceBase)).incrementAndGet());
+        }
+        chatMessage.setOriginTimeMillis(System.currentTimeMillis());
+        return chatMessage;
+    }
+
+    private CompletableFuture<BroadcastResult> broadcast(Map<Integer, ChatNode> targets, ChatMessage message) {
+        return broadcastEngine.broadcast(targets, message).whenComplete((result, error) -> {
+            if (result != null) {
+                handleBroadcastFailures(result);
+            }
+        });
+    }
+
+    private void sendToPeer(int peerId, ChatMessage message) {
+        ChatNode node = connections.resolve(peerId);
+        if (node != null) {
+            broadcastEngine.relay(Map.of(peerId, node), message).whenComplete((result, error) -> {
+                if (result != null) {
+                    handleBroadcastFailures(result);
+                }
+            });
+        }
+    }
+
+    // Failures here are messages the send window rejected or dropped, or peers that were removed
+    private void handleBroadcastFailures(BroadcastResult result) {
+        for (Map.Entry<Integer, Throwable> failure : result.getFailures().entrySet()) {
+            EventLog.warn("broadcast", "Error sending message to node {}: {}", failure.getKey(), failure.getValue().getMessage());
+        }
+    }
+
+    // A failed send is retransmitted rather than dropped; liveness is left to the failure detector
+    private ChatNode onSendRetry(int peerId, int attempt, Exception cause) {
+        if (attempt == 1) {
+            EventLog.warn("broadcast", "Send to node {} failed, retransmitting: {}", peerId, cause.getMessage());
+        }
+        connections.reportFailure(peerId);
+        return connections.resolve(peerId);
+    }
+
+    private void printHealth() {
+        long now = System.currentTimeMillis();
+        System.out.println("Failure detector (phi threshold " + PHI_THRESHOLD + "):");
+        for (int id : registeredNodes.keySet()) {
+            if (id != nodeId) {
+                System.out.printf("  Node %d: phi=%.2f mean interval=%.0fms silent=%dms%s%n", id,
+                    failureDetector.phi(id, now), failureDetector.getMeanIntervalMillis(id),
+                    failureDetector.millisSinceHeartbeat(id, now),
+                    heartbeatMonitor.isSuspected(id) ? " (suspected)" : "");
+            }
+        }
+        System.out.println("  heartbeats: " + heartbeatMonitor.getHeartbeatsSent()
+            + " sent, " + heartbeatMonitor.getHeartbeatsFailed() + " failed");
+        System.out.println("  suspicions: " + heartbeatMonitor.getSuspicions()
+            + " (false: " + heartbeatMonitor.getFalseSuspicions() + ")");
+        long detection = heartbeatMonitor.getLastDetectionMillis();
+        System.out.println("  last detection time: " + (detection < 0 ? "n/a" : detection + "ms"));
+        System.out.println("Connections: " + connections.getHits() + " cache hits, "
+            + connections.getMisses() + " misses, " + connections.getNegativeHits() + " negative hits");
+        System.out.println("  lookups: " + connections.getLookups() + " (" + connections.getLookupFailures()
+            + " failed, " + connections.getBackgroundRefreshes() + " background), avg "
+            + connections.getAverageLookupNanos() / 1_000 + "us, max " + connections.getMaxLookupNanos() / 1_000 + "us");
+        long convergence = election.getLastConvergenceMillis();
+        System.out.println("Election (epoch " + election.getEpoch() + ", " + election.getState() + "):");
+        System.out.println("  started: " + election.getElectionsStarted()
+            + ", suppressed: " + election.getElectionsSuppressed()
+            + ", messages sent: " + election.getMessagesSent());
+        System.out.println("  last convergence time: " + (convergence < 0 ? "n/a" : convergence + "ms"));
+    }
+
+    private void printClock() {
+        System.out.println("Logical clock: " + clock.get());
+        if (deliveryMode == DeliveryMode.CAUSAL) {
+            for (Map.Entry<String, CausalBuffer> room : new TreeMap<>(causalBuffers).entrySet()) {
+                System.out.println("  #" + room.getKey() + " vector clock: " + room.getValue().snapshot());
+                System.out.println("  #" + room.getKey() + " causal buffer: " + room.getValue().getMetrics());
+            }
+            return;
+        }
+        if (deliveryMode == DeliveryMode.SEQUENCER) {
+            for (Map.Entry<String, SequencerBroadcast> room : new TreeMap<>(sequencers).entrySet()) {
+                System.out.println("  #" + room.getKey() + " sequencer: " + room.getValue().getMetrics());
+                System.out.println("  " + room.getValue().getCounters());
+            }
+            return;
+        }
+        for (Map.Entry<String, HoldBackQueue> room : new TreeMap<>(holdBackQueues).entrySet()) {
+            HoldBackQueue queue = room.getValue();
+            System.out.println("  #" + room.getKey() + " held back: " + queue.size());
+            System.out.println("  #" + room.getKey() + " delivered: " + queue.getDeliveredCount()
+                + " (after timeout: " + queue.getDeliveredByTimeoutCount()
+                + ", out of order: " + queue.getDeliveredLateCount() + ")");
+            for (int id : roomIndex.subscribers(room.getKey())) {
+                if (id != nodeId) {
+                    System.out.println("    watermark node " + id + ": " + queue.getWatermark(id));
+                }
+            }
+        }
+    }
+
+    private void printRooms() {
+        System.out.println("Rooms (current #" + currentRoom + "):");
+        for (String room : roomIndex.rooms()) {
+            int owner = roomIndex.owner(room);
+            System.out.println("  #" + room + (roomIndex.isSubscribed(nodeId, room) ? " (joined)" : "")
+                + " subscribers " + new TreeSet<>(roomIndex.subscribers(room))
+                + " owner " + owner + (owner == nodeId ? " (self)" : ""));
+        }
+    }
+
+    private void joinRoom(String room) {
+        if (room.isEmpty()) {
+            System.out.println("Usage: room <name>");
+            return;
+        }
+        Set<String> rooms = new TreeSet<>(roomIndex.roomsOf(nodeId));
+        if (rooms.add(room)) {
+            setRooms(rooms);
+        }
+        currentRoom = room;
+        System.out.println("Now sending to #" + room);
+    }
+
+    private void leaveRoom(String room) {
+        Set<String> rooms = new TreeSet<>(roomIndex.roomsOf(nodeId));
+        if (!rooms.contains(room)) {
+            System.out.println("Not in #" + room);
+            return;
+        }
+        if (rooms.size() == 1) {
+            System.out.println("Cannot leave the last room");
+            return;
+        }
+        rooms.remove(room);
+        setRooms(rooms);
+        if (room.equals(currentRoom)) {
+            currentRoom = rooms.iterator().next();
+            System.out.println("Now sending to #" + currentRoom);
+        }
+    }
+
+    // Gossip carries the new subscriptions; peers start or stop sending us the room's messages as it spreads
+    private void setRooms(Set<String> rooms) {
+        membership.setSelfRooms(rooms);
+        roomIndex.update(nodeId, rooms);
+        for (String room : rooms) {
+            holdBackQueue(room);
+        }
+        onRoomsChanged();
+    }
+
+    private void printHistory(String argument) {
+        int count = HISTORY_DEFAULT_COUNT;
+        if (!argument.isEmpty()) {
+            try {
+                count = Integer.parseInt(argument);
+            } catch (NumberFormatException e) {
+                System.out.println("Usage: history [count]");
+                return;
+            }
+        }
+        System.out.println("Message log: " + messageLog.getMetrics());
+        for (ChatMessage message : messageLog.tail(count)) {
+            System.out.println("  " + message);
+        }
+    }
+
+    private void printBroadcastLatency() {
+        System.out.println("Broadcast latency (slowest peer):");
+        System.out.println("  broadcasts: " + broadcastEngine.getBroadcastCount());
+        System.out.println("  last: " + broadcastEngine.getLastLatencyNanos() / 1_000 + "us");
+        System.out.println("  avg:  " + broadcastEngine.getAverageLatencyNanos() / 1_000 + "us");
+        System.out.println("  max:  " + broadcastEngine.getMaxLatencyNanos() / 1_000 + "us");
+        System.out.printf("  avg batch size: %.2f%n", broadcastEngine.getAverageBatchSize());
+        System.out.println("Send windows (" + broadcastEngine.getOverflowPolicy().name().toLowerCase().replace('_', '-') + "):");
+        for (PeerSender sender : broadcastEngine.getSenders().values()) {
+            System.out.println("  Node " + sender.getPeerId() + ": " + sender.getQueueDepth() + "/" + sender.getWindow()
+                + " queued, " + sender.getRetransmitted() + " retransmitted, " + sender.getDropped() + " dropped, "
+                + sender.getRejected() + " rejected" + (sender.isDegraded() ? " (degraded)" : ""));
+        }
+        System.out.println("  duplicates discarded: " + dedupWindow.getDuplicates());
+        System.out.println("Client listeners: " + listeners.getMetrics());
+        System.out.println("Event log: " + EventLog.getMetrics());
+        if (deliveryMode == DeliveryMode.GOSSIP) {
+            LatencyReservoir delivery = dissemination.getLatency();
+            System.out.println("Gossip dissemination: " + dissemination.getMetrics());
+            System.out.println("  delivery latency (" + delivery.getCount() + " messages): p50 " + delivery.percentile(50)
+                + "ms, p90 " + delivery.percentile(90) + "ms, p99 " + delivery.percentile(99) + "ms, max "
+                + delivery.percentile(100) + "ms");
+            System.out.printf("  duplicate ratio: %.2f%n", dissemination.getDuplicateRatio());
+        }
+    }
+
+    // Where one room's history catch-up from one peer got to
+    private static final class HistoryCursor {
+        final String room;
+        final int peerId;
+        final ChatNode peer;
+        final long fromTimestamp;
+        long cursor;
+
+        HistoryCursor(String room, int peerId, ChatNode peer, long fromTimestamp) {
+            this.room = room;
+            this.peerId = peerId;
+            this.peer = peer;
+            this.fromTimestamp = fromTimestamp;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package chat;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+public class ChatSystem {
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Usage: java -jar chat-node.jar <nodeId> <nodeName> [--transport rmi|nio] [--host HOST] [--nio-port PORT] [--order total|causal|sequencer|gossip]"
+                + " [--overflow block|drop-oldest|degrade] [--window N] [--log-dir DIR]"
+                + " [--log-level debug|info|warn|error] [--log-overflow block|drop] [--stats-interval SECONDS]"
+                + " [--rooms ROOM,ROOM...]");
+            System.exit(1);
+        }
+
+        int nodeId = Integer.parseInt(args[0]);
+        String nodeName = args[1];
+        NodeConfig config = new NodeConfig();
+        EventLog.Level logLevel = EventLog.Level.INFO;
+        boolean logBlocking = false;
+        String transport = "rmi";
+        String host = System.getProperty("java.rmi.server.hostname", "localhost");
+        int nioPort = -1;
+
+        for (int i = 2; i < args.length; i++) {
+            if (args[i].equals("--transport") && i + 1 < args.length) {
+                transport = args[++i];
+            } else if (args[i].equals("--host") && i + 1 < args.length) {
+                host = args[++i];
+            } else if (args[i].equals("--nio-port") && i + 1 < args.length) {
+                nioPort = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--order") && i + 1 < args.length) {
+                config.setDeliveryMode(DeliveryMode.valueOf(args[++i].toUpperCase()));
+            } else if (args[i].equals("--overflow") && i + 1 < args.length) {
+                config.setOverflowPolicy(OverflowPolicy.valueOf(args[++i].toUpperCase().replace('-', '_')));
+            } else if (args[i].equals("--window") && i + 1 < args.length) {
+                config.setSendWindow(Integer.parseInt(args[++i]));
+            } else if (args[i].equals("--log-dir") && i + 1 < args.length) {
+                config.setLogDirectory(args[++i]);
+            } else if (args[i].equals("--stats-interval") && i + 1 < args.length) {
+                config.setStatsIntervalSeconds(Long.parseLong(args[++i]));
+            } else if (args[i].equals("--rooms") && i + 1 < args.length) {
+                config.setRooms(parseRooms(args[++i]));
+            } else if (args[i].equals("--log-level") && i + 1 < args.length) {
+                logLevel = EventLog.Level.valueOf(args[++i].toUpperCase());
+            } else if (args[i].equals("--log-overflow") && i + 1 < args.length) {
+                logBlocking = parseLogOverflow(args[++i]);
+            } else {
+                System.out.println("Unknown option: " + args[i]);
+                System.exit(1);
+            }
+        }
+
+        config.setTransport(createTransport(transport, host, nioPort));
+
+        // Console output is process-wide, so it is configured here rather than per node
+        EventLog.configure(logLevel, logBlocking);
+
+        try {
+            ChatNode node = new ChatNodeImpl(nodeId, nodeName, config);
+            node.start();
+        } catch (Exception e) {
+            System.err.println("Chat system error: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private static Set<String> parseRooms(String list) {
+        Set<String> rooms = new TreeSet<>();
+        for (String room : list.split(",")) {
+            if (!room.isBlank()) {
+                rooms.add(room.trim());
+            }
+        }
+        if (rooms.isEmpty()) {
+            throw new IllegalArgumentException("No rooms in: " + list);
+        }
+        return rooms;
+    }
+
+    private static boolean parseLogOverflow(String name) {
+        switch (name) {
+            case "block":
+                return true;
+            case "drop":
+                return false;
+            default:
+                throw new IllegalArgumentException("Unknown log overflow policy: " + name);
+        }
+    }
+
+    private static Transport createTransport(String name, String host, int nioPort) {
+        switch (name) {
+            case "rmi":
+                return new RmiTransport();
+            case "nio":
+                return new NioTransport(host, nioPort);
+            default:
+                throw new IllegalArgumentException("Unknown transport: " + name);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,99 @@
+// DedupWindow.java - Sliding-window bitset that discards retransmitted duplicates per sender
+package chat;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Each sender gets a ring of windowSize bits indexed by sequence number. Bit i
+ * covers sequence (highest - windowSize, highest]; anything older than the
+ * window is treated as already seen, since retries never lag that far behind.
+ */
+public class DedupWindow {
+    private final int windowSize;
+    private final Map<Integer, Window> windows = new ConcurrentHashMap<>();
+    private final LongAdder duplicates = new LongAdder();
+
+    public DedupWindow(int windowSize) {
+        if (windowSize <= 0 || windowSize % 64 != 0) {
+            throw new IllegalArgumentException("Window size must be a positive multiple of 64");
+        }
+        this.windowSize = windowSize;
+    }
+
+    // Returns true the first time a (sender, sequence) pair is seen
+    public boolean markSeen(int senderId, long sequence) {
+        Window window = windows.computeIfAbsent(senderId, id -> new Window(windowSize));
+        boolean first;
+        synchronized (window) {
+            first = window.mark(sequence);
+        }
+        if (!first) {
+            duplicates.increment();
+        }
+        return first;
+    }
+
+    public void forget(int senderId) {
+        windows.remove(senderId);
+    }
+
+    public long getDuplicates() {
+        return duplicates.sum();
+    }
+
+    private static class Window {
+        private final long[] bits;
+        private final int size;
+        private long highest = -1;
+
+        Window(int size) {
+            this.size = size;
+            this.bits = new long[size / 64];
+        }
+
+        boolean mark(long sequence) {
+            if (highest < 0 || sequence - highest >= size) {
+                // First message or a jump past the whole window (e.g. the sender restarted)
+                Arrays.fill(bits, 0L);
+                highest = sequence;
+                set(sequence);
+                return true;
+            }
+            if (sequence > highest) {
+                for (long s = highest + 1; s < sequence; s++) {
+                    clear(s);
+                }
+                highest = sequence;
+                set(sequence);
+                return true;
+            }
+            if (highest - sequence >= size || isSet(sequence)) {
+                return false;
+            }
+            set(sequence);
+            return true;
+        }
+
+        private int index(long sequence) {
+            return (int) Math.floorMod(sequence, (long) size);
+        }
+
+        private boolean isSet(long sequence) {
+            int i = index(sequence);
+            return (bits[i >>> 6] & (1L << (i & 63))) != 0;
+        }
+
+        private void set(long sequence) {
+            int i = index(sequence);
+            bits[i >>> 6] |= 1L << (i & 63);
+        }
+
+        private void clear(long sequence) {
+            int i = index(sequence);
+            bits[i >>> 6] &= ~(1L << (i & 63));
+        }
+    }
+}
@@ -0,0 +1,13 @@
+// DeliveryMode.java - Ordering guarantee applied to received chat messages
+package chat;
+
+public enum DeliveryMode {
+    // Lamport (timestamp, nodeId) total order through the hold-back queue
+    TOTAL,
+    // Vector-clock causal order: replies never show up before what they answer
+    CAUSAL,
+    // Coordinator assigns a global sequence number and relays over a k-ary tree
+    SEQUENCER,
+    // Epidemic forwarding to a few random peers; delivered on first receipt, unordered
+    GOSSIP
+}
@@ -0,0 +1,44 @@
+// ElectionMessage.java - Message of the bully election protocol
+package chat;
+
+import java.io.Serializable;
+
+public class ElectionMessage implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public enum Type {
+        // Sent to higher nodes: "I am holding an election"
+        ELECTION,
+        // Reply from a higher node: "I am alive, stop"
+        OK,
+        // Broadcast by the winner
+        COORDINATOR
+    }
+
+    private final Type type;
+    private final int senderId;
+    private final long epoch;
+
+    public ElectionMessage(Type type, int senderId, long epoch) {
+        this.type = type;
+        this.senderId = senderId;
+        this.epoch = epoch;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getSenderId() {
+        return senderId;
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    @Override
+    public String toString() {
+        return type + "(from " + senderId + ", epoch " + epoch + ")";
+    }
+}
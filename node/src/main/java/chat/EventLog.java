@@ -0,0 +1,323 @@
+// EventLog.java - Asynchronous console output for node events and delivered messages
+package chat;
+
+import java.io.PrintStream;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Callers claim a slot in a preallocated ring with one atomic increment, fill in
+ * the slot's fields and publish it; they never format or touch the console. A
+ * single writer thread formats every published event into a reused buffer and
+ * writes each batch with one call per stream. Delivered chat messages are
+ * stored as a reference and formatted by the writer, so delivery allocates
+ * nothing here. System events on hot paths pass a template with {}
+ * placeholders and up to three arguments instead of a built string: nothing
+ * is concatenated when the level is off, and the writer fills the template in.
+ *
+ * System events are written as: HH:mm:ss.SSS LEVEL [category] text
+ * Chat messages keep the node's usual form: [n] sender: text
+ *
+ * When the ring is full, callers either wait for the writer (block) or the
+ * event is dropped and counted (drop); the writer reports drops once it
+ * catches up.
+ */
+public final class EventLog {
+    public enum Level { DEBUG, INFO, WARN, ERROR }
+
+    public static final int RING_SIZE = 8192;
+    private static final int MAX_BATCH = 512;
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long SHUTDOWN_DRAIN_MS = 1000;
+    private static final TimeZone ZONE = TimeZone.getDefault();
+
+    private static final Slot[] ring = new Slot[RING_SIZE];
+    private static final AtomicLongArray published = new AtomicLongArray(RING_SIZE);
+    private static final AtomicLong claimed = new AtomicLong();
+    private static volatile long consumed;
+    private static volatile boolean writerWaiting;
+    private static volatile Level threshold = Level.INFO;
+    private static volatile boolean blockWhenFull;
+    private static final LongAdder written = new LongAdder();
+    private static final LongAdder dropped = new LongAdder();
+    private static final LongAdder blocked = new LongAdder();
+    private static final Thread writer;
+
+    static {
+        for (int i = 0; i < RING_SIZE; i++) {
+            ring[i] = new Slot();
+            published.set(i, -1);
+        }
+        writer = new Thread(EventLog::drain, "event-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> flush(SHUTDOWN_DRAIN_MS), "event-log-flush"));
+    }
+
+    private EventLog() {
+    }
+
+    public static void configure(Level level, boolean block) {
+        threshold = level;
+        blockWhenFull = block;
+    }
+
+    public static boolean isEnabled(Level level) {
+        return level.compareTo(threshold) >= 0;
+    }
+
+    public static void debug(String category, String text) {
+        log(Level.DEBUG, category, text);
+    }
+
+    public static void info(String category, String text) {
+        log(Level.INFO, category, text);
+    }
+
+    public static void warn(String category, String text) {
+        log(Level.WARN, category, text);
+    }
+
+    public static void error(String category, String text) {
+        log(Level.ERROR, category, text);
+    }
+
+    public static void log(Level level, String category, String text) {
+        if (isEnabled(level)) {
+            publish(level, category, text, 0, null, null, null, null, 0);
+        }
+    }
+
+    public static void debug(String category, String template, Object arg) {
+        log(Level.DEBUG, category, template, 1, arg, null, null);
+    }
+
+    public static void debug(String category, String template, Object arg1, Object arg2) {
+        log(Level.DEBUG, category, template, 2, arg1, arg2, null);
+    }
+
+    public static void info(String category, String template, Object arg) {
+        log(Level.INFO, category, template, 1, arg, null, null);
+    }
+
+    public static void info(String category, String template, Object arg1, Object arg2) {
+        log(Level.INFO, category, template, 2, arg1, arg2, null);
+    }
+
+    public static void info(String category, String template, Object arg1, Object arg2, Object arg3) {
+        log(Level.INFO, category, template, 3, arg1, arg2, arg3);
+    }
+
+    public static void warn(String category, String template, Object arg) {
+        log(Level.WARN, category, template, 1, arg, null, null);
+    }
+
+    public static void warn(String category, String template, Object arg1, Object arg2) {
+        log(Level.WARN, category, template, 2, arg1, arg2, null);
+    }
+
+    public static void warn(String category, String template, Object arg1, Object arg2, Object arg3) {
+        log(Level.WARN, category, template, 3, arg1, arg2, arg3);
+    }
+
+    public static void error(String category, String template, Object arg) {
+        log(Level.ERROR, category, template, 1, arg, null, null);
+    }
+
+    public static void error(String category, String template, Object arg1, Object arg2) {
+        log(Level.ERROR, category, template, 2, arg1, arg2, null);
+    }
+
+    private static void log(Level level, String category, String template, int argCount,
+                            Object arg1, Object arg2, Object arg3) {
+        if (isEnabled(level)) {
+            publish(level, category, template, argCount, arg1, arg2, arg3, null, 0);
+        }
+    }
+
+    // A delivered chat message, shown with its delivery number at INFO level
+    public static void message(long number, ChatMessage message) {
+        if (isEnabled(Level.INFO)) {
+            publish(Level.INFO, null, null, 0, null, null, null, message, number);
+        }
+    }
+
+    // Waits until everything logged so far is written, or the timeout passes
+    public static void flush(long timeoutMillis) {
+        long target = claimed.get();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (consumed < target && System.nanoTime() < deadline) {
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(BLOCK_PARK_NANOS);
+        }
+    }
+
+    public static long getWritten() {
+        return written.sum();
+    }
+
+    public static long getDropped() {
+        return dropped.sum();
+    }
+
+    public static String getMetrics() {
+        return "level " + threshold.name().toLowerCase() + ", " + (blockWhenFull ? "block" : "drop") + " when full, queued "
+            + (claimed.get() - consumed) + "/" + RING_SIZE + ", written " + written.sum() + ", dropped " + dropped.sum()
+            + ", callers blocked " + blocked.sum();
+    }
+
+    private static void publish(Level level, String category, String text, int argCount, Object arg1, Object arg2,
+                                Object arg3, ChatMessage message, long number) {
+        long sequence;
+        while (true) {
+            sequence = claimed.get();
+            if (sequence - consumed >= RING_SIZE) {
+                if (!blockWhenFull) {
+                    dropped.increment();
+                    return;
+                }
+                blocked.increment();
+                LockSupport.unpark(writer);
+                LockSupport.parkNanos(BLOCK_PARK_NANOS);
+            } else if (claimed.compareAndSet(sequence, sequence + 1)) {
+                break;
+            }
+        }
+        Slot slot = ring[(int) (sequence % RING_SIZE)];
+        slot.level = level;
+        slot.timeMillis = System.currentTimeMillis();
+        slot.category = category;
+        slot.text = text;
+        slot.argCount = argCount;
+        slot.arg1 = arg1;
+        slot.arg2 = arg2;
+        slot.arg3 = arg3;
+        slot.message = message;
+        slot.number = number;
+        published.set((int) (sequence % RING_SIZE), sequence);
+        if (writerWaiting) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    private static void drain() {
+        StringBuilder out = new StringBuilder(64 * 1024);
+        StringBuilder err = new StringBuilder(4 * 1024);
+        long reportedDrops = 0;
+        long next = 0;
+        while (true) {
+            int index = (int) (next % RING_SIZE);
+            if (published.get(index) != next) {
+                writerWaiting = true;
+                if (published.get(index) != next) {
+                    LockSupport.park();
+                }
+                writerWaiting = false;
+                continue;
+            }
+            int count = 0;
+            while (count < MAX_BATCH && published.get(index) == next) {
+                Slot slot = ring[index];
+                format(slot, slot.level.compareTo(Level.WARN) >= 0 ? err : out);
+                slot.category = null;
+                slot.text = null;
+                slot.arg1 = null;
+                slot.arg2 = null;
+                slot.arg3 = null;
+                slot.message = null;
+                next++;
+                count++;
+                index = (int) (next % RING_SIZE);
+            }
+            long drops = dropped.sum();
+            if (drops > reportedDrops) {
+                appendPrefix(err, System.currentTimeMillis(), Level.WARN, "log");
+                err.append(drops - reportedDrops).append(" events dropped, event log was full\n");
+                reportedDrops = drops;
+            }
+            write(System.out, out);
+            write(System.err, err);
+            // Only now is the batch on the console, which is what flush() waits for
+            written.add(count);
+            consumed = next;
+        }
+    }
+
+    private static void write(PrintStream stream, StringBuilder buffer) {
+        if (buffer.length() > 0) {
+            stream.append(buffer);
+            stream.flush();
+            buffer.setLength(0);
+        }
+    }
+
+    private static void format(Slot slot, StringBuilder buffer) {
+        if (slot.message != null) {
+            buffer.append('[').append(slot.number).append("] ").append(slot.message.getSender()).append(": ")
+                .append(slot.message.getContent()).append('\n');
+            return;
+        }
+        appendPrefix(buffer, slot.timeMillis, slot.level, slot.category);
+        if (slot.argCount == 0) {
+            buffer.append(slot.text);
+        } else {
+            appendTemplate(buffer, slot);
+        }
+        buffer.append('\n');
+    }
+
+    // Replaces each {} with the next argument; placeholders beyond the arguments stay as they are
+    private static void appendTemplate(StringBuilder buffer, Slot slot) {
+        String template = slot.text;
+        int used = 0;
+        int from = 0;
+        int at;
+        while (used < slot.argCount && (at = template.indexOf("{}", from)) >= 0) {
+            buffer.append(template, from, at);
+            buffer.append(used == 0 ? slot.arg1 : used == 1 ? slot.arg2 : slot.arg3);
+            used++;
+            from = at + 2;
+        }
+        buffer.append(template, from, template.length());
+    }
+
+    private static void appendPrefix(StringBuilder buffer, long timeMillis, Level level, String category) {
+        long local = timeMillis + ZONE.getOffset(timeMillis);
+        long dayMillis = Math.floorMod(local, TimeUnit.DAYS.toMillis(1));
+        appendPadded(buffer, dayMillis / 3_600_000, 2).append(':');
+        appendPadded(buffer, dayMillis / 60_000 % 60, 2).append(':');
+        appendPadded(buffer, dayMillis / 1000 % 60, 2).append('.');
+        appendPadded(buffer, dayMillis % 1000, 3).append(' ');
+        buffer.append(level.name());
+        for (int i = level.name().length(); i < 5; i++) {
+            buffer.append(' ');
+        }
+        buffer.append(" [").append(category).append("] ");
+    }
+
+    private static StringBuilder appendPadded(StringBuilder buffer, long value, int width) {
+        for (long limit = 10, digits = 1; digits < width; limit *= 10, digits++) {
+            if (value < limit) {
+                buffer.append('0');
+            }
+        }
+        return buffer.append(value);
+    }
+
+    private static class Slot {
+        Level level;
+        long timeMillis;
+        String category;
+        String text;
+        int argCount;
+        Object arg1;
+        Object arg2;
+        Object arg3;
+        ChatMessage message;
+        long number;
+    }
+}
@@ -0,0 +1,26 @@
+// GossipDigest.java - Reply to a gossip exchange: entries changed since the caller's last pull
+package chat;
+
+import java.io.Serializable;
+import java.util.List;
+
+public class GossipDigest implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final List<MemberEntry> entries;
+    private final long version;
+
+    public GossipDigest(List<MemberEntry> entries, long version) {
+        this.entries = entries;
+        this.version = version;
+    }
+
+    public List<MemberEntry> getEntries() {
+        return entries;
+    }
+
+    // Pass back as sinceVersion in the next exchange with the same peer
+    public long getVersion() {
+        return version;
+    }
+}
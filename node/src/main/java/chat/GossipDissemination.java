@@ -0,0 +1,289 @@
+// GossipDissemination.java - Epidemic message spreading with bounded dedup and anti-entropy repair
+package chat;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/*
+ * A node that sees a message for the first time delivers it and forwards it to
+ * `fanout` random members of the message's room, so each node sends O(fanout)
+ * copies no matter how large the room is; with fanout above ln(n) the message
+ * reaches everyone in the room with high probability. Copies that come back are
+ * dropped by a rotating Bloom filter keyed by (senderId, senderSequence).
+ * Anything the epidemic missed is repaired by anti-entropy: every round a node
+ * picks one of its rooms, sends one random member its digest for that room
+ * (highest contiguous room sequence per sender) and pulls the retained
+ * messages it lacks. Room sequences count each room separately, so a sender's
+ * messages in rooms this node is not in leave no gaps.
+ */
+public class GossipDissemination {
+    public interface Network {
+        // Rooms this node receives messages for
+        Collection<String> rooms();
+        Collection<Integer> members(String room);
+        void send(int peerId, ChatMessage message);
+        List<ChatMessage> pull(int peerId, String room, Map<Integer, Long> digest, int maxMessages) throws Exception;
+    }
+
+    public static final int PULL_BATCH = 256;
+    private static final int RETAINED_MESSAGES = 4096;
+    private static final int MAX_OUT_OF_ORDER = 4096;
+    private static final int BLOOM_CAPACITY = 100_000;
+    private static final double BLOOM_FALSE_POSITIVE_RATE = 0.001;
+    private static final long BLOOM_ROTATE_MS = 30_000;
+    private static final int LATENCY_SAMPLES = 4096;
+
+    private final int selfId;
+    private final int minFanout;
+    private final long antiEntropyIntervalMillis;
+    private final ScheduledExecutorService scheduler;
+    private final Network network;
+    private final Consumer<ChatMessage> deliver;
+    private final RotatingBloomFilter seen = new RotatingBloomFilter(BLOOM_CAPACITY, BLOOM_FALSE_POSITIVE_RATE, BLOOM_ROTATE_MS);
+    private final Map<String, Map<Integer, SenderProgress>> progress = new ConcurrentHashMap<>();
+    private final ArrayDeque<ChatMessage> retained = new ArrayDeque<>();
+    private final LatencyReservoir latency = new LatencyReservoir(LATENCY_SAMPLES);
+
+    private final LongAdder firstReceipts = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder forwarded = new LongAdder();
+    private final LongAdder pullRounds = new LongAdder();
+    private final LongAdder repaired = new LongAdder();
+
+    public GossipDissemination(int selfId, int minFanout, long antiEntropyIntervalMillis, ScheduledExecutorService scheduler,
+                               Network network, Consumer<ChatMessage> deliver) {
+        this.selfId = selfId;
+        this.minFanout = minFanout;
+        this.antiEntropyIntervalMillis = antiEntropyIntervalMillis;
+        this.scheduler = scheduler;
+        this.network = network;
+        this.deliver = deliver;
+    }
+
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::antiEntropy, antiEntropyIntervalMillis, antiEntropyIntervalMillis,
+            TimeUnit.MILLISECONDS);
+    }
+
+    // A message originating at this node
+    public void publish(ChatMessage message) {
+        if (accept(message)) {
+            forward(message);
+        }
+    }
+
+    // A pushed copy arrived from a peer
+    public void onPush(ChatMessage message) {
+        if (seen.mightContain(message.getSenderID(), message.getSenderSequence())) {
+            duplicates.increment();
+            return;
+        }
+        if (accept(message)) {
+            firstReceipts.increment();
+            recordLatency(message);
+            forward(message);
+        } else {
+            duplicates.increment();
+        }
+    }
+
+    // One anti-entropy round in a random room against a random member
+    public void antiEntropy() {
+        List<String> rooms = new ArrayList<>(network.rooms());
+        if (rooms.isEmpty()) {
+            return;
+        }
+        String room = rooms.get(ThreadLocalRandom.current().nextInt(rooms.size()));
+        List<Integer> peers = peers(room);
+        if (peers.isEmpty()) {
+            return;
+        }
+        int peer = peers.get(ThreadLocalRandom.current().nextInt(peers.size()));
+        pullRounds.increment();
+        try {
+            for (ChatMessage message : network.pull(peer, room, digest(room), PULL_BATCH)) {
+                // Bypasses the Bloom filter so a false positive there cannot hide a message for good
+                if (accept(message)) {
+                    repaired.increment();
+                    recordLatency(message);
+                }
+            }
+        } catch (Exception e) {
+            // Another peer is picked next round
+        }
+    }
+
+    // Retained messages of the room that the caller's digest does not cover yet
+    public List<ChatMessage> pull(String room, Map<Integer, Long> digest, int maxMessages) {
+        int limit = Math.min(maxMessages, PULL_BATCH);
+        List<ChatMessage> missing = new ArrayList<>();
+        synchronized (retained) {
+            for (ChatMessage message : retained) {
+                if (missing.size() >= limit) {
+                    break;
+                }
+                if (!message.getRoom().equals(room)) {
+                    continue;
+                }
+                Long contiguous = digest.get(message.getSenderID());
+                if (contiguous == null || message.getRoomSequence() > contiguous) {
+                    missing.add(message);
+                }
+            }
+        }
+        return missing;
+    }
+
+    public Map<Integer, Long> digest(String room) {
+        Map<Integer, Long> digest = new HashMap<>();
+        for (Map.Entry<Integer, SenderProgress> entry : progress(room).entrySet()) {
+            synchronized (entry.getValue()) {
+                digest.put(entry.getKey(), entry.getValue().contiguous);
+            }
+        }
+        return digest;
+    }
+
+    // Counts a message that arrived another way (history catch-up) as delivered, so pulls do not send it again
+    public void markDelivered(ChatMessage message) {
+        SenderProgress sender = progress(message);
+        synchronized (sender) {
+            sender.markDelivered(message.getRoomSequence());
+        }
+        seen.add(message.getSenderID(), message.getSenderSequence());
+    }
+
+    public void forgetSender(int senderId) {
+        for (Map<Integer, SenderProgress> room : progress.values()) {
+            room.remove(senderId);
+        }
+    }
+
+    // Sized by the room, not the cluster: a message only spreads among the room's members
+    public int fanout(String room) {
+        int n = network.members(room).size();
+        return Math.max(minFanout, (int) Math.ceil(Math.log(Math.max(n, 1))) + 1);
+    }
+
+    public LatencyReservoir getLatency() {
+        return latency;
+    }
+
+    // Share of received copies that were duplicates
+    public double getDuplicateRatio() {
+        long dup = duplicates.sum();
+        long total = dup + firstReceipts.sum() + repaired.sum();
+        return total == 0 ? 0.0 : (double) dup / total;
+    }
+
+    public String getMetrics() {
+        return "fanout " + fanouts() + ", received " + firstReceipts.sum() + ", duplicates " + duplicates.sum()
+            + ", forwarded " + forwarded.sum() + ", anti-entropy rounds " + pullRounds.sum()
+            + " (repaired " + repaired.sum() + "), Bloom rotations " + seen.getRotations()
+            + " (" + seen.getSizeBytes() / 1024 + "KB)";
+    }
+
+    private String fanouts() {
+        StringBuilder out = new StringBuilder();
+        for (String room : new TreeSet<>(network.rooms())) {
+            out.append(out.length() == 0 ? "" : " ").append('#').append(room).append('=').append(fanout(room));
+        }
+        return out.length() == 0 ? String.valueOf(minFanout) : out.toString();
+    }
+
+    // Exact first-delivery check; delivers and retains the message if it is new
+    private boolean accept(ChatMessage message) {
+        SenderProgress sender = progress(message);
+        synchronized (sender) {
+            if (!sender.markDelivered(message.getRoomSequence())) {
+                return false;
+            }
+        }
+        seen.add(message.getSenderID(), message.getSenderSequence());
+        synchronized (retained) {
+            retained.addLast(message);
+            if (retained.size() > RETAINED_MESSAGES) {
+                retained.removeFirst();
+            }
+        }
+        deliver.accept(message);
+        return true;
+    }
+
+    private void forward(ChatMessage message) {
+        List<Integer> candidates = peers(message.getRoom());
+        candidates.remove(Integer.valueOf(message.getSenderID()));
+        Collections.shuffle(candidates, ThreadLocalRandom.current());
+        for (int peer : candidates.subList(0, Math.min(fanout(message.getRoom()), candidates.size()))) {
+            network.send(peer, message);
+            forwarded.increment();
+        }
+    }
+
+    private List<Integer> peers(String room) {
+        List<Integer> peers = new ArrayList<>(network.members(room));
+        peers.remove(Integer.valueOf(selfId));
+        return peers;
+    }
+
+    private Map<Integer, SenderProgress> progress(String room) {
+        return progress.computeIfAbsent(room, r -> new ConcurrentHashMap<>());
+    }
+
+    private SenderProgress progress(ChatMessage message) {
+        long sequence = message.getRoomSequence();
+        return progress(message.getRoom()).computeIfAbsent(message.getSenderID(),
+            id -> new SenderProgress(ChatMessage.sequenceBase(sequence)));
+    }
+
+    private void recordLatency(ChatMessage message) {
+        if (message.getOriginTimeMillis() > 0) {
+            latency.record(Math.max(0, System.currentTimeMillis() - message.getOriginTimeMillis()));
+        }
+    }
+
+    // Highest contiguous room sequence delivered from one sender, plus whatever arrived ahead of a gap
+    private static class SenderProgress {
+        long contiguous;
+        final TreeSet<Long> ahead = new TreeSet<>();
+
+        SenderProgress(long base) {
+            this.contiguous = base;
+        }
+
+        boolean markDelivered(long sequence) {
+            long base = ChatMessage.sequenceBase(sequence);
+            if (base > ChatMessage.sequenceBase(contiguous)) {
+                // The sender restarted with a new incarnation
+                contiguous = base;
+                ahead.clear();
+            }
+            if (sequence <= contiguous || !ahead.add(sequence)) {
+                return false;
+            }
+            while (ahead.remove(contiguous + 1)) {
+                contiguous++;
+            }
+            // A gap nobody can fill any more must not pin the digest forever
+            while (ahead.size() > MAX_OUT_OF_ORDER) {
+                contiguous = ahead.pollFirst();
+                while (ahead.remove(contiguous + 1)) {
+                    contiguous++;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+// GossipMembership.java - Periodic push-pull exchange of membership deltas with random peers
+package chat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Each round picks `fanout` random live peers. To each we push the entries that
+ * changed locally since our last push to it, and pull the entries it changed
+ * since our last pull from it, so a round costs O(fanout + changes) whatever
+ * the cluster size.
+ */
+public class GossipMembership {
+    private final int selfId;
+    private final MembershipList members;
+    private final PeerConnectionManager connections;
+    private final ScheduledExecutorService scheduler;
+    private final int fanout;
+    private final long intervalMillis;
+    private final long suspectTimeoutMillis;
+    private final long deadRetentionMillis;
+    private final ExecutorService exchanges = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "gossip");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Our version last pushed to each peer, and the peer's version we last pulled
+    private final Map<Integer, Long> pushedVersion = new ConcurrentHashMap<>();
+    private final Map<Integer, Long> pulledVersion = new ConcurrentHashMap<>();
+    private final Set<Integer> inFlight = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder rounds = new LongAdder();
+    private final LongAdder exchangesDone = new LongAdder();
+    private final LongAdder exchangesFailed = new LongAdder();
+    private final LongAdder entriesSent = new LongAdder();
+    private final LongAdder entriesReceived = new LongAdder();
+
+    public GossipMembership(int selfId, MembershipList members, PeerConnectionManager connections,
+                            ScheduledExecutorService scheduler, int fanout, long intervalMillis,
+                            long suspectTimeoutMillis, long deadRetentionMillis) {
+        this.selfId = selfId;
+        this.members = members;
+        this.connections = connections;
+        this.scheduler = scheduler;
+        this.fanout = fanout;
+        this.intervalMillis = intervalMillis;
+        this.suspectTimeoutMillis = suspectTimeoutMillis;
+        this.deadRetentionMillis = deadRetentionMillis;
+    }
+
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::round, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        exchanges.shutdownNow();
+    }
+
+    // Full pull from a single seed; everything else arrives through later rounds
+    public void join(int seedId, ChatNode seed) throws Exception {
+        exchange(seedId, seed);
+    }
+
+    public GossipDigest handle(int fromId, List<MemberEntry> updates, long sinceVersion) {
+        entriesReceived.add(updates.size());
+        members.merge(updates);
+        List<MemberEntry> changed = members.changedSince(sinceVersion);
+        entriesSent.add(changed.size());
+        return new GossipDigest(changed, members.getVersion());
+    }
+
+    public long getRounds() {
+        return rounds.sum();
+    }
+
+    public long getExchanges() {
+        return exchangesDone.sum();
+    }
+
+    public long getExchangesFailed() {
+        return exchangesFailed.sum();
+    }
+
+    public long getEntriesSent() {
+        return entriesSent.sum();
+    }
+
+    public long getEntriesReceived() {
+        return entriesReceived.sum();
+    }
+
+    private void round() {
+        try {
+            members.reap(suspectTimeoutMillis, deadRetentionMillis);
+            rounds.increment();
+
+            List<Integer> candidates = new ArrayList<>();
+            for (MemberEntry entry : members.entries()) {
+                if (entry.getNodeId() != selfId && entry.getState() != MemberEntry.State.DEAD) {
+                    candidates.add(entry.getNodeId());
+                }
+            }
+            pushedVersion.keySet().retainAll(candidates);
+            pulledVersion.keySet().retainAll(candidates);
+
+            Collections.shuffle(candidates);
+            for (int peer : candidates.subList(0, Math.min(fanout, candidates.size()))) {
+                if (inFlight.add(peer)) {
+                    exchanges.execute(() -> {
+                        try {
+                            ChatNode stub = connections.resolve(peer);
+                            if (stub != null) {
+                                exchange(peer, stub);
+                            }
+                        } catch (Exception e) {
+                            exchangesFailed.increment();
+                            connections.reportFailure(peer);
+                        } finally {
+                            inFlight.remove(peer);
+                        }
+                    });
+                }
+            }
+        } catch (Exception e) {
+            EventLog.warn("membership", "Gossip round failed: {}", e.getMessage());
+        }
+    }
+
+    private void exchange(int peer, ChatNode stub) throws Exception {
+        long versionAtSend = members.getVersion();
+        List<MemberEntry> updates = members.changedSince(pushedVersion.getOrDefault(peer, 0L));
+        long since = pulledVersion.getOrDefault(peer, 0L);
+
+        GossipDigest digest = stub.gossip(selfId, updates, since);
+        entriesSent.add(updates.size());
+        entriesReceived.add(digest.getEntries().size());
+        members.merge(digest.getEntries());
+
+        pushedVersion.put(peer, versionAtSend);
+        // A version that went backwards means the peer restarted; pull everything again
+        pulledVersion.put(peer, digest.getVersion() < since ? 0L : digest.getVersion());
+        exchangesDone.increment();
+    }
+}
@@ -0,0 +1,68 @@
+// HashRing.java - Consistent hashing of room names onto nodes
+package chat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+
+/*
+ * Every node is placed on a 64-bit ring at `virtualNodes` pseudo-random points;
+ * a key belongs to the first node point at or after the key's hash, wrapping
+ * around. Adding or removing a node only moves the keys between its points and
+ * their predecessors, about 1/n of them, and the virtual points keep the share
+ * of each node close to even.
+ */
+public class HashRing {
+    private final int virtualNodes;
+    private final TreeMap<Long, Integer> ring = new TreeMap<>();
+
+    public HashRing(int virtualNodes) {
+        this.virtualNodes = virtualNodes;
+    }
+
+    public synchronized boolean add(int nodeId) {
+        if (ring.containsValue(nodeId)) {
+            return false;
+        }
+        for (int i = 0; i < virtualNodes; i++) {
+            ring.put(hash(nodeId, i), nodeId);
+        }
+        return true;
+    }
+
+    public synchronized boolean remove(int nodeId) {
+        return ring.values().removeIf(id -> id == nodeId);
+    }
+
+    // Owning node, or -1 while the ring is empty
+    public synchronized int owner(String key) {
+        if (ring.isEmpty()) {
+            return -1;
+        }
+        Map.Entry<Long, Integer> entry = ring.ceilingEntry(hash(key));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    public synchronized int size() {
+        return ring.size() / Math.max(1, virtualNodes);
+    }
+
+    private static long hash(int nodeId, int replica) {
+        return mix(0x9E3779B97F4A7C15L * (nodeId + 1) + replica);
+    }
+
+    // FNV-1a over the UTF-8 bytes, then a 64-bit finalizer so similar names spread out
+    private static long hash(String key) {
+        long h = 0xCBF29CE484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h = (h ^ (b & 0xFF)) * 0x100000001B3L;
+        }
+        return mix(h);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,175 @@
+// HeartbeatMonitor.java - Concurrent, jittered heartbeats to all peers feeding the failure detector
+package chat;
+
+import java.util.Collection;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+public class HeartbeatMonitor {
+    public interface Listener {
+        void onSuspected(int peerId, double phi, long silentMillis);
+        void onRecovered(int peerId, long suspectedMillis);
+    }
+
+    private final int selfId;
+    private final Collection<Integer> peers;
+    private final PeerConnectionManager connections;
+    private final PhiAccrualFailureDetector detector;
+    private final ScheduledExecutorService scheduler;
+    private final Listener listener;
+    private final long intervalMillis;
+    private final Random random = new Random();
+    private final ExecutorService pingExecutor = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "heartbeat");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Set<Integer> inFlight = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<Integer, Long> suspectedSince = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, LatencyHistogram> pingLatency = new ConcurrentHashMap<>();
+    private volatile boolean running;
+
+    private final LongAdder heartbeatsSent = new LongAdder();
+    private final LongAdder heartbeatsFailed = new LongAdder();
+    private final LongAdder suspicions = new LongAdder();
+    private final LongAdder falseSuspicions = new LongAdder();
+    private final AtomicLong lastDetectionMillis = new AtomicLong(-1);
+
+    public HeartbeatMonitor(int selfId, Collection<Integer> peers, PeerConnectionManager connections,
+                            PhiAccrualFailureDetector detector, ScheduledExecutorService scheduler,
+                            Listener listener, long intervalMillis) {
+        this.selfId = selfId;
+        this.peers = peers;
+        this.connections = connections;
+        this.detector = detector;
+        this.scheduler = scheduler;
+        this.listener = listener;
+        this.intervalMillis = intervalMillis;
+    }
+
+    public void start() {
+        running = true;
+        scheduleRound();
+    }
+
+    public void stop() {
+        running = false;
+        pingExecutor.shutdownNow();
+    }
+
+    public boolean isSuspected(int peerId) {
+        return suspectedSince.containsKey(peerId);
+    }
+
+    // Round trip of successful pings to the peer, or null if none was sent yet
+    public LatencyHistogram getPingLatency(int peerId) {
+        return pingLatency.get(peerId);
+    }
+
+    public PhiAccrualFailureDetector getDetector() {
+        return detector;
+    }
+
+    public long getHeartbeatsSent() {
+        return heartbeatsSent.sum();
+    }
+
+    public long getHeartbeatsFailed() {
+        return heartbeatsFailed.sum();
+    }
+
+    public long getSuspicions() {
+        return suspicions.sum();
+    }
+
+    // Suspected peers that later turned out to be alive
+    public long getFalseSuspicions() {
+        return falseSuspicions.sum();
+    }
+
+    // Silence before the most recent suspicion, i.e. the detection time
+    public long getLastDetectionMillis() {
+        return lastDetectionMillis.get();
+    }
+
+    private void scheduleRound() {
+        if (!running) {
+            return;
+        }
+        // +/-20% jitter keeps nodes from pinging in lockstep
+        long delay = intervalMillis * 8 / 10 + (long) (random.nextDouble() * intervalMillis * 4 / 10);
+        scheduler.schedule(this::round, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void round() {
+        try {
+            for (int peer : peers) {
+                if (peer != selfId && inFlight.add(peer)) {
+                    pingExecutor.execute(() -> ping(peer));
+                }
+            }
+            evaluate();
+        } catch (Exception e) {
+            EventLog.warn("failure", "Heartbeat round failed: {}", e.getMessage());
+        } finally {
+            scheduleRound();
+        }
+    }
+
+    private void ping(int peer) {
+        try {
+            ChatNode stub = connections.resolve(peer);
+            if (stub == null) {
+                heartbeatsFailed.increment();
+                return;
+            }
+            heartbeatsSent.increment();
+            long start = System.nanoTime();
+            stub.pingNode();
+            pingLatency.computeIfAbsent(peer, id -> new LatencyHistogram()).recordSince(start);
+            detector.heartbeat(peer, System.currentTimeMillis());
+            connections.reportSuccess(peer);
+        } catch (Exception e) {
+            heartbeatsFailed.increment();
+            connections.reportFailure(peer);
+        } finally {
+            inFlight.remove(peer);
+        }
+    }
+
+    private void evaluate() {
+        long now = System.currentTimeMillis();
+        for (int peer : peers) {
+            if (peer == selfId) {
+                continue;
+            }
+            detector.watch(peer, now);
+            double phi = detector.phi(peer, now);
+            if (phi >= detector.getThreshold()) {
+                if (suspectedSince.putIfAbsent(peer, now) == null) {
+                    long silent = detector.millisSinceHeartbeat(peer, now);
+                    suspicions.increment();
+                    lastDetectionMillis.set(silent);
+                    listener.onSuspected(peer, phi, silent);
+                }
+            } else {
+                Long since = suspectedSince.remove(peer);
+                if (since != null) {
+                    falseSuspicions.increment();
+                    listener.onRecovered(peer, now - since);
+                }
+            }
+        }
+        // Stop tracking peers that have left the membership
+        suspectedSince.keySet().retainAll(peers);
+        pingLatency.keySet().retainAll(peers);
+    }
+}
@@ -0,0 +1,45 @@
+// HistoryChunk.java - One bounded piece of a peer's message log sent during catch-up
+package chat;
+
+import java.io.Serializable;
+
+public class HistoryChunk implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final byte[] records;
+    private final int count;
+    private final long nextCursor;
+    private final boolean complete;
+    private final long clock;
+
+    public HistoryChunk(byte[] records, int count, long nextCursor, boolean complete, long clock) {
+        this.records = records;
+        this.count = count;
+        this.nextCursor = nextCursor;
+        this.complete = complete;
+        this.clock = clock;
+    }
+
+    // Raw log records in MessageLog's record layout, back to back
+    public byte[] getRecords() {
+        return records;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    // Pass back as the cursor to fetch the next chunk
+    public long getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    // The sender's Lamport clock when the chunk was cut
+    public long getClock() {
+        return clock;
+    }
+}
@@ -0,0 +1,186 @@
+// HoldBackQueue.java - Releases messages in Lamport total order once they are stable
+package chat;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+import java.util.function.LongSupplier;
+
+/*
+ * A message (t, n) is stable when every other live peer has been seen at a
+ * timestamp >= t: channels are FIFO and Lamport timestamps from a peer only
+ * grow, so nothing that orders before it can still arrive. Our own messages
+ * are queued here when they are stamped, before they are sent, so they never
+ * need a watermark: a peer message queued after the tick was stamped later.
+ *
+ * Peers that stay silent are bounded by maxHoldMillis so the queue cannot
+ * stall. That release is best-effort: a message let out by timeout may still
+ * be overtaken by an earlier one from the silent peer, which is then
+ * delivered late and counted, not reordered.
+ */
+public class HoldBackQueue {
+    private final int selfId;
+    private final Collection<Integer> peers;
+    private final LamportClock clock;
+    private final Consumer<ChatMessage> deliver;
+    private final long maxHoldNanos;
+    private final LongSupplier nanoClock;
+
+    private final ConcurrentSkipListSet<Held> pending = new ConcurrentSkipListSet<>();
+    private final Map<Integer, AtomicLong> watermarks = new ConcurrentHashMap<>();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final AtomicLong arrivals = new AtomicLong();
+    // Peers share the read side; an own send takes the write side so no peer message lands between tick and add
+    private final ReadWriteLock stamping = new ReentrantReadWriteLock();
+
+    private volatile Held lastDelivered;
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder deliveredByTimeout = new LongAdder();
+    private final LongAdder deliveredLate = new LongAdder();
+
+    public HoldBackQueue(int selfId, Collection<Integer> peers, LamportClock clock, long maxHoldMillis,
+                         Consumer<ChatMessage> deliver) {
+        this(selfId, peers, clock, maxHoldMillis, System::nanoTime, deliver);
+    }
+
+    // The nano clock decides when silent peers stop holding messages back; the simulator passes its virtual clock
+    public HoldBackQueue(int selfId, Collection<Integer> peers, LamportClock clock, long maxHoldMillis,
+                         LongSupplier nanoClock, Consumer<ChatMessage> deliver) {
+        this.selfId = selfId;
+        this.peers = peers;
+        this.clock = clock;
+        this.maxHoldNanos = maxHoldMillis * 1_000_000L;
+        this.nanoClock = nanoClock;
+        this.deliver = deliver;
+    }
+
+    // A peer's message: moves the Lamport clock past it and queues it
+    public void add(ChatMessage message) {
+        stamping.readLock().lock();
+        try {
+            clock.update(message.getLogicalTimestamp());
+            queue(message);
+        } finally {
+            stamping.readLock().unlock();
+        }
+    }
+
+    // Our own message: stamped with the next tick and queued before the caller sends it anywhere
+    public ChatMessage addOwn(LongFunction<ChatMessage> stamp) {
+        stamping.writeLock().lock();
+        try {
+            ChatMessage message = stamp.apply(clock.tick());
+            queue(message);
+            return message;
+        } finally {
+            stamping.writeLock().unlock();
+        }
+    }
+
+    private void queue(ChatMessage message) {
+        pending.add(new Held(message, nanoClock.getAsLong(), arrivals.incrementAndGet()));
+        advance(message.getSenderID(), message.getLogicalTimestamp());
+    }
+
+    // Everything later received from this peer carries a larger timestamp
+    public void advance(int peerId, long timestamp) {
+        watermarks.computeIfAbsent(peerId, id -> new AtomicLong()).accumulateAndGet(timestamp, Math::max);
+    }
+
+    public void forgetPeer(int peerId) {
+        watermarks.remove(peerId);
+    }
+
+    public long getWatermark(int peerId) {
+        AtomicLong watermark = watermarks.get(peerId);
+        return watermark == null ? 0 : watermark.get();
+    }
+
+    public int size() {
+        return pending.size();
+    }
+
+    public long getDeliveredCount() {
+        return delivered.sum();
+    }
+
+    public long getDeliveredByTimeoutCount() {
+        return deliveredByTimeout.sum();
+    }
+
+    public long getDeliveredLateCount() {
+        return deliveredLate.sum();
+    }
+
+    // Only one thread delivers at a time; others just leave their messages queued
+    public void drain() {
+        while (!pending.isEmpty() && draining.compareAndSet(false, true)) {
+            try {
+                Held head;
+                while ((head = pending.isEmpty() ? null : pending.first()) != null) {
+                    boolean stable = isStable(head.message);
+                    if (!stable && !isExpired(head)) {
+                        break;
+                    }
+                    if (pending.remove(head)) {
+                        if (!stable) {
+                            deliveredByTimeout.increment();
+                        }
+                        if (lastDelivered != null && head.compareTo(lastDelivered) < 0) {
+                            deliveredLate.increment();
+                        }
+                        lastDelivered = head;
+                        delivered.increment();
+                        deliver.accept(head.message);
+                    }
+                }
+            } finally {
+                draining.set(false);
+            }
+            Held head = pending.isEmpty() ? null : pending.first();
+            if (head == null || !(isStable(head.message) || isExpired(head))) {
+                return;
+            }
+        }
+    }
+
+    private boolean isExpired(Held held) {
+        return nanoClock.getAsLong() - held.arrivalNanos >= maxHoldNanos;
+    }
+
+    private boolean isStable(ChatMessage message) {
+        long timestamp = message.getLogicalTimestamp();
+        for (int peer : peers) {
+            if (peer != selfId && peer != message.getSenderID() && getWatermark(peer) < timestamp) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class Held implements Comparable<Held> {
+        final ChatMessage message;
+        final long arrivalNanos;
+        final long arrival;
+
+        Held(ChatMessage message, long arrivalNanos, long arrival) {
+            this.message = message;
+            this.arrivalNanos = arrivalNanos;
+            this.arrival = arrival;
+        }
+
+        @Override
+        public int compareTo(Held other) {
+            int order = message.compareTo(other.message);
+            return order != 0 ? order : Long.compare(arrival, other.arrival);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+// LamportClock.java - Lock-free 64-bit Lamport logical clock
+package chat;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class LamportClock {
+    private final AtomicLong time = new AtomicLong();
+
+    // Local event (e.g. sending a message)
+    public long tick() {
+        return time.incrementAndGet();
+    }
+
+    // Receive event: max(local, received) + 1
+    public long update(long received) {
+        return time.accumulateAndGet(received, (local, remote) -> Math.max(local, remote) + 1);
+    }
+
+    // Raise the clock to at least the given value without counting an event
+    public long advanceTo(long value) {
+        return time.accumulateAndGet(value, Math::max);
+    }
+
+    public long get() {
+        return time.get();
+    }
+
+    // Total order over events: timestamp first, node ID breaks ties
+    public static int compare(long timestamp1, int nodeId1, long timestamp2, int nodeId2) {
+        int byTime = Long.compare(timestamp1, timestamp2);
+        return byTime != 0 ? byTime : Integer.compare(nodeId1, nodeId2);
+    }
+}
@@ -0,0 +1,33 @@
+// LatencyReservoir.java - Fixed-size ring of recent latency samples with percentile queries
+package chat;
+
+import java.util.Arrays;
+
+public class LatencyReservoir {
+    private final long[] samples;
+    private long recorded;
+
+    public LatencyReservoir(int size) {
+        this.samples = new long[size];
+    }
+
+    public synchronized void record(long value) {
+        samples[(int) (recorded++ % samples.length)] = value;
+    }
+
+    public synchronized long getCount() {
+        return recorded;
+    }
+
+    // Percentile (0-100) over the most recent samples, or -1 if nothing was recorded
+    public synchronized long percentile(double percentile) {
+        int size = (int) Math.min(recorded, samples.length);
+        if (size == 0) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * size) - 1;
+        return sorted[Math.max(0, Math.min(size - 1, index))];
+    }
+}
@@ -0,0 +1,134 @@
+// ListenerRegistry.java - Pushes delivered messages to subscribed clients in batches
+package chat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Each subscriber has its own bounded queue and pusher thread, so delivery
+ * never waits on a client. The pusher sends everything queued since its last
+ * call as one batch of consecutive log sequences; a client that falls a full
+ * queue behind loses its oldest messages, and one whose callback fails is
+ * dropped.
+ */
+public class ListenerRegistry {
+    public static final int QUEUE_CAPACITY = 4096;
+    public static final int MAX_BATCH_MESSAGES = 256;
+
+    private final Map<ChatListener, Subscriber> subscribers = new ConcurrentHashMap<>();
+    private final ExecutorService pushers = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "listener-pusher");
+        t.setDaemon(true);
+        return t;
+    });
+    private final LongAdder pushed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    public void subscribe(ChatListener listener) {
+        subscribers.computeIfAbsent(listener, l -> {
+            Subscriber subscriber = new Subscriber(l);
+            pushers.execute(subscriber);
+            return subscriber;
+        });
+    }
+
+    public void unsubscribe(ChatListener listener) {
+        Subscriber subscriber = subscribers.remove(listener);
+        if (subscriber != null) {
+            subscriber.stop();
+        }
+    }
+
+    // Called in log order with the log sequence the message was appended at
+    public void publish(long sequence, ChatMessage message) {
+        Pending pending = new Pending(sequence, message);
+        for (Subscriber subscriber : subscribers.values()) {
+            subscriber.offer(pending);
+        }
+    }
+
+    public int size() {
+        return subscribers.size();
+    }
+
+    public String getMetrics() {
+        return subscribers.size() + " subscribed, pushed " + pushed.sum() + ", dropped " + dropped.sum();
+    }
+
+    private class Subscriber implements Runnable {
+        private final ChatListener listener;
+        private final BlockingQueue<Pending> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private volatile boolean running = true;
+        private volatile Thread worker;
+
+        Subscriber(ChatListener listener) {
+            this.listener = listener;
+        }
+
+        void offer(Pending pending) {
+            while (!queue.offer(pending)) {
+                if (queue.poll() != null) {
+                    dropped.increment();
+                }
+            }
+        }
+
+        void stop() {
+            running = false;
+            Thread t = worker;
+            if (t != null) {
+                t.interrupt();
+            }
+        }
+
+        @Override
+        public void run() {
+            worker = Thread.currentThread();
+            List<ChatMessage> batch = new ArrayList<>();
+            Pending next = null;
+            while (running) {
+                try {
+                    if (next == null) {
+                        next = queue.take();
+                    }
+                } catch (InterruptedException e) {
+                    break;
+                }
+                // A batch ends where a dropped message left a hole in the sequence
+                long firstSequence = next.sequence;
+                do {
+                    batch.add(next.message);
+                    next = queue.poll();
+                } while (next != null && next.sequence == firstSequence + batch.size() && batch.size() < MAX_BATCH_MESSAGES);
+                try {
+                    listener.onMessages(firstSequence, batch);
+                    pushed.add(batch.size());
+                } catch (Exception e) {
+                    if (running) {
+                        EventLog.warn("client", "Dropping client listener: {}", e.getMessage());
+                        subscribers.remove(listener, this);
+                    }
+                    break;
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    private static class Pending {
+        final long sequence;
+        final ChatMessage message;
+
+        Pending(long sequence, ChatMessage message) {
+            this.sequence = sequence;
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+// MemberEntry.java - Versioned membership record exchanged by gossip
+package chat;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+public class MemberEntry implements Serializable {
+    private static final long serialVersionUID = 2L;
+
+    // Declared in precedence order: at equal incarnation a later state wins
+    public enum State { ALIVE, SUSPECT, DEAD }
+
+    private final int nodeId;
+    private final String nodeName;
+    private final State state;
+    private final long incarnation;
+    private final Set<String> rooms;
+
+    public MemberEntry(int nodeId, String nodeName, State state, long incarnation) {
+        this(nodeId, nodeName, state, incarnation, Set.of());
+    }
+
+    public MemberEntry(int nodeId, String nodeName, State state, long incarnation, Set<String> rooms) {
+        this.nodeId = nodeId;
+        this.nodeName = nodeName;
+        this.state = state;
+        this.incarnation = incarnation;
+        this.rooms = Collections.unmodifiableSet(new TreeSet<>(rooms));
+    }
+
+    public int getNodeId() {
+        return nodeId;
+    }
+
+    public String getNodeName() {
+        return nodeName;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public long getIncarnation() {
+        return incarnation;
+    }
+
+    // Rooms the node subscribes to; only the node itself changes them, under a new incarnation
+    public Set<String> getRooms() {
+        return rooms;
+    }
+
+    public MemberEntry withState(State newState) {
+        return new MemberEntry(nodeId, nodeName, newState, incarnation, rooms);
+    }
+
+    // Higher incarnation wins; at equal incarnation DEAD > SUSPECT > ALIVE
+    public boolean supersedes(MemberEntry other) {
+        if (incarnation != other.incarnation) {
+            return incarnation > other.incarnation;
+        }
+        return state.compareTo(other.state) > 0;
+    }
+
+    @Override
+    public String toString() {
+        return nodeId + "(" + nodeName + ")=" + state + "@" + incarnation + rooms;
+    }
+}
@@ -0,0 +1,185 @@
+// MembershipList.java - Local view of cluster membership with versioned entries
+package chat;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * Every local change stamps the entry with the next local version, so a peer
+ * that last saw version v only needs the entries stamped after v. A node that
+ * hears it is suspected or dead refutes by raising its own incarnation.
+ * Purged DEAD entries leave a tombstone with their incarnation, so a stale
+ * rumour still circulating cannot bring the node back; only a restart, which
+ * comes with a higher incarnation, can.
+ *
+ * The listener runs after the list's lock is released, one change at a time
+ * and in the order the changes were made.
+ */
+public class MembershipList {
+    public interface Listener {
+        void onMemberChanged(MemberEntry entry, MemberEntry previous);
+    }
+
+    private final int selfId;
+    private final Listener listener;
+    private final Map<Integer, Versioned> members = new HashMap<>();
+    private final Map<Integer, Long> tombstones = new HashMap<>();
+    private final Deque<Change> changes = new ArrayDeque<>();
+    private final Object dispatching = new Object();
+    private long version;
+
+    public MembershipList(int selfId, String selfName, long incarnation, Listener listener) {
+        this(selfId, selfName, incarnation, Set.of(), listener);
+    }
+
+    public MembershipList(int selfId, String selfName, long incarnation, Set<String> rooms, Listener listener) {
+        this.selfId = selfId;
+        this.listener = listener;
+        members.put(selfId, new Versioned(new MemberEntry(selfId, selfName, MemberEntry.State.ALIVE, incarnation, rooms), ++version));
+    }
+
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    public synchronized MemberEntry self() {
+        return members.get(selfId).entry;
+    }
+
+    public synchronized MemberEntry get(int nodeId) {
+        Versioned v = members.get(nodeId);
+        return v == null ? null : v.entry;
+    }
+
+    public synchronized List<MemberEntry> entries() {
+        List<MemberEntry> entries = new ArrayList<>();
+        for (Versioned v : members.values()) {
+            entries.add(v.entry);
+        }
+        return entries;
+    }
+
+    public synchronized List<MemberEntry> changedSince(long sinceVersion) {
+        List<MemberEntry> changed = new ArrayList<>();
+        for (Versioned v : members.values()) {
+            if (v.version > sinceVersion) {
+                changed.add(v.entry);
+            }
+        }
+        return changed;
+    }
+
+    public void merge(List<MemberEntry> updates) {
+        synchronized (this) {
+            for (MemberEntry update : updates) {
+                if (update.getNodeId() == selfId) {
+                    refuteIfNeeded(update);
+                    continue;
+                }
+                Versioned current = members.get(update.getNodeId());
+                if (current == null) {
+                    Long buried = tombstones.get(update.getNodeId());
+                    if (buried != null && update.getIncarnation() <= buried) {
+                        continue;
+                    }
+                    tombstones.remove(update.getNodeId());
+                    apply(update, null);
+                } else if (update.supersedes(current.entry)) {
+                    apply(update, current.entry);
+                }
+            }
+        }
+        dispatch();
+    }
+
+    public void suspect(int nodeId) {
+        synchronized (this) {
+            Versioned current = members.get(nodeId);
+            if (nodeId != selfId && current != null && current.entry.getState() == MemberEntry.State.ALIVE) {
+                apply(current.entry.withState(MemberEntry.State.SUSPECT), current.entry);
+            }
+        }
+        dispatch();
+    }
+
+    // A new incarnation makes the changed subscriptions supersede the old entry everywhere
+    public synchronized MemberEntry setSelfRooms(Set<String> rooms) {
+        MemberEntry self = members.get(selfId).entry;
+        MemberEntry updated = new MemberEntry(selfId, self.getNodeName(), MemberEntry.State.ALIVE,
+            self.getIncarnation() + 1, rooms);
+        members.put(selfId, new Versioned(updated, ++version));
+        return updated;
+    }
+
+    // SUSPECT entries older than suspectTimeout become DEAD; DEAD ones are dropped after deadRetention
+    public void reap(long suspectTimeoutMillis, long deadRetentionMillis) {
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            for (Versioned v : new ArrayList<>(members.values())) {
+                long age = now - v.changedAt;
+                if (v.entry.getState() == MemberEntry.State.SUSPECT && age >= suspectTimeoutMillis) {
+                    apply(v.entry.withState(MemberEntry.State.DEAD), v.entry);
+                } else if (v.entry.getState() == MemberEntry.State.DEAD && age >= deadRetentionMillis) {
+                    members.remove(v.entry.getNodeId());
+                    tombstones.put(v.entry.getNodeId(), v.entry.getIncarnation());
+                }
+            }
+        }
+        dispatch();
+    }
+
+    private void refuteIfNeeded(MemberEntry claim) {
+        MemberEntry self = members.get(selfId).entry;
+        if (claim.getState() != MemberEntry.State.ALIVE && claim.getIncarnation() >= self.getIncarnation()) {
+            MemberEntry refuted = new MemberEntry(selfId, self.getNodeName(), MemberEntry.State.ALIVE,
+                claim.getIncarnation() + 1, self.getRooms());
+            members.put(selfId, new Versioned(refuted, ++version));
+            EventLog.info("membership", "Refuted " + claim.getState() + " rumour about this node (incarnation " + refuted.getIncarnation() + ")");
+        }
+    }
+
+    private void apply(MemberEntry entry, MemberEntry previous) {
+        members.put(entry.getNodeId(), new Versioned(entry, ++version));
+        changes.add(new Change(entry, previous));
+    }
+
+    // Whichever thread gets here first reports every queued change, including ones queued by others meanwhile
+    private void dispatch() {
+        synchronized (dispatching) {
+            Change change;
+            while ((change = nextChange()) != null) {
+                listener.onMemberChanged(change.entry, change.previous);
+            }
+        }
+    }
+
+    private synchronized Change nextChange() {
+        return changes.poll();
+    }
+
+    private static class Versioned {
+        final MemberEntry entry;
+        final long version;
+        final long changedAt = System.currentTimeMillis();
+
+        Versioned(MemberEntry entry, long version) {
+            this.entry = entry;
+            this.version = version;
+        }
+    }
+
+    private static class Change {
+        final MemberEntry entry;
+        final MemberEntry previous;
+
+        Change(MemberEntry entry, MemberEntry previous) {
+            this.entry = entry;
+            this.previous = previous;
+        }
+    }
+}
@@ -0,0 +1,587 @@
+// MessageLog.java - Segmented, memory-mapped, append-only log of delivered messages
+package chat;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Segment files are named after the first log sequence they hold and are mapped
+ * at a fixed size; a zero length field marks the end of the written part.
+ *
+ * Record layout (big-endian):
+ *   int  length            bytes that follow this field
+ *   long sequence          position in this node's log
+ *   long timestamp         Lamport timestamp
+ *   int  senderId, long senderSequence, long originTimeMillis
+ *   int  senderLength, sender UTF-8, int contentLength, content UTF-8
+ *   int  roomLength, room UTF-8     (missing in records written before rooms;
+ *                                    those belong to the default room)
+ *   long roomSequence               (missing in older records; read as 0)
+ *   long globalSequence, int causalLength, causal clock
+ *                                   (missing in older records; read as 0 and
+ *                                    no clock; the clock is a full vector)
+ *
+ * Each segment has a sparse index file: int count, then one entry per
+ * INDEX_INTERVAL_BYTES of records holding (long maxTimestamp, long sequence,
+ * int position), where maxTimestamp is the largest timestamp of any record
+ * before that position. It only grows, even though delivery order is not
+ * always timestamp order, so a binary search finds a start point before which
+ * no record can match a timestamp range. The index file ends with a long
+ * holding the wall-clock time of the segment's last append; retention goes
+ * by it, since writes through a mapping need not update the file's mtime.
+ *
+ * Appends only write into the mapped buffer. A flusher thread forces dirty
+ * ranges to disk every flushIntervalMillis, so many appends share one fsync;
+ * a segment sealed by a roll is forced there too, never under the log lock.
+ */
+public class MessageLog implements Closeable {
+    public static final int RECORD_HEADER = 4 + 8 + 8 + 4 + 8 + 8 + 4 + 4;
+    private static final int INDEX_INTERVAL_BYTES = 4096;
+    private static final int INDEX_ENTRY = 8 + 8 + 4;
+    private static final String LOG_SUFFIX = ".log";
+    private static final String INDEX_SUFFIX = ".idx";
+
+    public interface Visitor {
+        // record is positioned at the record's length field and limited to its end; return false to stop
+        boolean visit(long sequence, long timestamp, ByteBuffer record);
+    }
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final long retentionBytes;
+    private final long retentionMillis;
+    private final List<Segment> segments = new ArrayList<>();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "message-log-flusher");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private Segment active;
+    private volatile long nextSequence;
+    private long maxTimestamp = Long.MIN_VALUE;
+    private volatile long durableSequence;
+
+    private final LongAdder appends = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder rollovers = new LongAdder();
+    private final LongAdder segmentsDeleted = new LongAdder();
+
+    public MessageLog(Path directory, int segmentBytes, long retentionBytes, long retentionMillis,
+                      long flushIntervalMillis) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.retentionBytes = retentionBytes;
+        this.retentionMillis = retentionMillis;
+        Files.createDirectories(directory);
+        recover();
+        durableSequence = nextSequence;
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized long append(ChatMessage message) {
+        int senderLength = WireCodec.utf8Length(message.getSender());
+        int contentLength = message.getText().utf8Length();
+        int roomLength = WireCodec.utf8Length(message.getRoom());
+        byte[] causalClock = message.getCausalClock();
+        int causalLength = causalClock == null ? 0 : causalClock.length;
+        int size = RECORD_HEADER + senderLength + contentLength + 4 + roomLength + 8 + 8 + 4 + causalLength;
+        if (size + 4 > segmentBytes) {
+            throw new IllegalArgumentException("Message of " + size + " bytes does not fit in a log segment");
+        }
+        if (active.writePosition + size + 4 > segmentBytes) {
+            roll();
+        }
+
+        Segment segment = active;
+        long sequence = nextSequence;
+        int position = segment.writePosition;
+        if (segment.indexCount == 0 || position - segment.lastIndexedPosition >= INDEX_INTERVAL_BYTES) {
+            segment.addIndexEntry(maxTimestamp, sequence, position);
+        }
+
+        // Body first, length last, so a reader never sees a half-written record
+        ByteBuffer out = segment.writer;
+        out.position(position + 4);
+        out.putLong(sequence);
+        out.putLong(message.getLogicalTimestamp());
+        out.putInt(message.getSenderID());
+        out.putLong(message.getSenderSequence());
+        out.putLong(message.getOriginTimeMillis());
+        out.putInt(senderLength);
+        WireCodec.putUtf8(out, message.getSender());
+        out.putInt(contentLength);
+        // Received text goes in as the bytes it arrived in, without building a String
+        message.getText().putUtf8(out);
+        out.putInt(roomLength);
+        WireCodec.putUtf8(out, message.getRoom());
+        out.putLong(message.getRoomSequence());
+        out.putLong(message.getGlobalSequence());
+        out.putInt(causalLength);
+        if (causalClock != null) {
+            out.put(causalClock);
+        }
+        out.putInt(position, size - 4);
+
+        segment.writePosition = position + size;
+        segment.nextSequence = sequence + 1;
+        segment.touch(System.currentTimeMillis());
+        maxTimestamp = Math.max(maxTimestamp, message.getLogicalTimestamp());
+        nextSequence = sequence + 1;
+        appends.increment();
+        return sequence;
+    }
+
+    // Visits records with timestamp >= fromTimestamp and sequence >= fromSequence, in log order
+    public void scan(long fromTimestamp, long fromSequence, Visitor visitor) {
+        List<Segment> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(segments);
+        }
+        int first = startSegment(snapshot, fromTimestamp, fromSequence);
+        for (int i = first; i < snapshot.size(); i++) {
+            Segment segment = snapshot.get(i);
+            ByteBuffer view = segment.reader();
+            int end = segment.writePosition;
+            int position = segment.seek(fromTimestamp, fromSequence);
+            while (position < end) {
+                int length = view.getInt(position);
+                long sequence = view.getLong(position + 4);
+                long timestamp = view.getLong(position + 12);
+                int next = position + 4 + length;
+                if (sequence >= fromSequence && timestamp >= fromTimestamp) {
+                    view.limit(next).position(position);
+                    if (!visitor.visit(sequence, timestamp, view)) {
+                        return;
+                    }
+                    view.limit(view.capacity());
+                }
+                position = next;
+            }
+        }
+    }
+
+    public List<ChatMessage> read(long fromTimestamp, long fromSequence, int maxMessages) {
+        List<ChatMessage> messages = new ArrayList<>();
+        scan(fromTimestamp, fromSequence, (sequence, timestamp, record) -> {
+            messages.add(decode(record));
+            return messages.size() < maxMessages;
+        });
+        return messages;
+    }
+
+    // Copies whole records from (fromTimestamp, fromSequence) into at most maxBytes; one oversized record still fits
+    public HistoryChunk readChunk(long fromTimestamp, long fromSequence, int maxBytes, long clock) {
+        return readChunk(null, fromTimestamp, fromSequence, maxBytes, clock);
+    }
+
+    // As above, but only records of the given room (all rooms when room is null)
+    public HistoryChunk readChunk(String room, long fromTimestamp, long fromSequence, int maxBytes, long clock) {
+        ChunkBuilder builder = new ChunkBuilder(room, maxBytes, Math.max(fromSequence, getFirstSequence()));
+        scan(fromTimestamp, fromSequence, builder);
+        long cursor = builder.complete ? Math.max(builder.cursor, nextSequence) : builder.cursor;
+        byte[] records = Arrays.copyOf(builder.out.array(), builder.out.position());
+        return new HistoryChunk(records, builder.count, cursor, builder.complete, clock);
+    }
+
+    public List<ChatMessage> tail(int count) {
+        return readBefore(nextSequence, count);
+    }
+
+    // The up to maxMessages retained records just before beforeSequence, oldest first
+    public List<ChatMessage> readBefore(long beforeSequence, int maxMessages) {
+        long end = Math.min(beforeSequence, nextSequence);
+        long from = Math.max(getFirstSequence(), end - maxMessages);
+        if (from >= end) {
+            return new ArrayList<>();
+        }
+        return read(Long.MIN_VALUE, from, (int) (end - from));
+    }
+
+    public static ChatMessage decode(ByteBuffer record) {
+        int start = record.position();
+        record.position(start + 4);
+        record.getLong();
+        long timestamp = record.getLong();
+        int senderId = record.getInt();
+        long senderSequence = record.getLong();
+        long originTimeMillis = record.getLong();
+        String sender = WireCodec.getUtf8(record, record.getInt());
+        int contentLength = record.getInt();
+        MessageText content = MessageText.read(record, contentLength, false, contentLength);
+        int end = start + 4 + record.getInt(start);
+        String room = record.position() < end ? WireCodec.getUtf8(record, record.getInt()) : ChatMessage.DEFAULT_ROOM;
+        long roomSequence = record.position() < end ? record.getLong() : 0;
+        long globalSequence = 0;
+        byte[] causalClock = null;
+        if (record.position() < end) {
+            globalSequence = record.getLong();
+            int causalLength = record.getInt();
+            if (causalLength > 0) {
+                causalClock = new byte[causalLength];
+                record.get(causalClock);
+            }
+        }
+        record.position(start);
+        ChatMessage message = new ChatMessage(content, sender, senderId, timestamp);
+        message.setSenderSequence(senderSequence);
+        message.setOriginTimeMillis(originTimeMillis);
+        message.setRoom(room);
+        message.setRoomSequence(roomSequence);
+        message.setGlobalSequence(globalSequence);
+        message.setCausalClock(causalClock);
+        return message;
+    }
+
+    // Reads only the room of a record positioned at its length field
+    public static String roomOf(ByteBuffer record) {
+        int start = record.position();
+        int end = start + 4 + record.getInt(start);
+        int contentField = start + RECORD_HEADER - 4 + record.getInt(start + RECORD_HEADER - 8);
+        int roomField = contentField + 4 + record.getInt(contentField);
+        if (roomField >= end) {
+            return ChatMessage.DEFAULT_ROOM;
+        }
+        ByteBuffer view = record.duplicate();
+        view.position(roomField + 4);
+        return WireCodec.getUtf8(view, record.getInt(roomField));
+    }
+
+    public long getNextSequence() {
+        return nextSequence;
+    }
+
+    public synchronized long getFirstSequence() {
+        return segments.get(0).baseSequence;
+    }
+
+    public synchronized long getMaxTimestamp() {
+        return maxTimestamp;
+    }
+
+    public long getDurableSequence() {
+        return durableSequence;
+    }
+
+    public synchronized long getSizeBytes() {
+        long total = 0;
+        for (Segment segment : segments) {
+            total += segment.writePosition;
+        }
+        return total;
+    }
+
+    public synchronized String getMetrics() {
+        return (nextSequence - segments.get(0).baseSequence) + " records in " + segments.size() + " segments ("
+            + getSizeBytes() / 1024 + "KB), appends " + appends.sum() + ", flushes " + flushes.sum()
+            + ", rollovers " + rollovers.sum() + ", segments deleted " + segmentsDeleted.sum()
+            + ", durable up to " + durableSequence;
+    }
+
+    // Forces every written byte to disk
+    public void flush() throws IOException {
+        List<Segment> dirty = new ArrayList<>();
+        long durable;
+        synchronized (this) {
+            for (Segment segment : segments) {
+                if (segment.flushedPosition < segment.writePosition) {
+                    dirty.add(segment);
+                }
+            }
+            durable = nextSequence;
+        }
+        for (Segment segment : dirty) {
+            segment.force();
+        }
+        if (!dirty.isEmpty()) {
+            flushes.increment();
+        }
+        durableSequence = durable;
+    }
+
+    @Override
+    public void close() throws IOException {
+        flusher.shutdownNow();
+        flush();
+        synchronized (this) {
+            for (Segment segment : segments) {
+                segment.channel.close();
+                segment.indexChannel.close();
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException e) {
+            EventLog.error("log", "Error flushing message log: {}", e.getMessage());
+        }
+    }
+
+    private void recover() throws IOException {
+        List<Long> bases = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + LOG_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                bases.add(Long.parseLong(name.substring(0, name.length() - LOG_SUFFIX.length())));
+            }
+        }
+        bases.sort(null);
+        for (long base : bases) {
+            Segment segment = new Segment(base);
+            segment.recover();
+            segments.add(segment);
+            nextSequence = segment.nextSequence;
+            maxTimestamp = Math.max(maxTimestamp, segment.maxTimestamp);
+        }
+        if (segments.isEmpty()) {
+            segments.add(new Segment(0));
+        }
+        active = segments.get(segments.size() - 1);
+        applyRetention();
+    }
+
+    private void roll() {
+        try {
+            Segment next = new Segment(nextSequence);
+            segments.add(next);
+            active = next;
+            rollovers.increment();
+            applyRetention();
+            // Seal the old segment without holding up appends for its fsync
+            flusher.execute(this::flushQuietly);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot roll message log: " + e.getMessage(), e);
+        }
+    }
+
+    // Drops the oldest sealed segments once the log is over its size or age budget
+    private void applyRetention() {
+        long total = 0;
+        for (Segment segment : segments) {
+            total += segment.writePosition;
+        }
+        long now = System.currentTimeMillis();
+        while (segments.size() > 1) {
+            Segment oldest = segments.get(0);
+            boolean tooBig = total > retentionBytes;
+            boolean tooOld = now - oldest.lastAppendMillis > retentionMillis;
+            if (!tooBig && !tooOld) {
+                break;
+            }
+            segments.remove(0);
+            total -= oldest.writePosition;
+            oldest.delete();
+            segmentsDeleted.increment();
+        }
+    }
+
+    // Last segment that can contain the first match: its prefix max is below fromTimestamp
+    private static int startSegment(List<Segment> snapshot, long fromTimestamp, long fromSequence) {
+        int start = 0;
+        for (int i = snapshot.size() - 1; i > 0; i--) {
+            Segment segment = snapshot.get(i);
+            if (segment.baseSequence <= fromSequence || segment.firstPrefixMax() < fromTimestamp) {
+                start = i;
+                break;
+            }
+        }
+        return start;
+    }
+
+    private static class ChunkBuilder implements Visitor {
+        final String room;
+        ByteBuffer out;
+        int count;
+        long cursor;
+        boolean complete = true;
+
+        ChunkBuilder(String room, int maxBytes, long cursor) {
+            this.room = room;
+            this.out = ByteBuffer.allocate(maxBytes);
+            this.cursor = cursor;
+        }
+
+        @Override
+        public boolean visit(long sequence, long timestamp, ByteBuffer record) {
+            if (room != null && !room.equals(roomOf(record))) {
+                cursor = sequence + 1;
+                return true;
+            }
+            if (record.remaining() > out.remaining()) {
+                if (count > 0) {
+                    complete = false;
+                    return false;
+                }
+                out = ByteBuffer.allocate(record.remaining());
+            }
+            out.put(record);
+            count++;
+            cursor = sequence + 1;
+            return true;
+        }
+    }
+
+    private class Segment {
+        final long baseSequence;
+        final Path logPath;
+        final Path indexPath;
+        final FileChannel channel;
+        final FileChannel indexChannel;
+        final MappedByteBuffer data;
+        final MappedByteBuffer index;
+        final ByteBuffer writer;
+        final int lastAppendOffset;
+
+        volatile int writePosition;
+        volatile long lastAppendMillis;
+        volatile int flushedPosition;
+        long nextSequence;
+        long maxTimestamp = Long.MIN_VALUE;
+        int lastIndexedPosition;
+
+        // In-memory copy of the index for binary search
+        volatile int indexCount;
+        long[] indexMaxTimestamp = new long[64];
+        long[] indexSequence = new long[64];
+        int[] indexPosition = new int[64];
+
+        Segment(long baseSequence) throws IOException {
+            this.baseSequence = baseSequence;
+            String name = String.format("%020d", baseSequence);
+            this.logPath = directory.resolve(name + LOG_SUFFIX);
+            this.indexPath = directory.resolve(name + INDEX_SUFFIX);
+            this.channel = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.indexChannel = FileChannel.open(indexPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.data = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+            int indexBytes = 4 + (segmentBytes / INDEX_INTERVAL_BYTES + 2) * INDEX_ENTRY + 8;
+            this.index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, indexBytes);
+            this.writer = data.duplicate();
+            this.lastAppendOffset = indexBytes - 8;
+            this.nextSequence = baseSequence;
+            this.lastAppendMillis = System.currentTimeMillis();
+        }
+
+        ByteBuffer reader() {
+            return data.duplicate();
+        }
+
+        void recover() {
+            int count = index.getInt(0);
+            int position = 0;
+            for (int i = 0; i < count; i++) {
+                int offset = 4 + i * INDEX_ENTRY;
+                appendIndex(index.getLong(offset), index.getLong(offset + 8), index.getInt(offset + 16));
+            }
+            if (indexCount > 0) {
+                position = indexPosition[indexCount - 1];
+                lastIndexedPosition = position;
+                maxTimestamp = indexMaxTimestamp[indexCount - 1];
+                nextSequence = indexSequence[indexCount - 1];
+            }
+            // Replay records after the last index entry; stop at the end marker or a torn record
+            while (position + 4 <= segmentBytes) {
+                int length = data.getInt(position);
+                if (length < RECORD_HEADER - 4 || position + 4 + length > segmentBytes) {
+                    break;
+                }
+                nextSequence = data.getLong(position + 4) + 1;
+                maxTimestamp = Math.max(maxTimestamp, data.getLong(position + 12));
+                position += 4 + length;
+            }
+            writePosition = position;
+            flushedPosition = position;
+            long lastAppend = index.getLong(lastAppendOffset);
+            if (lastAppend != 0) {
+                lastAppendMillis = lastAppend;
+            } else if (position > 0) {
+                // Written before the index kept the time; the file's mtime is the best there is
+                lastAppendMillis = logPath.toFile().lastModified();
+            }
+        }
+
+        void touch(long millis) {
+            index.putLong(lastAppendOffset, millis);
+            lastAppendMillis = millis;
+        }
+
+        void addIndexEntry(long prefixMax, long sequence, int position) {
+            int offset = 4 + indexCount * INDEX_ENTRY;
+            index.putLong(offset, prefixMax);
+            index.putLong(offset + 8, sequence);
+            index.putInt(offset + 16, position);
+            appendIndex(prefixMax, sequence, position);
+            index.putInt(0, indexCount);
+            lastIndexedPosition = position;
+        }
+
+        private void appendIndex(long prefixMax, long sequence, int position) {
+            if (indexCount == indexSequence.length) {
+                indexMaxTimestamp = Arrays.copyOf(indexMaxTimestamp, indexCount * 2);
+                indexSequence = Arrays.copyOf(indexSequence, indexCount * 2);
+                indexPosition = Arrays.copyOf(indexPosition, indexCount * 2);
+            }
+            indexMaxTimestamp[indexCount] = prefixMax;
+            indexSequence[indexCount] = sequence;
+            indexPosition[indexCount] = position;
+            indexCount++;
+        }
+
+        long firstPrefixMax() {
+            return indexCount == 0 ? Long.MIN_VALUE : indexMaxTimestamp[0];
+        }
+
+        // Position of the last index entry before which nothing can match; O(log n) binary search
+        int seek(long fromTimestamp, long fromSequence) {
+            int low = 0;
+            int high = indexCount - 1;
+            int found = -1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (indexMaxTimestamp[mid] < fromTimestamp || indexSequence[mid] <= fromSequence) {
+                    found = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return found < 0 ? 0 : indexPosition[found];
+        }
+
+        void force() throws IOException {
+            int written = writePosition;
+            int from = flushedPosition;
+            if (from < written) {
+                data.force(from, written - from);
+                index.force();
+                flushedPosition = written;
+            }
+        }
+
+        void delete() {
+            try {
+                channel.close();
+                indexChannel.close();
+                Files.deleteIfExists(logPath);
+                Files.deleteIfExists(indexPath);
+            } catch (IOException e) {
+                EventLog.error("log", "Error deleting log segment " + logPath + ": " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+// MessageRingModel.java - Fixed-capacity ring of chat lines backing the GUI's message list
+package chat;
+
+import javax.swing.AbstractListModel;
+import java.util.List;
+
+/*
+ * Rows live in two parallel arrays used as a ring, so adding a row never moves
+ * the others and memory stays at `capacity` rows however long the client runs.
+ * Each row remembers the log sequence of its message (-1 for local status
+ * lines), which is where scroll-back continues from. Appending to a full ring
+ * evicts the oldest rows; prepending older history evicts the newest ones.
+ */
+public class MessageRingModel extends AbstractListModel<String> {
+    private static final long serialVersionUID = 1L;
+    private final String[] rows;
+    private final long[] sequences;
+    private int head;
+    private int size;
+
+    public MessageRingModel(int capacity) {
+        this.rows = new String[capacity];
+        this.sequences = new long[capacity];
+    }
+
+    public int getCapacity() {
+        return rows.length;
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public String getElementAt(int index) {
+        return rows[slot(index)];
+    }
+
+    // Appends rows at the bottom; returns how many of the oldest rows were evicted
+    public int append(List<String> lines, List<Long> lineSequences) {
+        int count = Math.min(lines.size(), rows.length);
+        int skip = lines.size() - count;
+        int evicted = Math.max(0, size + count - rows.length);
+        if (evicted > 0) {
+            clearSlots(0, evicted);
+            head = (head + evicted) % rows.length;
+            size -= evicted;
+            fireIntervalRemoved(this, 0, evicted - 1);
+        }
+        int first = size;
+        for (int i = skip; i < lines.size(); i++) {
+            rows[slot(size)] = lines.get(i);
+            sequences[slot(size)] = lineSequences.get(i);
+            size++;
+        }
+        if (count > 0) {
+            fireIntervalAdded(this, first, size - 1);
+        }
+        return evicted;
+    }
+
+    public int append(String line, long sequence) {
+        return append(List.of(line), List.of(sequence));
+    }
+
+    // Inserts older rows at the top; returns how many of the newest rows were evicted
+    public int prepend(List<String> lines, List<Long> lineSequences) {
+        int count = Math.min(lines.size(), rows.length);
+        int offset = lines.size() - count;
+        int evicted = Math.max(0, size + count - rows.length);
+        if (evicted > 0) {
+            clearSlots(size - evicted, evicted);
+            size -= evicted;
+            fireIntervalRemoved(this, size, size + evicted - 1);
+        }
+        head = (head - count + rows.length) % rows.length;
+        size += count;
+        for (int i = 0; i < count; i++) {
+            rows[slot(i)] = lines.get(offset + i);
+            sequences[slot(i)] = lineSequences.get(offset + i);
+        }
+        if (count > 0) {
+            fireIntervalAdded(this, 0, count - 1);
+        }
+        return evicted;
+    }
+
+    public void clear() {
+        if (size == 0) {
+            return;
+        }
+        int removed = size;
+        clearSlots(0, size);
+        head = 0;
+        size = 0;
+        fireIntervalRemoved(this, 0, removed - 1);
+    }
+
+    // Log sequence of the oldest message row, or -1 if no row holds a message
+    public long getOldestSequence() {
+        for (int i = 0; i < size; i++) {
+            if (sequences[slot(i)] >= 0) {
+                return sequences[slot(i)];
+            }
+        }
+        return -1;
+    }
+
+    private int slot(int index) {
+        return (head + index) % rows.length;
+    }
+
+    private void clearSlots(int from, int count) {
+        for (int i = from; i < from + count; i++) {
+            rows[slot(i)] = null;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+// MessageText.java - Chat message text kept in its encoded form until it is read
+package chat;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/*
+ * Text is sent as UTF-8, deflated when it is at least COMPRESS_THRESHOLD bytes
+ * and deflating makes it smaller. Text typed on this node starts as a String
+ * and is encoded once, on its first send, for every peer it goes to. Text
+ * received from a peer keeps the bytes it arrived in: relaying and logging
+ * copy them, and the String is only built when something displays it.
+ */
+public final class MessageText implements Serializable {
+    private static final long serialVersionUID = 1L;
+    public static final int COMPRESS_THRESHOLD = 512;
+    public static final MessageText EMPTY = of("");
+
+    private static final ThreadLocal<Deflater> DEFLATERS = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED));
+    private static final ThreadLocal<Inflater> INFLATERS = ThreadLocal.withInitial(Inflater::new);
+
+    private transient volatile String text;
+    private transient volatile Encoded encoded;
+
+    private static final class Encoded {
+        final byte[] bytes;
+        final boolean compressed;
+        final int utf8Length;
+
+        Encoded(byte[] bytes, boolean compressed, int utf8Length) {
+            this.bytes = bytes;
+            this.compressed = compressed;
+            this.utf8Length = utf8Length;
+        }
+    }
+
+    private MessageText(String text, Encoded encoded) {
+        this.text = text;
+        this.encoded = encoded;
+    }
+
+    public static MessageText of(String text) {
+        return new MessageText(text, null);
+    }
+
+    // Takes over length bytes at the buffer's position; utf8Length is the size once inflated
+    public static MessageText read(ByteBuffer buffer, int length, boolean compressed, int utf8Length) {
+        if (utf8Length < 0 || utf8Length > WireCodec.MAX_FRAME_SIZE || (!compressed && utf8Length != length)) {
+            throw new IllegalArgumentException("Invalid text length " + utf8Length);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new MessageText(null, new Encoded(bytes, compressed, utf8Length));
+    }
+
+    public String get() {
+        String s = text;
+        if (s == null) {
+            Encoded e = encoded;
+            s = new String(e.compressed ? inflate(e) : e.bytes, StandardCharsets.UTF_8);
+            text = s;
+        }
+        return s;
+    }
+
+    // Whether the String has been built; text received from a peer stays unbuilt until it is displayed
+    public boolean isMaterialized() {
+        return text != null;
+    }
+
+    public int utf8Length() {
+        Encoded e = encoded;
+        return e != null ? e.utf8Length : WireCodec.utf8Length(text);
+    }
+
+    // Characters of local text, encoded bytes of received text; cheap either way
+    public int sizeHint() {
+        Encoded e = encoded;
+        return e != null ? e.bytes.length : text.length();
+    }
+
+    public boolean isCompressed() {
+        return encode().compressed;
+    }
+
+    // Bytes as they go on the wire: deflated if isCompressed(), plain UTF-8 otherwise
+    public int wireLength() {
+        return encode().bytes.length;
+    }
+
+    public void putWire(ByteBuffer buffer) {
+        buffer.put(encode().bytes);
+    }
+
+    // Writes utf8Length() bytes of plain UTF-8, inflating straight into the buffer if needed
+    public void putUtf8(ByteBuffer buffer) {
+        Encoded e = encoded;
+        if (e == null) {
+            WireCodec.putUtf8(buffer, text);
+        } else if (!e.compressed) {
+            buffer.put(e.bytes);
+        } else {
+            int end = buffer.position() + e.utf8Length;
+            ByteBuffer out = buffer.duplicate().limit(end);
+            inflate(e, out);
+            buffer.position(end);
+        }
+    }
+
+    private Encoded encode() {
+        Encoded e = encoded;
+        if (e == null) {
+            byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+            e = new Encoded(utf8, false, utf8.length);
+            if (utf8.length >= COMPRESS_THRESHOLD) {
+                byte[] deflated = deflate(utf8);
+                if (deflated != null) {
+                    e = new Encoded(deflated, true, utf8.length);
+                }
+            }
+            encoded = e;
+        }
+        return e;
+    }
+
+    // Null when deflating does not save anything
+    private static byte[] deflate(byte[] utf8) {
+        Deflater deflater = DEFLATERS.get();
+        deflater.reset();
+        deflater.setInput(utf8);
+        deflater.finish();
+        byte[] out = new byte[utf8.length - 1];
+        int length = 0;
+        while (!deflater.finished() && length < out.length) {
+            length += deflater.deflate(out, length, out.length - length);
+        }
+        return deflater.finished() ? Arrays.copyOf(out, length) : null;
+    }
+
+    private static byte[] inflate(Encoded e) {
+        byte[] out = new byte[e.utf8Length];
+        inflate(e, ByteBuffer.wrap(out));
+        return out;
+    }
+
+    private static void inflate(Encoded e, ByteBuffer out) {
+        Inflater inflater = INFLATERS.get();
+        inflater.reset();
+        inflater.setInput(e.bytes);
+        try {
+            while (out.hasRemaining() && !inflater.finished()) {
+                if (inflater.inflate(out) == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+            }
+        } catch (DataFormatException ex) {
+            throw new IllegalArgumentException("Corrupt compressed text", ex);
+        }
+        if (out.hasRemaining() || !inflater.finished()) {
+            throw new IllegalArgumentException("Compressed text does not inflate to " + e.utf8Length + " bytes");
+        }
+    }
+
+    // Serialized in its wire form, so RMI carries the same compact bytes as the NIO transport
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        Encoded e = encode();
+        out.writeBoolean(e.compressed);
+        out.writeInt(e.utf8Length);
+        out.writeInt(e.bytes.length);
+        out.write(e.bytes);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException {
+        boolean compressed = in.readBoolean();
+        int utf8Length = in.readInt();
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        if (utf8Length < 0 || utf8Length > WireCodec.MAX_FRAME_SIZE || (!compressed && utf8Length != bytes.length)) {
+            throw new IOException("Invalid text length " + utf8Length);
+        }
+        encoded = new Encoded(bytes, compressed, utf8Length);
+    }
+
+    @Override
+    public String toString() {
+        return get();
+    }
+}
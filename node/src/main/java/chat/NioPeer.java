@@ -0,0 +1,238 @@
+// NioPeer.java - Client side of the NIO transport, presented as a ChatNode
+package chat;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.rmi.RemoteException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Hot-path calls travel as binary frames over two persistent sockets: one for
+ * message batches and one for pings and election calls, so a heartbeat never
+ * queues behind a large batch and the failure detector sees the peer's
+ * latency rather than our own backlog. Membership calls fall back to the
+ * peer's RMI stub.
+ */
+public class NioPeer implements ChatNode {
+    public static final int READ_TIMEOUT_MS = 5000;
+
+    private volatile ChatNode rmiStub;
+    private final InetSocketAddress address;
+    private final BufferPool pool;
+    private final Link data = new Link();
+    private final Link control = new Link();
+
+    public NioPeer(ChatNode rmiStub, InetSocketAddress address, BufferPool pool) {
+        this.rmiStub = rmiStub;
+        this.address = address;
+        this.pool = pool;
+    }
+
+    @Override
+    public InetSocketAddress getDataAddress() {
+        return address;
+    }
+
+    public void updateRmiStub(ChatNode rmiStub) {
+        this.rmiStub = rmiStub;
+    }
+
+    @Override
+    public void receiveMessage(String sender, String message, long timestamp) throws RemoteException {
+        receiveMessages(List.of(new ChatMessage(message, sender, 0, timestamp)));
+    }
+
+    @Override
+    public void receiveMessages(List<ChatMessage> messages) throws RemoteException {
+        synchronized (data) {
+            ByteBuffer frame = pool.acquire(WireCodec.messagesFrameSize(messages, data.sentNames));
+            WireCodec.writeMessages(frame, ++data.nextCorrelationId, messages, data.sentNames);
+            data.call(frame);
+        }
+    }
+
+    @Override
+    public void pingNode() throws RemoteException {
+        synchronized (control) {
+            ByteBuffer frame = pool.acquire(WireCodec.emptyFrameSize());
+            WireCodec.writeEmptyFrame(frame, WireCodec.PING, ++control.nextCorrelationId);
+            control.call(frame);
+        }
+    }
+
+    @Override
+    public void startElection() throws RemoteException {
+        synchronized (control) {
+            ByteBuffer frame = pool.acquire(WireCodec.emptyFrameSize());
+            WireCodec.writeEmptyFrame(frame, WireCodec.START_ELECTION, ++control.nextCorrelationId);
+            control.call(frame);
+        }
+    }
+
+    @Override
+    public void handleElectionMessage(ElectionMessage message) throws RemoteException {
+        synchronized (control) {
+            ByteBuffer frame = pool.acquire(WireCodec.electionFrameSize());
+            WireCodec.writeElectionMessage(frame, ++control.nextCorrelationId, message);
+            control.call(frame);
+        }
+    }
+
+    @Override
+    public void electCoordinator(int newCoordinatorId) throws RemoteException {
+        synchronized (control) {
+            ByteBuffer frame = pool.acquire(WireCodec.intFrameSize());
+            WireCodec.writeIntFrame(frame, WireCodec.ELECT_COORDINATOR, ++control.nextCorrelationId, newCoordinatorId);
+            control.call(frame);
+        }
+    }
+
+    @Override
+    public void registerNode(int nodeId, String nodeName) throws RemoteException {
+        rmiStub.registerNode(nodeId, nodeName);
+    }
+
+    @Override
+    public Map<Integer, String> getRegisteredNodes() throws RemoteException {
+        return rmiStub.getRegisteredNodes();
+    }
+
+    @Override
+    public List<ChatMessage> fetchSequenced(String room, long fromSequence, int maxMessages) throws RemoteException {
+        return rmiStub.fetchSequenced(room, fromSequence, maxMessages);
+    }
+
+    @Override
+    public List<ChatMessage> fetchCausal(String room, long fromSequence, long toSequence) throws RemoteException {
+        return rmiStub.fetchCausal(room, fromSequence, toSequence);
+    }
+
+    @Override
+    public List<ChatMessage> pullMessages(String room, Map<Integer, Long> digest, int maxMessages) throws RemoteException {
+        return rmiStub.pullMessages(room, digest, maxMessages);
+    }
+
+    @Override
+    public HistoryChunk fetchHistory(String room, long fromTimestamp, long cursor, int maxBytes) throws RemoteException {
+        return rmiStub.fetchHistory(room, fromTimestamp, cursor, maxBytes);
+    }
+
+    @Override
+    public List<ChatMessage> fetchHistoryBefore(long beforeSequence, int maxMessages) throws RemoteException {
+        return rmiStub.fetchHistoryBefore(beforeSequence, maxMessages);
+    }
+
+    @Override
+    public long subscribe(ChatListener listener) throws RemoteException {
+        return rmiStub.subscribe(listener);
+    }
+
+    @Override
+    public void unsubscribe(ChatListener listener) throws RemoteException {
+        rmiStub.unsubscribe(listener);
+    }
+
+    @Override
+    public void sendChatMessage(String message) throws RemoteException {
+        rmiStub.sendChatMessage(message);
+    }
+
+    @Override
+    public NodeStats getNodeStats() throws RemoteException {
+        return rmiStub.getNodeStats();
+    }
+
+    @Override
+    public GossipDigest gossip(int fromId, List<MemberEntry> updates, long sinceVersion) throws RemoteException {
+        return rmiStub.gossip(fromId, updates, sinceVersion);
+    }
+
+    @Override
+    public int getNodeId() throws RemoteException {
+        return rmiStub.getNodeId();
+    }
+
+    @Override
+    public void start() throws RemoteException {
+        rmiStub.start();
+    }
+
+    public void close() {
+        synchronized (data) {
+            data.close();
+        }
+        synchronized (control) {
+            control.close();
+        }
+    }
+
+    // One socket with its own request/response sequence; callers hold its monitor
+    private class Link {
+        private SocketChannel channel;
+        private DataInputStream in;
+        int nextCorrelationId;
+        // Sender names the server has been sent on the current connection
+        final Map<Integer, String> sentNames = new HashMap<>();
+
+        void call(ByteBuffer frame) throws RemoteException {
+            int correlationId = nextCorrelationId;
+            try {
+                ensureConnected();
+                frame.flip();
+                while (frame.hasRemaining()) {
+                    channel.write(frame);
+                }
+
+                int length = in.readInt();
+                byte type = in.readByte();
+                int responseId = in.readInt();
+                byte[] payload = new byte[length - WireCodec.HEADER_SIZE];
+                in.readFully(payload);
+                if (responseId != correlationId) {
+                    throw new IOException("Response " + responseId + " does not match request " + correlationId);
+                }
+                if (type == WireCodec.RESPONSE_ERROR) {
+                    // The server may have stopped reading part way through; send every name again
+                    sentNames.clear();
+                    throw new RemoteException(WireCodec.getString(ByteBuffer.wrap(payload)));
+                }
+            } catch (RemoteException e) {
+                throw e;
+            } catch (IOException e) {
+                close();
+                throw new RemoteException("NIO call to " + address + " failed", e);
+            } finally {
+                pool.release(frame);
+            }
+        }
+
+        void close() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // already closed
+                }
+                channel = null;
+                in = null;
+            }
+            sentNames.clear();
+        }
+
+        private void ensureConnected() throws IOException {
+            if (channel == null) {
+                channel = SocketChannel.open(address);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                // Reads go through the socket adaptor so that the timeout applies
+                channel.socket().setSoTimeout(READ_TIMEOUT_MS);
+                in = new DataInputStream(channel.socket().getInputStream());
+            }
+        }
+    }
+}
@@ -0,0 +1,209 @@
+// NioServer.java - Selector-based listener that dispatches binary frames to a local node
+package chat;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class NioServer implements Runnable {
+    private final ChatNode node;
+    private final int port;
+    private final BufferPool pool;
+    private final ExecutorService workers;
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private volatile boolean running;
+
+    public NioServer(ChatNode node, int port, BufferPool pool) {
+        this.node = node;
+        this.port = port;
+        this.pool = pool;
+        this.workers = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "nio-worker-" + port);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    public void start() throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        running = true;
+
+        Thread thread = new Thread(this, "nio-selector-" + port);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void close() {
+        running = false;
+        try {
+            if (selector != null) {
+                selector.close();
+            }
+            if (serverChannel != null) {
+                serverChannel.close();
+            }
+        } catch (IOException e) {
+            EventLog.error("transport", "Error closing NIO server: " + e.getMessage());
+        }
+        workers.shutdownNow();
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else if (key.isReadable()) {
+                        read(key);
+                    }
+                }
+            } catch (Exception e) {
+                if (running) {
+                    EventLog.error("transport", "NIO server error: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+    }
+
+    private void read(SelectionKey key) {
+        Connection conn = (Connection) key.attachment();
+        try {
+            while (true) {
+                if (conn.body == null) {
+                    if (conn.channel.read(conn.lengthBuffer) < 0) {
+                        conn.close();
+                        return;
+                    }
+                    if (conn.lengthBuffer.hasRemaining()) {
+                        return;
+                    }
+                    int length = conn.lengthBuffer.flip().getInt();
+                    conn.lengthBuffer.clear();
+                    if (length < WireCodec.HEADER_SIZE || length > WireCodec.MAX_FRAME_SIZE) {
+                        throw new IOException("Invalid frame length " + length);
+                    }
+                    conn.body = pool.acquire(length);
+                }
+                if (conn.channel.read(conn.body) < 0) {
+                    conn.close();
+                    return;
+                }
+                if (conn.body.hasRemaining()) {
+                    return;
+                }
+                ByteBuffer frame = conn.body.flip();
+                conn.body = null;
+                workers.execute(() -> dispatch(conn, frame));
+            }
+        } catch (IOException e) {
+            conn.close();
+        }
+    }
+
+    private void dispatch(Connection conn, ByteBuffer frame) {
+        byte type = frame.get();
+        int correlationId = frame.getInt();
+        ByteBuffer response;
+        try {
+            switch (type) {
+                case WireCodec.MESSAGES:
+                    node.receiveMessages(WireCodec.readMessages(frame, conn.senderNames));
+                    break;
+                case WireCodec.PING:
+                    node.pingNode();
+                    break;
+                case WireCodec.START_ELECTION:
+                    node.startElection();
+                    break;
+                case WireCodec.ELECTION_MESSAGE:
+                    node.handleElectionMessage(WireCodec.readElectionMessage(frame));
+                    break;
+                case WireCodec.ELECT_COORDINATOR:
+                    node.electCoordinator(frame.getInt());
+                    break;
+                default:
+                    throw new IOException("Unknown frame type " + type);
+            }
+            response = pool.acquire(WireCodec.emptyFrameSize());
+            WireCodec.writeEmptyFrame(response, WireCodec.RESPONSE_OK, correlationId);
+        } catch (Exception e) {
+            String message = String.valueOf(e.getMessage());
+            response = pool.acquire(WireCodec.errorFrameSize(message));
+            WireCodec.writeErrorFrame(response, correlationId, message);
+        } finally {
+            pool.release(frame);
+        }
+        conn.write(response.flip());
+        pool.release(response);
+    }
+
+    private static class Connection {
+        final SocketChannel channel;
+        final ByteBuffer lengthBuffer = ByteBuffer.allocate(WireCodec.LENGTH_FIELD);
+        // Frames of one connection are decoded one at a time, but not always on the same worker
+        final Map<Integer, String> senderNames = new ConcurrentHashMap<>();
+        ByteBuffer body;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        synchronized void write(ByteBuffer buffer) {
+            try {
+                while (buffer.hasRemaining()) {
+                    if (channel.write(buffer) == 0) {
+                        Thread.yield();
+                    }
+                }
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // already closed
+            }
+        }
+    }
+}
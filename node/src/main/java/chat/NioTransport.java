@@ -0,0 +1,109 @@
+// NioTransport.java - Binary NIO data path, with the RMI registry kept for discovery
+package chat;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.rmi.NotBoundException;
+import java.rmi.RemoteException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Each node listens on its own host and port and hands that address out
+ * through its RMI stub, so peers connect wherever the node actually runs.
+ * The host defaults to java.rmi.server.hostname, the name the RMI stubs
+ * carry, and the port to BASE_PORT + node ID when that is a valid port.
+ */
+public class NioTransport extends RmiTransport {
+    public static final int BASE_PORT = 20000;
+    public static final int MAX_PORT = 65535;
+    // Let the NIO server pick a free port
+    public static final int ANY_PORT = 0;
+
+    private final String host;
+    private final int port;
+    private final BufferPool pool = new BufferPool(64 * 1024, 64);
+    private final Map<Integer, NioPeer> peers = new ConcurrentHashMap<>();
+    private NioServer server;
+    private volatile InetSocketAddress dataAddress;
+
+    public NioTransport() {
+        this(System.getProperty("java.rmi.server.hostname", "localhost"), -1);
+    }
+
+    // A port of -1 means the default for the node's ID
+    public NioTransport(String host, int port) {
+        if (port < -1 || port > MAX_PORT) {
+            throw new IllegalArgumentException("NIO port out of range: " + port);
+        }
+        this.host = host;
+        this.port = port;
+    }
+
+    // BASE_PORT + node ID, or any free port for IDs that would go past MAX_PORT
+    public static int portFor(int nodeId) {
+        long port = (long) BASE_PORT + nodeId;
+        return nodeId >= 0 && port <= MAX_PORT ? (int) port : ANY_PORT;
+    }
+
+    @Override
+    public String getName() {
+        return "nio";
+    }
+
+    @Override
+    public void bind(int nodeId, ChatNode node) throws RemoteException {
+        // Listen first, so the address is known by the time peers find the registry entry
+        int listenPort = port >= 0 ? port : portFor(nodeId);
+        server = new NioServer(node, listenPort, pool);
+        try {
+            server.start();
+            dataAddress = new InetSocketAddress(host, server.getPort());
+            EventLog.info("transport", "NIO transport listening on " + host + ":" + server.getPort());
+        } catch (IOException e) {
+            throw new RemoteException("Could not start NIO transport on port " + listenPort, e);
+        }
+        super.bind(nodeId, node);
+    }
+
+    @Override
+    public ChatNode lookup(int nodeId) throws RemoteException, NotBoundException {
+        ChatNode rmiStub = super.lookup(nodeId);
+        InetSocketAddress address = rmiStub.getDataAddress();
+        if (address == null) {
+            // The peer runs the RMI transport
+            NioPeer stale = peers.remove(nodeId);
+            if (stale != null) {
+                stale.close();
+            }
+            return rmiStub;
+        }
+        // One connection per peer: a repeated lookup only refreshes the RMI fallback stub, unless the peer moved
+        return peers.compute(nodeId, (id, current) -> {
+            if (current != null && current.getDataAddress().equals(address)) {
+                current.updateRmiStub(rmiStub);
+                return current;
+            }
+            if (current != null) {
+                current.close();
+            }
+            return new NioPeer(rmiStub, address, pool);
+        });
+    }
+
+    @Override
+    public InetSocketAddress getDataAddress() {
+        return dataAddress;
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.close();
+        }
+        for (NioPeer peer : peers.values()) {
+            peer.close();
+        }
+        super.close();
+    }
+}
@@ -0,0 +1,101 @@
+// NodeConfig.java - Startup options for a chat node
+package chat;
+
+import java.util.Set;
+
+public class NodeConfig {
+    private Transport transport = new RmiTransport();
+    private DeliveryMode deliveryMode = DeliveryMode.TOTAL;
+    private int causalBufferLimit = 10_000;
+    private int sendWindow = BroadcastEngine.DEFAULT_QUEUE_CAPACITY;
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DEGRADE;
+    private String logDirectory = "chatlog";
+    private long statsIntervalSeconds = 60;
+    private boolean interactive = true;
+    private Set<String> rooms = Set.of(ChatMessage.DEFAULT_ROOM);
+
+    public Transport getTransport() {
+        return transport;
+    }
+
+    public NodeConfig setTransport(Transport transport) {
+        this.transport = transport;
+        return this;
+    }
+
+    public DeliveryMode getDeliveryMode() {
+        return deliveryMode;
+    }
+
+    public NodeConfig setDeliveryMode(DeliveryMode deliveryMode) {
+        this.deliveryMode = deliveryMode;
+        return this;
+    }
+
+    public int getCausalBufferLimit() {
+        return causalBufferLimit;
+    }
+
+    public NodeConfig setCausalBufferLimit(int causalBufferLimit) {
+        this.causalBufferLimit = causalBufferLimit;
+        return this;
+    }
+
+    public int getSendWindow() {
+        return sendWindow;
+    }
+
+    public NodeConfig setSendWindow(int sendWindow) {
+        this.sendWindow = sendWindow;
+        return this;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public NodeConfig setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+        return this;
+    }
+
+    // Each node keeps its message log in a node-<id> subdirectory
+    public String getLogDirectory() {
+        return logDirectory;
+    }
+
+    public NodeConfig setLogDirectory(String logDirectory) {
+        this.logDirectory = logDirectory;
+        return this;
+    }
+
+    // How often stats are written next to the message log; 0 turns the dump off
+    public long getStatsIntervalSeconds() {
+        return statsIntervalSeconds;
+    }
+
+    public NodeConfig setStatsIntervalSeconds(long statsIntervalSeconds) {
+        this.statsIntervalSeconds = statsIntervalSeconds;
+        return this;
+    }
+
+    // Embedded nodes (benchmarks, several nodes in one JVM) do not read commands from stdin
+    public boolean isInteractive() {
+        return interactive;
+    }
+
+    public NodeConfig setInteractive(boolean interactive) {
+        this.interactive = interactive;
+        return this;
+    }
+
+    // Rooms subscribed at startup; the first one (in name order) is where console input goes
+    public Set<String> getRooms() {
+        return rooms;
+    }
+
+    public NodeConfig setRooms(Set<String> rooms) {
+        this.rooms = rooms;
+        return this;
+    }
+}
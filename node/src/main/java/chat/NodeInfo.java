@@ -1,4 +1,6 @@
 // NodeInfo.java - Class to hold node status information
+package chat;
+
 import java.io.Serializable;
 
 public class NodeInfo implements Serializable {
@@ -7,9 +9,9 @@ public class NodeInfo implements Serializable {
     private final int nodeID;
     private final String nodeName;
     private final boolean isCoordinator;
-    private final int logicalClock;
+    private final long logicalClock;
     
-    public NodeInfo(int nodeID, String nodeName, boolean isCoordinator, int logicalClock) {
+    public NodeInfo(int nodeID, String nodeName, boolean isCoordinator, long logicalClock) {
         this.nodeID = nodeID;
         this.nodeName = nodeName;
         this.isCoordinator = isCoordinator;
@@ -28,7 +30,7 @@ public class NodeInfo implements Serializable {
         return isCoordinator;
     }
     
-    public int getLogicalClock() {
+    public long getLogicalClock() {
         return logicalClock;
     }
 }
\ No newline at end of file
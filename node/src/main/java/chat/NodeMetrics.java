@@ -0,0 +1,46 @@
+// NodeMetrics.java - Per-RPC latency histograms and failover timing for one node
+package chat;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class NodeMetrics {
+    // Incoming remote calls, grouped by what they are for
+    public enum Rpc { RECEIVE, PING, ELECTION, REGISTER, GOSSIP, HISTORY, REPAIR, CLIENT }
+
+    private final Map<Rpc, LatencyHistogram> rpcLatency = new EnumMap<>(Rpc.class);
+    // From suspecting the coordinator to the next coordinator being known
+    private final LatencyHistogram failoverLatency = new LatencyHistogram();
+    private final long startedAt = System.currentTimeMillis();
+
+    public NodeMetrics() {
+        for (Rpc rpc : Rpc.values()) {
+            rpcLatency.put(rpc, new LatencyHistogram());
+        }
+    }
+
+    public void record(Rpc rpc, long startNanos) {
+        rpcLatency.get(rpc).recordSince(startNanos);
+    }
+
+    public void recordFailover(long nanos) {
+        failoverLatency.record(nanos);
+    }
+
+    public long getUptimeMillis() {
+        return System.currentTimeMillis() - startedAt;
+    }
+
+    public Map<String, LatencyHistogram.Snapshot> snapshotRpcs() {
+        Map<String, LatencyHistogram.Snapshot> snapshots = new LinkedHashMap<>();
+        for (Map.Entry<Rpc, LatencyHistogram> entry : rpcLatency.entrySet()) {
+            snapshots.put(entry.getKey().name().toLowerCase(), entry.getValue().snapshot());
+        }
+        return snapshots;
+    }
+
+    public LatencyHistogram.Snapshot snapshotFailovers() {
+        return failoverLatency.snapshot();
+    }
+}
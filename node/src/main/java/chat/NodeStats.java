@@ -0,0 +1,245 @@
+// NodeStats.java - Point-in-time metrics of a node, returned by getNodeStats()
+package chat;
+
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class NodeStats extends NodeInfo {
+    private static final long serialVersionUID = 1L;
+
+    private final long uptimeMillis;
+    private String deliveryMode = "";
+    private long delivered;
+    private int heldBack;
+    private int clientListeners;
+    private long eventsDropped;
+    private long logBytes;
+    private long electionEpoch;
+    private long electionsStarted;
+    private long lastElectionMillis = -1;
+    private long suspicions;
+    private long falseSuspicions;
+    private LatencyHistogram.Snapshot failovers;
+    private Map<String, LatencyHistogram.Snapshot> rpcLatency = new LinkedHashMap<>();
+    private Map<Integer, PeerStats> peers = new TreeMap<>();
+
+    public NodeStats(int nodeID, String nodeName, boolean isCoordinator, long logicalClock, long uptimeMillis) {
+        super(nodeID, nodeName, isCoordinator, logicalClock);
+        this.uptimeMillis = uptimeMillis;
+    }
+
+    public long getUptimeMillis() {
+        return uptimeMillis;
+    }
+
+    public String getDeliveryMode() {
+        return deliveryMode;
+    }
+
+    public NodeStats setDeliveryMode(String deliveryMode) {
+        this.deliveryMode = deliveryMode;
+        return this;
+    }
+
+    public long getDelivered() {
+        return delivered;
+    }
+
+    public NodeStats setDelivered(long delivered) {
+        this.delivered = delivered;
+        return this;
+    }
+
+    // Messages received but not delivered yet (hold-back queue, causal or sequence buffer)
+    public int getHeldBack() {
+        return heldBack;
+    }
+
+    public NodeStats setHeldBack(int heldBack) {
+        this.heldBack = heldBack;
+        return this;
+    }
+
+    public int getClientListeners() {
+        return clientListeners;
+    }
+
+    public NodeStats setClientListeners(int clientListeners) {
+        this.clientListeners = clientListeners;
+        return this;
+    }
+
+    public long getEventsDropped() {
+        return eventsDropped;
+    }
+
+    public NodeStats setEventsDropped(long eventsDropped) {
+        this.eventsDropped = eventsDropped;
+        return this;
+    }
+
+    public long getLogBytes() {
+        return logBytes;
+    }
+
+    public NodeStats setLogBytes(long logBytes) {
+        this.logBytes = logBytes;
+        return this;
+    }
+
+    public long getElectionEpoch() {
+        return electionEpoch;
+    }
+
+    public long getElectionsStarted() {
+        return electionsStarted;
+    }
+
+    public long getLastElectionMillis() {
+        return lastElectionMillis;
+    }
+
+    public NodeStats setElections(long epoch, long started, long lastConvergenceMillis) {
+        this.electionEpoch = epoch;
+        this.electionsStarted = started;
+        this.lastElectionMillis = lastConvergenceMillis;
+        return this;
+    }
+
+    public long getSuspicions() {
+        return suspicions;
+    }
+
+    public long getFalseSuspicions() {
+        return falseSuspicions;
+    }
+
+    public NodeStats setSuspicions(long suspicions, long falseSuspicions) {
+        this.suspicions = suspicions;
+        this.falseSuspicions = falseSuspicions;
+        return this;
+    }
+
+    // Coordinator failovers observed by this node: suspicion of the old coordinator until a new one was known
+    public LatencyHistogram.Snapshot getFailovers() {
+        return failovers;
+    }
+
+    public NodeStats setFailovers(LatencyHistogram.Snapshot failovers) {
+        this.failovers = failovers;
+        return this;
+    }
+
+    // Time spent handling each kind of incoming call, keyed by lower-case RPC group
+    public Map<String, LatencyHistogram.Snapshot> getRpcLatency() {
+        return rpcLatency;
+    }
+
+    public NodeStats setRpcLatency(Map<String, LatencyHistogram.Snapshot> rpcLatency) {
+        this.rpcLatency = rpcLatency;
+        return this;
+    }
+
+    public Map<Integer, PeerStats> getPeers() {
+        return peers;
+    }
+
+    public NodeStats addPeer(PeerStats peer) {
+        peers.put(peer.getPeerId(), peer);
+        return this;
+    }
+
+    public String format() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Node ").append(getNodeID()).append(" (").append(getNodeName()).append(")")
+            .append(isCoordinator() ? " coordinator" : "").append(", up ").append(uptimeMillis / 1000).append("s, ")
+            .append(deliveryMode).append(" order, clock ").append(getLogicalClock()).append('\n');
+        sb.append("  delivered ").append(delivered).append(", held back ").append(heldBack).append(", message log ")
+            .append(logBytes / 1024).append("KB, client listeners ").append(clientListeners).append(", events dropped ")
+            .append(eventsDropped).append('\n');
+        sb.append("  elections: epoch ").append(electionEpoch).append(", started ").append(electionsStarted)
+            .append(", last convergence ").append(lastElectionMillis < 0 ? "n/a" : lastElectionMillis + "ms").append('\n');
+        sb.append("  suspicions: ").append(suspicions).append(" (false ").append(falseSuspicions).append(")\n");
+        sb.append("  failovers: ").append(failovers).append('\n');
+        sb.append("Incoming calls:\n");
+        for (Map.Entry<String, LatencyHistogram.Snapshot> rpc : rpcLatency.entrySet()) {
+            sb.append("  ").append(rpc.getKey()).append(": ").append(rpc.getValue()).append('\n');
+        }
+        sb.append("Peers:\n");
+        for (PeerStats peer : peers.values()) {
+            sb.append("  Node ").append(peer.getPeerId()).append(String.format(": phi %.2f, queue %d/%d%s, retransmitted %d, dropped %d%n",
+                peer.getPhi(), peer.getQueueDepth(), peer.getWindow(), peer.isDegraded() ? " (degraded)" : "",
+                peer.getRetransmitted(), peer.getDropped()));
+            sb.append("    sends: ").append(peer.getSendLatency()).append('\n');
+            sb.append("    pings: ").append(peer.getPingLatency()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    public static class PeerStats implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final int peerId;
+        private final double phi;
+        private final int queueDepth;
+        private final int window;
+        private final boolean degraded;
+        private final long retransmitted;
+        private final long dropped;
+        private final LatencyHistogram.Snapshot sendLatency;
+        private final LatencyHistogram.Snapshot pingLatency;
+
+        public PeerStats(int peerId, double phi, int queueDepth, int window, boolean degraded, long retransmitted,
+                         long dropped, LatencyHistogram.Snapshot sendLatency, LatencyHistogram.Snapshot pingLatency) {
+            this.peerId = peerId;
+            this.phi = phi;
+            this.queueDepth = queueDepth;
+            this.window = window;
+            this.degraded = degraded;
+            this.retransmitted = retransmitted;
+            this.dropped = dropped;
+            this.sendLatency = sendLatency;
+            this.pingLatency = pingLatency;
+        }
+
+        public int getPeerId() {
+            return peerId;
+        }
+
+        public double getPhi() {
+            return phi;
+        }
+
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+
+        public int getWindow() {
+            return window;
+        }
+
+        public boolean isDegraded() {
+            return degraded;
+        }
+
+        public long getRetransmitted() {
+            return retransmitted;
+        }
+
+        public long getDropped() {
+            return dropped;
+        }
+
+        // Round trip of each batch sent to the peer
+        public LatencyHistogram.Snapshot getSendLatency() {
+            return sendLatency;
+        }
+
+        // Round trip of each heartbeat ping
+        public LatencyHistogram.Snapshot getPingLatency() {
+            return pingLatency;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+// OverflowPolicy.java - What a peer's send window does when it is full
+package chat;
+
+public enum OverflowPolicy {
+    // Caller waits for room in the window, up to a bounded timeout
+    BLOCK,
+    // Oldest unsent message is discarded to make room
+    DROP_OLDEST,
+    // Peer is marked degraded and spills into a larger backlog that broadcasts stop waiting on
+    DEGRADE
+}
@@ -0,0 +1,204 @@
+// PeerConnectionManager.java - Single owner of peer stub resolution, with positive and negative caching
+package chat;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * resolve() only goes to the transport on a true miss: a cached stub is
+ * returned as is, and a failed lookup is remembered with exponential backoff
+ * so a node that is down is not looked up again on every message. Stubs that
+ * failed a call or are older than staleAfterMillis are re-resolved in the
+ * background, off the hot path.
+ */
+public class PeerConnectionManager {
+    private final Transport transport;
+    private final ScheduledExecutorService scheduler;
+    private final long staleAfterMillis;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final Map<Integer, Entry> entries = new ConcurrentHashMap<>();
+    private final Set<Integer> refreshing = ConcurrentHashMap.newKeySet();
+    private final ExecutorService refresher = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "stub-refresh");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder negativeHits = new LongAdder();
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder lookupFailures = new LongAdder();
+    private final LongAdder backgroundRefreshes = new LongAdder();
+    private final LongAdder totalLookupNanos = new LongAdder();
+    private final AtomicLong maxLookupNanos = new AtomicLong();
+
+    public PeerConnectionManager(Transport transport, ScheduledExecutorService scheduler, long staleAfterMillis,
+                                 long initialBackoffMillis, long maxBackoffMillis) {
+        this.transport = transport;
+        this.scheduler = scheduler;
+        this.staleAfterMillis = staleAfterMillis;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    public void start(long refreshIntervalMillis) {
+        scheduler.scheduleWithFixedDelay(this::refreshStale, refreshIntervalMillis, refreshIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        refresher.shutdownNow();
+    }
+
+    // Returns null while the peer is unreachable or inside its negative-cache backoff
+    public ChatNode resolve(int peerId) {
+        Entry entry = entries.get(peerId);
+        if (entry != null && entry.stub != null) {
+            hits.increment();
+            return entry.stub;
+        }
+        if (entry != null && System.currentTimeMillis() < entry.retryAt) {
+            negativeHits.increment();
+            return null;
+        }
+        misses.increment();
+        return lookup(peerId, entry == null ? 0 : entry.failures);
+    }
+
+    // A call through the stub failed: keep using it, but re-resolve it in the background after a backoff
+    public void reportFailure(int peerId) {
+        entries.computeIfPresent(peerId, (id, entry) -> entry.stub == null ? entry
+            : new Entry(entry.stub, entry.resolvedAt, entry.failures + 1,
+                        System.currentTimeMillis() + backoff(entry.failures + 1)));
+    }
+
+    public void reportSuccess(int peerId) {
+        entries.computeIfPresent(peerId, (id, entry) -> entry.failures == 0 || entry.stub == null ? entry
+            : new Entry(entry.stub, entry.resolvedAt, 0, 0));
+    }
+
+    public void forget(int peerId) {
+        entries.remove(peerId);
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getNegativeHits() {
+        return negativeHits.sum();
+    }
+
+    public long getLookups() {
+        return lookups.sum();
+    }
+
+    public long getLookupFailures() {
+        return lookupFailures.sum();
+    }
+
+    public long getBackgroundRefreshes() {
+        return backgroundRefreshes.sum();
+    }
+
+    public long getAverageLookupNanos() {
+        long count = lookups.sum();
+        return count == 0 ? 0 : totalLookupNanos.sum() / count;
+    }
+
+    public long getMaxLookupNanos() {
+        return maxLookupNanos.get();
+    }
+
+    private ChatNode lookup(int peerId, int previousFailures) {
+        long start = System.nanoTime();
+        lookups.increment();
+        try {
+            ChatNode stub = transport.lookup(peerId);
+            entries.put(peerId, new Entry(stub, System.currentTimeMillis(), 0, 0));
+            return stub;
+        } catch (Exception e) {
+            lookupFailures.increment();
+            int failures = previousFailures + 1;
+            entries.put(peerId, new Entry(null, 0, failures, System.currentTimeMillis() + backoff(failures)));
+            return null;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            totalLookupNanos.add(elapsed);
+            maxLookupNanos.accumulateAndGet(elapsed, Math::max);
+        }
+    }
+
+    private void refreshStale() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<Integer, Entry> e : entries.entrySet()) {
+            Entry entry = e.getValue();
+            if (entry.stub == null) {
+                continue;
+            }
+            boolean failedAndDue = entry.failures > 0 && now >= entry.retryAt;
+            boolean stale = now - entry.resolvedAt >= staleAfterMillis;
+            int peerId = e.getKey();
+            if ((failedAndDue || stale) && refreshing.add(peerId)) {
+                refresher.execute(() -> {
+                    try {
+                        backgroundRefreshes.increment();
+                        refresh(peerId, entry);
+                    } finally {
+                        refreshing.remove(peerId);
+                    }
+                });
+            }
+        }
+    }
+
+    private void refresh(int peerId, Entry previous) {
+        long start = System.nanoTime();
+        lookups.increment();
+        try {
+            ChatNode stub = transport.lookup(peerId);
+            // A fresh stub does not prove the peer is alive, so keep the failure count for backoff
+            long retryAt = previous.failures == 0 ? 0 : System.currentTimeMillis() + backoff(previous.failures);
+            entries.replace(peerId, previous, new Entry(stub, System.currentTimeMillis(), previous.failures, retryAt));
+        } catch (Exception e) {
+            lookupFailures.increment();
+            int failures = previous.failures + 1;
+            entries.replace(peerId, previous, new Entry(null, 0, failures, System.currentTimeMillis() + backoff(failures)));
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            totalLookupNanos.add(elapsed);
+            maxLookupNanos.accumulateAndGet(elapsed, Math::max);
+        }
+    }
+
+    private long backoff(int failures) {
+        long delay = initialBackoffMillis << Math.min(failures - 1, 20);
+        return Math.min(delay, maxBackoffMillis);
+    }
+
+    private static class Entry {
+        final ChatNode stub;
+        final long resolvedAt;
+        final int failures;
+        final long retryAt;
+
+        Entry(ChatNode stub, long resolvedAt, int failures, long retryAt) {
+            this.stub = stub;
+            this.resolvedAt = resolvedAt;
+            this.failures = failures;
+            this.retryAt = retryAt;
+        }
+    }
+}
@@ -0,0 +1,321 @@
+// PeerSender.java - Bounded send window and dedicated, retransmitting sender for a single peer
+package chat;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+public class PeerSender implements Runnable {
+    // Coalescing window: a batch closes at MAX_BATCH_MESSAGES, MAX_BATCH_CHARS or MAX_LINGER_NANOS
+    public static final int MAX_BATCH_MESSAGES = 256;
+    public static final int MAX_BATCH_CHARS = 64 * 1024;
+    public static final long MAX_LINGER_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+    // Unacknowledged batches are retried from 50ms, doubling up to 2s, until the peer is removed
+    public static final long RETRY_INITIAL_BACKOFF_MS = 50;
+    public static final long RETRY_MAX_BACKOFF_MS = 2000;
+    // BLOCK waits this long for room before rejecting (user sends only); DEGRADE spills up to this many windows
+    public static final long BLOCK_TIMEOUT_MS = 1000;
+    public static final int DEGRADED_BACKLOG_WINDOWS = 8;
+
+    public interface RetryListener {
+        // Called before each retransmission; returns a fresh stub, or null to keep the current one
+        ChatNode onRetry(int peerId, int attempt, Exception cause);
+    }
+
+    private final int peerId;
+    private final int window;
+    private final OverflowPolicy policy;
+    private final RetryListener retryListener;
+    private final BlockingDeque<PendingSend> queue;
+    // Latest control message (clock beacon), sent outside the window once everything queued before it has gone
+    private final AtomicReference<ChatMessage> control = new AtomicReference<>();
+    private volatile ChatNode stub;
+    private volatile boolean degraded;
+    private volatile boolean running = true;
+    private volatile Thread worker;
+
+    // Exponentially weighted average of recent batch sizes; near 1 means traffic is idle
+    private double averageBatchSize = 1.0;
+    private final LongAdder batchesSent = new LongAdder();
+    private final LongAdder messagesSent = new LongAdder();
+    private final LongAdder retransmitted = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder degradations = new LongAdder();
+    private final LatencyHistogram sendLatency = new LatencyHistogram();
+
+    public PeerSender(int peerId, ChatNode stub, int window, OverflowPolicy policy, RetryListener retryListener) {
+        this.peerId = peerId;
+        this.stub = stub;
+        this.window = window;
+        this.policy = policy;
+        this.retryListener = retryListener;
+        this.queue = new LinkedBlockingDeque<>(policy == OverflowPolicy.DEGRADE ? window * DEGRADED_BACKLOG_WINDOWS : window);
+    }
+
+    public void start(ExecutorService executor) {
+        executor.execute(this);
+    }
+
+    public int getPeerId() {
+        return peerId;
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getBatchesSent() {
+        return batchesSent.sum();
+    }
+
+    public long getMessagesSent() {
+        return messagesSent.sum();
+    }
+
+    public long getRetransmitted() {
+        return retransmitted.sum();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public long getDegradations() {
+        return degradations.sum();
+    }
+
+    public int getWindow() {
+        return window;
+    }
+
+    // Round trip of each acknowledged batch, retries not included
+    public LatencyHistogram getSendLatency() {
+        return sendLatency;
+    }
+
+    // A degraded peer has overrun its window; broadcasts no longer wait for it
+    public boolean isDegraded() {
+        return degraded;
+    }
+
+    public void updateStub(ChatNode stub) {
+        this.stub = stub;
+    }
+
+    public CompletableFuture<Void> enqueue(ChatMessage message) {
+        return enqueue(message, true);
+    }
+
+    // Only the user's own sends may wait under BLOCK; relays and forwards are rejected at once when the window is full
+    public CompletableFuture<Void> enqueue(ChatMessage message, boolean mayBlock) {
+        PendingSend pending = new PendingSend(message);
+        if (!running || !offer(pending, mayBlock)) {
+            rejected.increment();
+            pending.future.completeExceptionally(
+                new RejectedExecutionException("Send window for node " + peerId + " is full"));
+        }
+        return pending.future;
+    }
+
+    // Replaces any control message not yet sent; never waits and never takes a place in the window
+    public void sendControl(ChatMessage message) {
+        control.set(message);
+        wakeIfIdle();
+    }
+
+    // A busy worker picks the control message up once its queue has drained
+    private void wakeIfIdle() {
+        if (running && control.get() != null && queue.isEmpty()) {
+            queue.offerLast(WAKEUP);
+        }
+    }
+
+    private boolean offer(PendingSend pending, boolean mayBlock) {
+        switch (policy) {
+            case BLOCK:
+                if (!mayBlock) {
+                    return queue.offerLast(pending);
+                }
+                try {
+                    return queue.offerLast(pending, BLOCK_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            case DEGRADE:
+                if (!degraded && queue.size() >= window) {
+                    degraded = true;
+                    degradations.increment();
+                }
+                return offerDroppingOldest(pending);
+            default:
+                return offerDroppingOldest(pending);
+        }
+    }
+
+    private boolean offerDroppingOldest(PendingSend pending) {
+        while (!queue.offerLast(pending)) {
+            PendingSend oldest = queue.pollFirst();
+            if (oldest != null) {
+                dropped.increment();
+                oldest.future.completeExceptionally(
+                    new RejectedExecutionException("Dropped oldest message for node " + peerId));
+            }
+        }
+        return true;
+    }
+
+    public void stop() {
+        running = false;
+        Thread t = worker;
+        if (t != null) {
+            t.interrupt();
+        }
+        PendingSend pending;
+        while ((pending = queue.poll()) != null) {
+            if (pending == WAKEUP) {
+                continue;
+            }
+            pending.future.completeExceptionally(new RemoteException("Sender for node " + peerId + " stopped"));
+        }
+    }
+
+    @Override
+    public void run() {
+        worker = Thread.currentThread();
+        List<PendingSend> batch = new ArrayList<>();
+        while (running) {
+            try {
+                collectBatch(batch);
+            } catch (InterruptedException e) {
+                failAll(batch, new RemoteException("Sender for node " + peerId + " stopped"));
+                break;
+            }
+            if (!sendBatch(batch)) {
+                break;
+            }
+            batch.clear();
+            wakeIfIdle();
+            // Catching up below half the window clears the degraded mark
+            if (degraded && queue.size() <= window / 2) {
+                degraded = false;
+            }
+        }
+    }
+
+    private void collectBatch(List<PendingSend> batch) throws InterruptedException {
+        int chars = add(batch, queue.take());
+        chars = drainInto(batch, chars);
+
+        // Only linger when recent traffic has been bursty; an idle peer sends at once
+        boolean bursty = batch.size() > 1 || averageBatchSize > 1.5;
+        if (bursty) {
+            long deadline = System.nanoTime() + MAX_LINGER_NANOS;
+            while (batch.size() < MAX_BATCH_MESSAGES && chars < MAX_BATCH_CHARS) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
+                PendingSend next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                if (next == null) {
+                    break;
+                }
+                chars = drainInto(batch, chars + add(batch, next));
+            }
+        }
+        averageBatchSize = averageBatchSize * 0.8 + batch.size() * 0.2;
+    }
+
+    private int drainInto(List<PendingSend> batch, int chars) {
+        PendingSend next;
+        while (batch.size() < MAX_BATCH_MESSAGES && chars < MAX_BATCH_CHARS && (next = queue.poll()) != null) {
+            chars += add(batch, next);
+        }
+        return chars;
+    }
+
+    private static int add(List<PendingSend> batch, PendingSend pending) {
+        if (pending == WAKEUP) {
+            return 0;
+        }
+        batch.add(pending);
+        return pending.message.getText().sizeHint();
+    }
+
+    // Retries the batch until it is acknowledged; returns false if the sender was stopped first
+    private boolean sendBatch(List<PendingSend> batch) {
+        List<ChatMessage> messages = new ArrayList<>(batch.size() + 1);
+        for (PendingSend pending : batch) {
+            messages.add(pending.message);
+        }
+        // A control message goes out behind everything queued before it, never ahead
+        ChatMessage controlMessage = queue.isEmpty() ? control.getAndSet(null) : null;
+        if (controlMessage != null) {
+            messages.add(controlMessage);
+        }
+        if (messages.isEmpty()) {
+            return true;
+        }
+        long backoff = RETRY_INITIAL_BACKOFF_MS;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                long start = System.nanoTime();
+                stub.receiveMessages(messages);
+                sendLatency.recordSince(start);
+                batchesSent.increment();
+                messagesSent.add(messages.size());
+                for (PendingSend pending : batch) {
+                    pending.future.complete(null);
+                }
+                return true;
+            } catch (Exception e) {
+                if (!running) {
+                    failAll(batch, e);
+                    return false;
+                }
+                ChatNode fresh = retryListener == null ? null : retryListener.onRetry(peerId, attempt, e);
+                if (fresh != null) {
+                    stub = fresh;
+                }
+            }
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                failAll(batch, new RemoteException("Sender for node " + peerId + " stopped"));
+                return false;
+            }
+            backoff = Math.min(backoff * 2, RETRY_MAX_BACKOFF_MS);
+            retransmitted.add(messages.size());
+        }
+    }
+
+    private void failAll(List<PendingSend> batch, Exception e) {
+        for (PendingSend pending : batch) {
+            pending.future.completeExceptionally(e);
+        }
+    }
+
+    private static final PendingSend WAKEUP = new PendingSend(null);
+
+    private static class PendingSend {
+        final ChatMessage message;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        PendingSend(ChatMessage message) {
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+// PhiAccrualFailureDetector.java - Per-peer suspicion level from heartbeat inter-arrival statistics
+package chat;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * phi = -log10(P(no heartbeat yet | history)), using a normal distribution
+ * fitted to the last WINDOW_SIZE inter-arrival times. phi 1 means a 10%
+ * chance that the peer is still alive, phi 8 means 1e-8. Times are passed in
+ * by the caller in milliseconds so the detector can be driven by any clock.
+ */
+public class PhiAccrualFailureDetector {
+    public static final int WINDOW_SIZE = 100;
+
+    private final double threshold;
+    private final double minStdDeviationMillis;
+    private final double acceptablePauseMillis;
+    private final double firstIntervalMillis;
+    private final Map<Integer, History> histories = new ConcurrentHashMap<>();
+
+    public PhiAccrualFailureDetector(double threshold, double minStdDeviationMillis,
+                                     double acceptablePauseMillis, double firstIntervalMillis) {
+        this.threshold = threshold;
+        this.minStdDeviationMillis = minStdDeviationMillis;
+        this.acceptablePauseMillis = acceptablePauseMillis;
+        this.firstIntervalMillis = firstIntervalMillis;
+    }
+
+    public double getThreshold() {
+        return threshold;
+    }
+
+    public void heartbeat(int peerId, long nowMillis) {
+        histories.computeIfAbsent(peerId, id -> new History(firstIntervalMillis, nowMillis)).record(nowMillis);
+    }
+
+    // Starts monitoring a peer as if it had just sent a heartbeat
+    public void watch(int peerId, long nowMillis) {
+        histories.computeIfAbsent(peerId, id -> new History(firstIntervalMillis, nowMillis));
+    }
+
+    public void remove(int peerId) {
+        histories.remove(peerId);
+    }
+
+    public boolean isWatching(int peerId) {
+        return histories.containsKey(peerId);
+    }
+
+    public double phi(int peerId, long nowMillis) {
+        History history = histories.get(peerId);
+        return history == null ? 0.0 : history.phi(nowMillis);
+    }
+
+    public boolean isAvailable(int peerId, long nowMillis) {
+        return phi(peerId, nowMillis) < threshold;
+    }
+
+    public long millisSinceHeartbeat(int peerId, long nowMillis) {
+        History history = histories.get(peerId);
+        return history == null ? 0 : history.elapsed(nowMillis);
+    }
+
+    public double getMeanIntervalMillis(int peerId) {
+        History history = histories.get(peerId);
+        return history == null ? 0.0 : history.mean();
+    }
+
+    private class History {
+        private final long[] intervals = new long[WINDOW_SIZE];
+        private int count;
+        private int next;
+        private long sum;
+        private long sumOfSquares;
+        private long lastHeartbeat;
+
+        History(double firstInterval, long now) {
+            // Seed with a plausible distribution so a brand new peer can still be judged
+            long mean = (long) firstInterval;
+            long deviation = mean / 4;
+            add(mean - deviation);
+            add(mean + deviation);
+            lastHeartbeat = now;
+        }
+
+        synchronized void record(long now) {
+            long interval = now - lastHeartbeat;
+            lastHeartbeat = now;
+            if (interval > 0) {
+                add(interval);
+            }
+        }
+
+        synchronized double phi(long now) {
+            double mean = mean() + acceptablePauseMillis;
+            double deviation = Math.max(standardDeviation(), minStdDeviationMillis);
+            double elapsed = now - lastHeartbeat;
+
+            // Logistic approximation of the normal cumulative distribution
+            double y = (elapsed - mean) / deviation;
+            double e = Math.exp(-y * (1.5976 + 0.070566 * y * y));
+            if (elapsed > mean) {
+                return -Math.log10(e / (1.0 + e));
+            }
+            return -Math.log10(1.0 - 1.0 / (1.0 + e));
+        }
+
+        synchronized long elapsed(long now) {
+            return now - lastHeartbeat;
+        }
+
+        synchronized double mean() {
+            return count == 0 ? 0.0 : (double) sum / count;
+        }
+
+        private double standardDeviation() {
+            double mean = mean();
+            double variance = (double) sumOfSquares / count - mean * mean;
+            return Math.sqrt(Math.max(variance, 0.0));
+        }
+
+        private void add(long interval) {
+            if (count == WINDOW_SIZE) {
+                long evicted = intervals[next];
+                sum -= evicted;
+                sumOfSquares -= evicted * evicted;
+            } else {
+                count++;
+            }
+            intervals[next] = interval;
+            next = (next + 1) % WINDOW_SIZE;
+            sum += interval;
+            sumOfSquares += interval * interval;
+        }
+    }
+}
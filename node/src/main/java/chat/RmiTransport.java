@@ -0,0 +1,79 @@
+// RmiTransport.java - Default transport: Java RMI with a registry on port 1099
+package chat;
+
+import java.net.InetSocketAddress;
+import java.rmi.NotBoundException;
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.List;
+
+public class RmiTransport implements Transport {
+    public static final int REGISTRY_PORT = 1099;
+    public static final String NAME_PREFIX = "ChatNode_";
+
+    private Registry registry;
+    private ChatNode exported;
+
+    @Override
+    public String getName() {
+        return "rmi";
+    }
+
+    @Override
+    public void bind(int nodeId, ChatNode node) throws RemoteException {
+        // Try to create a new registry
+        try {
+            registry = LocateRegistry.createRegistry(REGISTRY_PORT);
+            EventLog.info("transport", "Created new RMI registry on port " + REGISTRY_PORT);
+        } catch (RemoteException e) {
+            // Registry already exists
+            registry = LocateRegistry.getRegistry(REGISTRY_PORT);
+            EventLog.info("transport", "Using existing RMI registry on port " + REGISTRY_PORT);
+        }
+
+        // Register this node
+        ChatNode stub = (ChatNode) UnicastRemoteObject.exportObject(node, 0);
+        registry.rebind(NAME_PREFIX + nodeId, stub);
+        exported = node;
+        EventLog.info("transport", "Node registered as: " + NAME_PREFIX + nodeId);
+    }
+
+    @Override
+    public ChatNode lookup(int nodeId) throws RemoteException, NotBoundException {
+        return (ChatNode) registry.lookup(NAME_PREFIX + nodeId);
+    }
+
+    @Override
+    public List<Integer> listNodeIds() throws RemoteException {
+        List<Integer> ids = new ArrayList<>();
+        for (String name : registry.list()) {
+            if (name.startsWith(NAME_PREFIX)) {
+                try {
+                    ids.add(Integer.parseInt(name.substring(NAME_PREFIX.length())));
+                } catch (NumberFormatException e) {
+                    EventLog.warn("transport", "Ignoring malformed registry entry " + name);
+                }
+            }
+        }
+        return ids;
+    }
+
+    @Override
+    public InetSocketAddress getDataAddress() {
+        return null;
+    }
+
+    @Override
+    public void close() {
+        if (exported != null) {
+            try {
+                UnicastRemoteObject.unexportObject(exported, true);
+            } catch (RemoteException e) {
+                EventLog.error("transport", "Error unexporting node: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+// RoomIndex.java - Per-room subscriber sets and consistent-hash room ownership
+package chat;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Kept up to date from membership: every member entry carries the rooms its
+ * node subscribes to, so a broadcast looks up its room's subscribers instead
+ * of going to every node. Each room also has an owner, picked by consistent
+ * hashing over all live members, that sequences the room in sequencer mode
+ * and keeps its history whether or not it subscribes.
+ */
+public class RoomIndex {
+    private final int selfId;
+    private final HashRing ring;
+    private final Map<String, Set<Integer>> subscribers = new ConcurrentHashMap<>();
+    private final Map<Integer, Set<String>> subscriptions = new ConcurrentHashMap<>();
+
+    public RoomIndex(int selfId, int virtualNodes) {
+        this.selfId = selfId;
+        this.ring = new HashRing(virtualNodes);
+        ring.add(selfId);
+    }
+
+    // Returns true if the node is new to the ring, which can move room ownership
+    public synchronized boolean update(int nodeId, Set<String> rooms) {
+        Set<String> previous = subscriptions.put(nodeId, Set.copyOf(rooms));
+        if (previous != null) {
+            for (String room : previous) {
+                if (!rooms.contains(room)) {
+                    subscribers(room).remove(nodeId);
+                }
+            }
+        }
+        for (String room : rooms) {
+            subscribers(room).add(nodeId);
+        }
+        return ring.add(nodeId);
+    }
+
+    public synchronized boolean remove(int nodeId) {
+        Set<String> previous = subscriptions.remove(nodeId);
+        if (previous != null) {
+            for (String room : previous) {
+                subscribers(room).remove(nodeId);
+            }
+        }
+        return nodeId != selfId && ring.remove(nodeId);
+    }
+
+    // Live view of the room's subscribers; stays the same object as subscriptions change
+    public Set<Integer> subscribers(String room) {
+        return subscribers.computeIfAbsent(room, r -> ConcurrentHashMap.newKeySet());
+    }
+
+    public int owner(String room) {
+        return ring.owner(room);
+    }
+
+    public boolean isSubscribed(int nodeId, String room) {
+        return subscriptions.getOrDefault(nodeId, Set.of()).contains(room);
+    }
+
+    public Set<String> roomsOf(int nodeId) {
+        return subscriptions.getOrDefault(nodeId, Set.of());
+    }
+
+    // Everyone a message to this room goes to: its subscribers and its owner
+    public Set<Integer> targets(String room) {
+        Set<Integer> targets = new HashSet<>(subscribers(room));
+        int owner = owner(room);
+        if (owner >= 0) {
+            targets.add(owner);
+        }
+        return targets;
+    }
+
+    // Rooms with at least one subscriber, sorted by name
+    public Set<String> rooms() {
+        Set<String> rooms = new TreeSet<>();
+        for (Map.Entry<String, Set<Integer>> entry : subscribers.entrySet()) {
+            if (!entry.getValue().isEmpty()) {
+                rooms.add(entry.getKey());
+            }
+        }
+        return Collections.unmodifiableSet(rooms);
+    }
+}
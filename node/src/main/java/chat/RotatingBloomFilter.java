@@ -0,0 +1,110 @@
+// RotatingBloomFilter.java - Time-windowed, memory-bounded seen-set of (senderId, sequence) keys
+package chat;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * Two generations of a Bloom filter: new keys go into the current one and lookups
+ * check both. The current generation is retired when it holds its expected number
+ * of keys or gets older than the rotation period, so a key is remembered for at
+ * least one period and memory never grows. Sized with m = -n ln p / (ln 2)^2 bits
+ * and k = (m / n) ln 2 hash functions derived by double hashing.
+ */
+public class RotatingBloomFilter {
+    private final int bits;
+    private final int hashes;
+    private final int capacity;
+    private final long rotateNanos;
+
+    private volatile Generation current;
+    private volatile Generation previous;
+    private long rotations;
+
+    public RotatingBloomFilter(int capacity, double falsePositiveRate, long rotateMillis) {
+        double m = -capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        this.bits = (int) Math.ceil(m / 64) * 64;
+        this.hashes = Math.max(1, (int) Math.round(bits / (double) capacity * Math.log(2)));
+        this.capacity = capacity;
+        this.rotateNanos = rotateMillis * 1_000_000L;
+        this.current = new Generation(bits);
+        this.previous = new Generation(bits);
+    }
+
+    public boolean mightContain(int senderId, long sequence) {
+        long hash = hash(senderId, sequence);
+        return current.contains(hash, hashes, bits) || previous.contains(hash, hashes, bits);
+    }
+
+    public void add(int senderId, long sequence) {
+        maybeRotate();
+        current.add(hash(senderId, sequence), hashes, bits);
+    }
+
+    public synchronized long getRotations() {
+        return rotations;
+    }
+
+    // Memory held by both generations, in bytes
+    public int getSizeBytes() {
+        return 2 * bits / 8;
+    }
+
+    private void maybeRotate() {
+        Generation gen = current;
+        if (gen.count.get() < capacity && System.nanoTime() - gen.createdAt < rotateNanos) {
+            return;
+        }
+        synchronized (this) {
+            if (current == gen) {
+                previous = gen;
+                current = new Generation(bits);
+                rotations++;
+            }
+        }
+    }
+
+    // splitmix64 finalizer over the combined key
+    private static long hash(int senderId, long sequence) {
+        long z = sequence + 0x9E3779B97F4A7C15L * (senderId + 1);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static class Generation {
+        final AtomicLongArray words;
+        final long createdAt = System.nanoTime();
+        final AtomicInteger count = new AtomicInteger();
+
+        Generation(int bits) {
+            this.words = new AtomicLongArray(bits / 64);
+        }
+
+        boolean contains(long hash, int hashes, int bits) {
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 0; i < hashes; i++) {
+                int bit = Math.floorMod(h1 + i * h2, bits);
+                if ((words.get(bit >>> 6) & (1L << (bit & 63))) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void add(long hash, int hashes, int bits) {
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 0; i < hashes; i++) {
+                int bit = Math.floorMod(h1 + i * h2, bits);
+                long mask = 1L << (bit & 63);
+                long word;
+                do {
+                    word = words.get(bit >>> 6);
+                } while ((word & mask) == 0 && !words.compareAndSet(bit >>> 6, word, word | mask));
+            }
+            count.incrementAndGet();
+        }
+    }
+}
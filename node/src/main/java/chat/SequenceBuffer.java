@@ -0,0 +1,158 @@
+// SequenceBuffer.java - Delivers coordinator-sequenced messages in global sequence order
+package chat;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/*
+ * Messages are delivered strictly in global sequence order; anything ahead of a
+ * gap is held until the gap is filled. The most recent delivered messages are
+ * retained so this node can answer retransmission requests from its peers.
+ * A node that has not seen any sequenced message yet starts at the first one it
+ * receives.
+ */
+public class SequenceBuffer {
+    private final int retain;
+    private final Consumer<ChatMessage> deliver;
+    private final NavigableMap<Long, ChatMessage> pending = new TreeMap<>();
+    private final ArrayDeque<ChatMessage> recent = new ArrayDeque<>();
+
+    private long nextExpected = -1;
+    private long gapSinceNanos = -1;
+    private long delivered;
+    private long duplicates;
+    private int maxHeld;
+
+    public SequenceBuffer(int retain, Consumer<ChatMessage> deliver) {
+        this.retain = retain;
+        this.deliver = deliver;
+    }
+
+    // Returns true if the message was new, i.e. neither delivered nor held already
+    public synchronized boolean receive(ChatMessage message) {
+        long sequence = message.getGlobalSequence();
+        if (nextExpected < 0) {
+            nextExpected = sequence;
+        }
+        if (sequence < nextExpected || pending.containsKey(sequence)) {
+            duplicates++;
+            return false;
+        }
+        pending.put(sequence, message);
+        drain();
+        maxHeld = Math.max(maxHeld, pending.size());
+        return true;
+    }
+
+    // Sets the first expected sequence number if nothing has been received yet
+    public synchronized void start(long first) {
+        if (nextExpected < 0) {
+            nextExpected = first;
+            drain();
+        }
+    }
+
+    // The message with this sequence number arrived another way (history catch-up); it and all before it count as delivered
+    public synchronized void markDelivered(long sequence) {
+        if (sequence < nextExpected) {
+            return;
+        }
+        NavigableMap<Long, ChatMessage> caughtUp = pending.headMap(sequence, true);
+        duplicates += caughtUp.size();
+        caughtUp.clear();
+        nextExpected = sequence + 1;
+        drain();
+    }
+
+    public synchronized boolean isStarted() {
+        return nextExpected >= 0;
+    }
+
+    public synchronized long getNextExpected() {
+        return nextExpected;
+    }
+
+    public synchronized long getHighest() {
+        return pending.isEmpty() ? nextExpected - 1 : pending.lastKey();
+    }
+
+    // Sequence numbers below the highest received one that are still missing
+    public synchronized List<Long> missing() {
+        List<Long> missing = new ArrayList<>();
+        if (nextExpected < 0) {
+            return missing;
+        }
+        long expected = nextExpected;
+        for (long sequence : pending.keySet()) {
+            while (expected < sequence) {
+                missing.add(expected++);
+            }
+            expected = sequence + 1;
+        }
+        return missing;
+    }
+
+    // How long the oldest unfilled gap has been open, or -1 if there is none
+    public synchronized long gapAgeMillis() {
+        return gapSinceNanos < 0 ? -1 : (System.nanoTime() - gapSinceNanos) / 1_000_000;
+    }
+
+    // Retained messages from fromSequence on; a fromSequence of 0 returns the most recent ones
+    public synchronized List<ChatMessage> fetch(long fromSequence, int maxMessages) {
+        List<ChatMessage> result = new ArrayList<>();
+        if (fromSequence <= 0) {
+            Iterator<ChatMessage> newest = recent.descendingIterator();
+            while (newest.hasNext() && result.size() < maxMessages) {
+                result.add(0, newest.next());
+            }
+            return result;
+        }
+        for (ChatMessage message : recent) {
+            if (result.size() >= maxMessages) {
+                return result;
+            }
+            if (message.getGlobalSequence() >= fromSequence) {
+                result.add(message);
+            }
+        }
+        for (ChatMessage message : pending.tailMap(fromSequence, true).values()) {
+            if (result.size() >= maxMessages) {
+                break;
+            }
+            result.add(message);
+        }
+        return result;
+    }
+
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    public synchronized String getMetrics() {
+        return "next " + nextExpected + ", held " + pending.size() + " (max " + maxHeld + "), delivered "
+            + delivered + ", duplicates " + duplicates;
+    }
+
+    private void drain() {
+        ChatMessage next;
+        while ((next = pending.remove(nextExpected)) != null) {
+            nextExpected++;
+            delivered++;
+            recent.addLast(next);
+            if (recent.size() > retain) {
+                recent.removeFirst();
+            }
+            deliver.accept(next);
+        }
+        if (pending.isEmpty()) {
+            gapSinceNanos = -1;
+        } else if (gapSinceNanos < 0) {
+            gapSinceNanos = System.nanoTime();
+        }
+    }
+}
@@ -0,0 +1,343 @@
+// SequencerBroadcast.java - Coordinator-sequenced total order broadcast over a k-ary relay tree
+package chat;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/*
+ * Senders submit to the coordinator, which stamps a global sequence number and
+ * sends the message down a tree: members are ordered [coordinator, rest by ID]
+ * and position p relays to positions p*k+1 .. p*k+k. Receivers deliver in
+ * sequence order and pull missing numbers from the coordinator when a gap stays
+ * open. A sender keeps each submission until it sees it delivered and resubmits
+ * it to whoever is coordinator; the sequencer drops (senderId, senderSequence)
+ * pairs it has already ordered. A new coordinator first collects everything its
+ * peers hold past its own position, fills numbers nobody holds with empty
+ * beacons, and only then continues the sequence. Each room has its own
+ * instance, and its "coordinator" is the room's owner.
+ */
+public class SequencerBroadcast {
+    public interface Network {
+        Collection<Integer> members();
+        int coordinator();
+        void send(int peerId, ChatMessage message);
+        List<ChatMessage> fetch(int peerId, long fromSequence, int maxMessages) throws Exception;
+    }
+
+    public enum Role { FOLLOWER, TAKING_OVER, SEQUENCER }
+
+    public static final int FETCH_BATCH = 256;
+    public static final int RETAINED_MESSAGES = 4096;
+    private static final long REPAIR_INTERVAL_MS = 100;
+    private static final long SYNC_INTERVAL_MS = 1000;
+    private static final int DEDUP_WINDOW_SIZE = 4096;
+
+    private final int selfId;
+    private final String selfName;
+    private final String room;
+    private final int fanout;
+    private final long nackDelayMillis;
+    private final long resubmitAfterMillis;
+    private final Network network;
+    private final Consumer<ChatMessage> deliver;
+    private final SequenceBuffer buffer;
+    private final DedupWindow sequenced = new DedupWindow(DEDUP_WINDOW_SIZE);
+    private final Map<Long, Submission> submissions = new ConcurrentSkipListMap<>();
+    private final List<ChatMessage> queuedDuringTakeover = new ArrayList<>();
+    private final ScheduledExecutorService repairExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "sequencer-repair");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private volatile Role role = Role.FOLLOWER;
+    private long nextSequence;
+    private long lastSyncMillis;
+
+    private final LongAdder sequencedCount = new LongAdder();
+    private final LongAdder duplicateSubmissions = new LongAdder();
+    private final LongAdder ignoredSubmissions = new LongAdder();
+    private final LongAdder relayed = new LongAdder();
+    private final LongAdder nacks = new LongAdder();
+    private final LongAdder fetched = new LongAdder();
+    private final LongAdder fillers = new LongAdder();
+    private final LongAdder resubmissions = new LongAdder();
+    private final LongAdder takeovers = new LongAdder();
+    private volatile long lastTakeoverMillis = -1;
+
+    public SequencerBroadcast(int selfId, String selfName, String room, int fanout, long nackDelayMillis,
+                              long resubmitAfterMillis, Network network, Consumer<ChatMessage> deliver) {
+        this.selfId = selfId;
+        this.selfName = selfName;
+        this.room = room;
+        this.fanout = fanout;
+        this.nackDelayMillis = nackDelayMillis;
+        this.resubmitAfterMillis = resubmitAfterMillis;
+        this.network = network;
+        this.deliver = deliver;
+        this.buffer = new SequenceBuffer(RETAINED_MESSAGES, this::onDeliver);
+    }
+
+    public void start() {
+        repairExecutor.scheduleWithFixedDelay(this::repair, REPAIR_INTERVAL_MS, REPAIR_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        repairExecutor.shutdownNow();
+    }
+
+    public Role getRole() {
+        return role;
+    }
+
+    // Sender side: hand a new message to the coordinator and keep it until it is delivered
+    public void submit(ChatMessage message) {
+        submissions.put(message.getSenderSequence(), new Submission(message));
+        sendToCoordinator(message);
+    }
+
+    // Sequencer side: an unsequenced message arrived from a sender
+    public void onSubmission(ChatMessage message) {
+        synchronized (this) {
+            if (role == Role.SEQUENCER) {
+                sequence(message);
+                return;
+            }
+            if (role == Role.TAKING_OVER) {
+                queuedDuringTakeover.add(message);
+                return;
+            }
+        }
+        // Not the sequencer (any more); the sender resubmits to the current coordinator
+        ignoredSubmissions.increment();
+    }
+
+    // Receiver side: a sequenced message arrived from the coordinator or a relay
+    public void onSequenced(ChatMessage message) {
+        if (buffer.receive(message)) {
+            relay(message);
+        }
+    }
+
+    // Messages up to this global sequence arrived another way (history catch-up), so they are not fetched again
+    public void markDelivered(long globalSequence) {
+        buffer.markDelivered(globalSequence);
+    }
+
+    // Re-check the role right away instead of waiting for the next repair round
+    public void onCoordinatorChanged() {
+        repairExecutor.execute(this::repair);
+    }
+
+    public List<ChatMessage> fetch(long fromSequence, int maxMessages) {
+        return buffer.fetch(fromSequence, Math.min(maxMessages, FETCH_BATCH));
+    }
+
+    // Sequenced messages held behind a gap
+    public int getHeldBack() {
+        return buffer.size();
+    }
+
+    public String getMetrics() {
+        return "role " + role.name().toLowerCase() + ", " + buffer.getMetrics() + ", pending submissions "
+            + submissions.size();
+    }
+
+    public String getCounters() {
+        long takeover = lastTakeoverMillis;
+        return "sequenced " + sequencedCount.sum() + " (duplicate " + duplicateSubmissions.sum() + ", ignored "
+            + ignoredSubmissions.sum() + "), relayed " + relayed.sum() + ", gap requests " + nacks.sum()
+            + ", fetched " + fetched.sum() + ", fillers " + fillers.sum() + ", resubmitted " + resubmissions.sum()
+            + ", takeovers " + takeovers.sum() + (takeover < 0 ? "" : " (last " + takeover + "ms)");
+    }
+
+    private void sequence(ChatMessage message) {
+        long senderSequence = message.getSenderSequence();
+        if (senderSequence != 0 && !sequenced.markSeen(message.getSenderID(), senderSequence)) {
+            duplicateSubmissions.increment();
+            return;
+        }
+        message.setGlobalSequence(nextSequence++);
+        sequencedCount.increment();
+        buffer.receive(message);
+        relay(message);
+    }
+
+    private void onDeliver(ChatMessage message) {
+        if (message.isClockBeacon()) {
+            return;
+        }
+        if (message.getSenderSequence() != 0) {
+            sequenced.markSeen(message.getSenderID(), message.getSenderSequence());
+            if (message.getSenderID() == selfId) {
+                submissions.remove(message.getSenderSequence());
+            }
+        }
+        deliver.accept(message);
+    }
+
+    private void relay(ChatMessage message) {
+        int coordinator = network.coordinator();
+        List<Integer> order = new ArrayList<>(network.members());
+        Collections.sort(order);
+        order.remove(Integer.valueOf(coordinator));
+        order.add(0, coordinator);
+        int position = order.indexOf(selfId);
+        if (position < 0) {
+            return;
+        }
+        for (int child = position * fanout + 1; child <= position * fanout + fanout && child < order.size(); child++) {
+            network.send(order.get(child), message);
+            relayed.increment();
+        }
+    }
+
+    private void sendToCoordinator(ChatMessage message) {
+        int coordinator = network.coordinator();
+        if (coordinator == selfId) {
+            onSubmission(message);
+        } else {
+            network.send(coordinator, message);
+        }
+    }
+
+    private void repair() {
+        try {
+            int coordinator = network.coordinator();
+            if (coordinator == selfId && role == Role.FOLLOWER) {
+                takeOver();
+            } else if (coordinator != selfId && role != Role.FOLLOWER) {
+                synchronized (this) {
+                    role = Role.FOLLOWER;
+                    queuedDuringTakeover.clear();
+                }
+            }
+            if (role == Role.FOLLOWER) {
+                requestMissing(coordinator);
+            }
+            resubmit();
+        } catch (Exception e) {
+            EventLog.error("sequencer", "Error repairing sequence of room {}: {}", room, e.getMessage());
+        }
+    }
+
+    // Pull from the coordinator when a gap has stayed open, and periodically to catch a lost tail
+    private void requestMissing(int coordinator) {
+        long now = System.currentTimeMillis();
+        boolean gap = buffer.gapAgeMillis() >= nackDelayMillis;
+        if (!buffer.isStarted() || !(gap || now - lastSyncMillis >= SYNC_INTERVAL_MS)) {
+            return;
+        }
+        lastSyncMillis = now;
+        if (gap) {
+            nacks.increment();
+        }
+        try {
+            for (ChatMessage message : network.fetch(coordinator, buffer.getNextExpected(), FETCH_BATCH)) {
+                if (buffer.receive(message)) {
+                    fetched.increment();
+                }
+            }
+        } catch (Exception e) {
+            // The coordinator is unreachable; the failure detector and election take it from here
+        }
+    }
+
+    private void resubmit() {
+        long now = System.currentTimeMillis();
+        for (Submission submission : submissions.values()) {
+            if (now - submission.submittedAt >= resubmitAfterMillis) {
+                submission.submittedAt = now;
+                resubmissions.increment();
+                sendToCoordinator(submission.message);
+            }
+        }
+    }
+
+    private void takeOver() {
+        long start = System.currentTimeMillis();
+        synchronized (this) {
+            role = Role.TAKING_OVER;
+        }
+        takeovers.increment();
+
+        // Collect what peers hold beyond our position; a node with no history takes their recent tail
+        long from = buffer.isStarted() ? buffer.getNextExpected() : 0;
+        TreeMap<Long, ChatMessage> collected = new TreeMap<>();
+        for (int peer : network.members()) {
+            if (peer == selfId) {
+                continue;
+            }
+            try {
+                long cursor = from;
+                while (true) {
+                    List<ChatMessage> batch = network.fetch(peer, cursor, FETCH_BATCH);
+                    for (ChatMessage message : batch) {
+                        collected.putIfAbsent(message.getGlobalSequence(), message);
+                    }
+                    if (cursor <= 0 || batch.size() < FETCH_BATCH) {
+                        break;
+                    }
+                    cursor = batch.get(batch.size() - 1).getGlobalSequence() + 1;
+                }
+            } catch (Exception e) {
+                // Unreachable peers hold nothing we can recover
+            }
+        }
+
+        synchronized (this) {
+            if (!collected.isEmpty()) {
+                buffer.start(collected.firstKey());
+            }
+            buffer.start(1);
+            for (ChatMessage message : collected.values()) {
+                if (buffer.receive(message)) {
+                    fetched.increment();
+                }
+            }
+            // Numbers nobody holds died with the old coordinator; their senders resubmit the content
+            for (long missing : buffer.missing()) {
+                ChatMessage filler = ChatMessage.clockBeacon(selfName, selfId, 0);
+                filler.setGlobalSequence(missing);
+                filler.setRoom(room);
+                fillers.increment();
+                buffer.receive(filler);
+                relay(filler);
+            }
+            nextSequence = buffer.getHighest() + 1;
+            if (network.coordinator() != selfId) {
+                role = Role.FOLLOWER;
+                queuedDuringTakeover.clear();
+                return;
+            }
+            role = Role.SEQUENCER;
+            for (ChatMessage message : queuedDuringTakeover) {
+                sequence(message);
+            }
+            queuedDuringTakeover.clear();
+        }
+        lastTakeoverMillis = System.currentTimeMillis() - start;
+        for (Submission submission : submissions.values()) {
+            onSubmission(submission.message);
+        }
+    }
+
+    private static class Submission {
+        final ChatMessage message;
+        volatile long submittedAt = System.currentTimeMillis();
+
+        Submission(ChatMessage message) {
+            this.message = message;
+        }
+    }
+}
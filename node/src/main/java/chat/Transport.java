@@ -0,0 +1,17 @@
+// Transport.java - How a node is published and how peers are reached
+package chat;
+
+import java.net.InetSocketAddress;
+import java.rmi.NotBoundException;
+import java.rmi.RemoteException;
+import java.util.List;
+
+public interface Transport {
+    String getName();
+    void bind(int nodeId, ChatNode node) throws RemoteException;
+    ChatNode lookup(int nodeId) throws RemoteException, NotBoundException;
+    List<Integer> listNodeIds() throws RemoteException;
+    // Where peers send this node's messages, or null when the RMI stub is the only way in
+    InetSocketAddress getDataAddress();
+    void close();
+}
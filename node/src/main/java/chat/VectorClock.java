@@ -0,0 +1,99 @@
+// VectorClock.java - Vector clock keyed by node ID with compact delta encoding
+package chat;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.TreeMap;
+
+/*
+ * Encoding: varint sequence (this message's entry for its sender), byte kind,
+ * varint entry count, then per changed entry varint(id gap) and varint(value
+ * increase). A DELTA is relative to the sender's previous message, so only the
+ * entries that moved since then are sent; a FULL vector is relative to zero.
+ */
+public class VectorClock {
+    public static final byte FULL = 0;
+    public static final byte DELTA = 1;
+
+    private final TreeMap<Integer, Long> entries = new TreeMap<>();
+
+    public VectorClock() {
+    }
+
+    public VectorClock(VectorClock other) {
+        entries.putAll(other.entries);
+    }
+
+    public long get(int nodeId) {
+        return entries.getOrDefault(nodeId, 0L);
+    }
+
+    public void set(int nodeId, long value) {
+        entries.put(nodeId, value);
+    }
+
+    public long increment(int nodeId) {
+        return entries.merge(nodeId, 1L, Long::sum);
+    }
+
+    public Map<Integer, Long> asMap() {
+        return entries;
+    }
+
+    public byte[] encode(int senderId, VectorClock previous) {
+        VectorClock base = previous == null ? new VectorClock() : previous;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Varint.write(out, get(senderId));
+        out.write(previous == null ? FULL : DELTA);
+
+        int changed = 0;
+        for (Map.Entry<Integer, Long> entry : entries.entrySet()) {
+            if (entry.getValue() != base.get(entry.getKey())) {
+                changed++;
+            }
+        }
+        Varint.write(out, changed);
+
+        int lastId = 0;
+        for (Map.Entry<Integer, Long> entry : entries.entrySet()) {
+            long increase = entry.getValue() - base.get(entry.getKey());
+            if (increase != 0) {
+                Varint.write(out, entry.getKey() - lastId);
+                Varint.write(out, increase);
+                lastId = entry.getKey();
+            }
+        }
+        return out.toByteArray();
+    }
+
+    public static long sequenceOf(byte[] encoded) {
+        return Varint.read(ByteBuffer.wrap(encoded));
+    }
+
+    public static boolean isFull(byte[] encoded) {
+        ByteBuffer buffer = ByteBuffer.wrap(encoded);
+        Varint.read(buffer);
+        return buffer.get() == FULL;
+    }
+
+    // previous is ignored for FULL encodings and required for DELTA encodings
+    public static VectorClock decode(byte[] encoded, VectorClock previous) {
+        ByteBuffer buffer = ByteBuffer.wrap(encoded);
+        Varint.read(buffer);
+        byte kind = buffer.get();
+        VectorClock clock = kind == FULL || previous == null ? new VectorClock() : new VectorClock(previous);
+        long count = Varint.read(buffer);
+        int id = 0;
+        for (long i = 0; i < count; i++) {
+            id += (int) Varint.read(buffer);
+            clock.set(id, clock.get(id) + Varint.read(buffer));
+        }
+        return clock;
+    }
+
+    @Override
+    public String toString() {
+        return entries.toString();
+    }
+}
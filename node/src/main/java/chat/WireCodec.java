@@ -0,0 +1,321 @@
+// WireCodec.java - Length-prefixed binary framing used by the NIO transport
+package chat;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Frame layout (big-endian):
+ *   int  length          bytes that follow this field
+ *   byte type
+ *   int  correlationId   echoed back in the response frame
+ *   ...  payload
+ *
+ * MESSAGES payload: varint count, then per message
+ *   byte flags, varint senderId, varint timestamp, varint senderSequence, varint globalSequence,
+ *   varint originTimeMillis,
+ *   then if FLAG_SENDER_NAME: varint senderLength, sender UTF-8,
+ *   then varint textLength, if FLAG_COMPRESSED: varint utf8Length, text (UTF-8, or deflated),
+ *   then if FLAG_CAUSAL_CLOCK: varint clockLength, encoded vector clock,
+ *   then if FLAG_ROOM: varint roomLength, room UTF-8 (absent for the default room),
+ *   then if FLAG_ROOM_SEQUENCE: varint roomSequence
+ *
+ * Sender names are sent once per connection: each end keeps a dictionary of
+ * node ID to name, and a message carries the name only when the writer has
+ * not sent it on this connection yet (or it changed).
+ *
+ * ELECTION_MESSAGE payload: byte type ordinal, int senderId, long epoch
+ */
+public final class WireCodec {
+    public static final byte MESSAGES = 1;
+    public static final byte PING = 2;
+    public static final byte START_ELECTION = 3;
+    public static final byte ELECT_COORDINATOR = 4;
+    public static final byte ELECTION_MESSAGE = 5;
+    public static final byte RESPONSE_OK = 10;
+    public static final byte RESPONSE_ERROR = 11;
+
+    public static final int LENGTH_FIELD = 4;
+    public static final int HEADER_SIZE = 1 + 4;
+    public static final int MAX_FRAME_SIZE = 64 * 1024 * 1024;
+
+    private static final byte FLAG_CLOCK_BEACON = 1;
+    private static final byte FLAG_CAUSAL_CLOCK = 2;
+    private static final byte FLAG_ROOM = 4;
+    private static final byte FLAG_SENDER_NAME = 8;
+    private static final byte FLAG_COMPRESSED = 16;
+    private static final byte FLAG_ROOM_SEQUENCE = 32;
+
+    private WireCodec() {
+    }
+
+    public static int messagesFrameSize(List<ChatMessage> messages) {
+        return messagesFrameSize(messages, Map.of());
+    }
+
+    // Upper bound: a sender repeated within the batch is counted with its name each time
+    public static int messagesFrameSize(List<ChatMessage> messages, Map<Integer, String> sentNames) {
+        int size = LENGTH_FIELD + HEADER_SIZE + Varint.size(messages.size());
+        for (ChatMessage m : messages) {
+            size += 1 + Varint.size(m.getSenderID()) + Varint.size(m.getLogicalTimestamp())
+                + Varint.size(m.getSenderSequence()) + Varint.size(m.getGlobalSequence()) + Varint.size(m.getOriginTimeMillis());
+            if (!m.getSender().equals(sentNames.get(m.getSenderID()))) {
+                size += varStringSize(m.getSender());
+            }
+            MessageText text = m.getText();
+            size += Varint.size(text.wireLength()) + text.wireLength();
+            if (text.isCompressed()) {
+                size += Varint.size(text.utf8Length());
+            }
+            if (m.getCausalClock() != null) {
+                size += Varint.size(m.getCausalClock().length) + m.getCausalClock().length;
+            }
+            if (hasRoom(m)) {
+                size += varStringSize(m.getRoom());
+            }
+            if (m.getRoomSequence() != 0) {
+                size += Varint.size(m.getRoomSequence());
+            }
+        }
+        return size;
+    }
+
+    public static void writeMessages(ByteBuffer buffer, int correlationId, List<ChatMessage> messages) {
+        writeMessages(buffer, correlationId, messages, new HashMap<>());
+    }
+
+    // sentNames holds the names already sent on this connection and is updated with the ones this frame adds
+    public static void writeMessages(ByteBuffer buffer, int correlationId, List<ChatMessage> messages,
+                                     Map<Integer, String> sentNames) {
+        int start = buffer.position();
+        writeHeader(buffer, MESSAGES, correlationId);
+        Varint.write(buffer, messages.size());
+        for (ChatMessage m : messages) {
+            MessageText text = m.getText();
+            boolean sendName = !m.getSender().equals(sentNames.get(m.getSenderID()));
+            byte flags = (byte) ((m.isClockBeacon() ? FLAG_CLOCK_BEACON : 0) | (m.getCausalClock() != null ? FLAG_CAUSAL_CLOCK : 0)
+                | (hasRoom(m) ? FLAG_ROOM : 0) | (sendName ? FLAG_SENDER_NAME : 0) | (text.isCompressed() ? FLAG_COMPRESSED : 0)
+                | (m.getRoomSequence() != 0 ? FLAG_ROOM_SEQUENCE : 0));
+            buffer.put(flags);
+            Varint.write(buffer, m.getSenderID());
+            Varint.write(buffer, m.getLogicalTimestamp());
+            Varint.write(buffer, m.getSenderSequence());
+            Varint.write(buffer, m.getGlobalSequence());
+            Varint.write(buffer, m.getOriginTimeMillis());
+            if (sendName) {
+                putVarString(buffer, m.getSender());
+                sentNames.put(m.getSenderID(), m.getSender());
+            }
+            Varint.write(buffer, text.wireLength());
+            if (text.isCompressed()) {
+                Varint.write(buffer, text.utf8Length());
+            }
+            text.putWire(buffer);
+            if (m.getCausalClock() != null) {
+                Varint.write(buffer, m.getCausalClock().length);
+                buffer.put(m.getCausalClock());
+            }
+            if (hasRoom(m)) {
+                putVarString(buffer, m.getRoom());
+            }
+            if (m.getRoomSequence() != 0) {
+                Varint.write(buffer, m.getRoomSequence());
+            }
+        }
+        finishFrame(buffer, start);
+    }
+
+    public static List<ChatMessage> readMessages(ByteBuffer payload) {
+        return readMessages(payload, new HashMap<>());
+    }
+
+    // Text is not decoded here; see MessageText. senderNames is this connection's dictionary
+    public static List<ChatMessage> readMessages(ByteBuffer payload, Map<Integer, String> senderNames) {
+        int count = (int) Varint.read(payload);
+        List<ChatMessage> messages = new ArrayList<>(Math.min(count, payload.remaining()));
+        for (int i = 0; i < count; i++) {
+            byte flags = payload.get();
+            int senderId = (int) Varint.read(payload);
+            long timestamp = Varint.read(payload);
+            long senderSequence = Varint.read(payload);
+            long globalSequence = Varint.read(payload);
+            long originTimeMillis = Varint.read(payload);
+            String sender;
+            if ((flags & FLAG_SENDER_NAME) != 0) {
+                sender = getVarString(payload);
+                senderNames.put(senderId, sender);
+            } else {
+                sender = senderNames.get(senderId);
+                if (sender == null) {
+                    throw new IllegalArgumentException("No name sent for node " + senderId + " on this connection");
+                }
+            }
+            int textLength = (int) Varint.read(payload);
+            boolean compressed = (flags & FLAG_COMPRESSED) != 0;
+            int utf8Length = compressed ? (int) Varint.read(payload) : textLength;
+            MessageText text = MessageText.read(payload, textLength, compressed, utf8Length);
+            ChatMessage message = (flags & FLAG_CLOCK_BEACON) != 0
+                ? ChatMessage.clockBeacon(sender, senderId, timestamp)
+                : new ChatMessage(text, sender, senderId, timestamp);
+            if ((flags & FLAG_CAUSAL_CLOCK) != 0) {
+                byte[] causalClock = new byte[(int) Varint.read(payload)];
+                payload.get(causalClock);
+                message.setCausalClock(causalClock);
+            }
+            if ((flags & FLAG_ROOM) != 0) {
+                message.setRoom(getVarString(payload));
+            }
+            if ((flags & FLAG_ROOM_SEQUENCE) != 0) {
+                message.setRoomSequence(Varint.read(payload));
+            }
+            message.setSenderSequence(senderSequence);
+            message.setGlobalSequence(globalSequence);
+            message.setOriginTimeMillis(originTimeMillis);
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    private static boolean hasRoom(ChatMessage message) {
+        return !ChatMessage.DEFAULT_ROOM.equals(message.getRoom());
+    }
+
+    public static int electionFrameSize() {
+        return LENGTH_FIELD + HEADER_SIZE + 1 + 4 + 8;
+    }
+
+    public static void writeElectionMessage(ByteBuffer buffer, int correlationId, ElectionMessage message) {
+        int start = buffer.position();
+        writeHeader(buffer, ELECTION_MESSAGE, correlationId);
+        buffer.put((byte) message.getType().ordinal());
+        buffer.putInt(message.getSenderId());
+        buffer.putLong(message.getEpoch());
+        finishFrame(buffer, start);
+    }
+
+    public static ElectionMessage readElectionMessage(ByteBuffer payload) {
+        ElectionMessage.Type type = ElectionMessage.Type.values()[payload.get()];
+        return new ElectionMessage(type, payload.getInt(), payload.getLong());
+    }
+
+    public static int intFrameSize() {
+        return LENGTH_FIELD + HEADER_SIZE + 4;
+    }
+
+    public static void writeIntFrame(ByteBuffer buffer, byte type, int correlationId, int value) {
+        int start = buffer.position();
+        writeHeader(buffer, type, correlationId);
+        buffer.putInt(value);
+        finishFrame(buffer, start);
+    }
+
+    public static int emptyFrameSize() {
+        return LENGTH_FIELD + HEADER_SIZE;
+    }
+
+    public static void writeEmptyFrame(ByteBuffer buffer, byte type, int correlationId) {
+        int start = buffer.position();
+        writeHeader(buffer, type, correlationId);
+        finishFrame(buffer, start);
+    }
+
+    public static int errorFrameSize(String message) {
+        return LENGTH_FIELD + HEADER_SIZE + 4 + utf8Length(message);
+    }
+
+    public static void writeErrorFrame(ByteBuffer buffer, int correlationId, String message) {
+        int start = buffer.position();
+        writeHeader(buffer, RESPONSE_ERROR, correlationId);
+        putString(buffer, message);
+        finishFrame(buffer, start);
+    }
+
+    public static int utf8Length(String s) {
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    // Writes UTF-8 directly into the buffer without an intermediate byte[]
+    public static void putUtf8(ByteBuffer buffer, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                buffer.put((byte) (0xF0 | (cp >> 18)));
+                buffer.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                buffer.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (cp & 0x3F)));
+            } else {
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    public static String getUtf8(ByteBuffer buffer, int length) {
+        if (buffer.hasArray()) {
+            String s = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+            return s;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static void putString(ByteBuffer buffer, String s) {
+        buffer.putInt(utf8Length(s));
+        putUtf8(buffer, s);
+    }
+
+    public static String getString(ByteBuffer buffer) {
+        return getUtf8(buffer, buffer.getInt());
+    }
+
+    private static int varStringSize(String s) {
+        int length = utf8Length(s);
+        return Varint.size(length) + length;
+    }
+
+    private static void putVarString(ByteBuffer buffer, String s) {
+        Varint.write(buffer, utf8Length(s));
+        putUtf8(buffer, s);
+    }
+
+    private static String getVarString(ByteBuffer buffer) {
+        return getUtf8(buffer, (int) Varint.read(buffer));
+    }
+
+    private static void writeHeader(ByteBuffer buffer, byte type, int correlationId) {
+        buffer.putInt(0); // patched by finishFrame
+        buffer.put(type);
+        buffer.putInt(correlationId);
+    }
+
+    private static void finishFrame(ByteBuffer buffer, int start) {
+        buffer.putInt(start, buffer.position() - start - LENGTH_FIELD);
+    }
+}
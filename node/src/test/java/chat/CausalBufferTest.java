@@ -0,0 +1,182 @@
+// CausalBufferTest.java - Causal delivery across late joins, gaps and their repair, restarts and dead senders
+package chat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class CausalBufferTest {
+    private static final int LIMIT = 10_000;
+
+    private final List<ChatMessage> delivered = new ArrayList<>();
+    private final CausalBuffer receiver = new CausalBuffer(9, LIMIT, delivered::add);
+    private final List<long[]> repairs = new ArrayList<>();
+
+    @Test
+    void deliversInOrderFromOneSender() {
+        List<ChatMessage> sent = send(new CausalBuffer(1, LIMIT, m -> { }), 1, 40);
+        sent.forEach(receiver::receive);
+        assertEquals(sent, delivered);
+        assertEquals(0, receiver.size());
+    }
+
+    @Test
+    void lateJoinerGetsTheMissedMessagesFromTheSender() {
+        CausalBuffer sender = new CausalBuffer(1, LIMIT, m -> { });
+        List<ChatMessage> sent = send(sender, 1, 70);
+        CausalBuffer buffer = repairingReceiver(sender);
+        // Joined after the sender's first four messages
+        sent.subList(4, sent.size()).forEach(message -> {
+            buffer.receive(message);
+            answerRepairs(buffer, sender);
+        });
+        assertEquals(texts(sent), texts(delivered));
+        assertEquals(0, buffer.getSkippedCount());
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    void lateJoinerStartsAtTheNextKeyframeWhenTheSenderCannotRepair() {
+        List<ChatMessage> sent = send(new CausalBuffer(1, LIMIT, m -> { }), 1, 70);
+        CausalBuffer buffer = repairingReceiver(null);
+        sent.subList(4, sent.size()).forEach(message -> {
+            buffer.receive(message);
+            answerRepairs(buffer, null);
+        });
+        assertEquals(sent.subList(CausalBuffer.KEYFRAME_INTERVAL, sent.size()), delivered);
+        assertEquals(CausalBuffer.KEYFRAME_INTERVAL, buffer.getSkippedCount());
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    void gapIsRepairedFromTheSender() {
+        CausalBuffer sender = new CausalBuffer(1, LIMIT, m -> { });
+        List<ChatMessage> sent = send(sender, 1, 40);
+        CausalBuffer buffer = repairingReceiver(sender);
+        sent.subList(0, 10).forEach(buffer::receive);
+        sent.subList(11, sent.size()).forEach(message -> {
+            buffer.receive(message);
+            answerRepairs(buffer, sender);
+        });
+        assertEquals(texts(sent), texts(delivered));
+        assertEquals(1, buffer.getRepairedCount());
+        assertEquals(0, buffer.getSkippedCount());
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    void keyframeRecoversFromAGapTheSenderCannotRepair() {
+        List<ChatMessage> sent = send(new CausalBuffer(1, LIMIT, m -> { }), 1, 40);
+        sent.subList(0, 10).forEach(receiver::receive);
+        sent.subList(11, sent.size()).forEach(receiver::receive);
+        List<ChatMessage> expected = new ArrayList<>(sent.subList(0, 10));
+        expected.addAll(sent.subList(CausalBuffer.KEYFRAME_INTERVAL, sent.size()));
+        assertEquals(expected, delivered);
+        assertEquals(CausalBuffer.KEYFRAME_INTERVAL - 10, receiver.getSkippedCount());
+        assertEquals(0, receiver.size());
+    }
+
+    @Test
+    void caughtUpHistoryIsNotWaitedForOrRepaired() {
+        CausalBuffer sender = new CausalBuffer(1, LIMIT, m -> { });
+        List<ChatMessage> logged = new ArrayList<>();
+        CausalBuffer owner = new CausalBuffer(2, LIMIT, logged::add);
+        List<ChatMessage> sent = send(sender, 1, 40);
+        // The owner's copies are its own: what it delivers and logs carries full vectors
+        sent.forEach(message -> owner.receive(copy(message)));
+        CausalBuffer buffer = repairingReceiver(sender);
+        // Caught up the first 30 from the owner's log, then live traffic resumes
+        logged.subList(0, 30).forEach(buffer::markDelivered);
+        sent.subList(30, sent.size()).forEach(buffer::receive);
+        assertEquals(texts(sent.subList(30, sent.size())), texts(delivered));
+        assertEquals(0, repairs.size());
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    void restartedSenderIsDeliveredAgain() {
+        List<ChatMessage> before = send(new CausalBuffer(1, ChatMessage.firstSenderSequence(1), LIMIT, m -> { }), 1, 10);
+        before.forEach(receiver::receive);
+        List<ChatMessage> after = send(new CausalBuffer(1, ChatMessage.firstSenderSequence(2), LIMIT, m -> { }), 1, 10);
+        after.forEach(receiver::receive);
+        assertEquals(20, delivered.size());
+        assertEquals(after, delivered.subList(10, 20));
+        assertEquals(0, receiver.size());
+    }
+
+    @Test
+    void messagesFromTheOldIncarnationAreDroppedAfterARestart() {
+        List<ChatMessage> before = send(new CausalBuffer(1, ChatMessage.firstSenderSequence(1), LIMIT, m -> { }), 1, 10);
+        List<ChatMessage> after = send(new CausalBuffer(1, ChatMessage.firstSenderSequence(2), LIMIT, m -> { }), 1, 3);
+        before.subList(0, 5).forEach(receiver::receive);
+        after.forEach(receiver::receive);
+        before.subList(5, 10).forEach(receiver::receive);
+        List<ChatMessage> expected = new ArrayList<>(before.subList(0, 5));
+        expected.addAll(after);
+        assertEquals(expected, delivered);
+        assertEquals(0, receiver.size());
+    }
+
+    @Test
+    void forgettingADeadSenderReleasesMessagesThatDependOnIt() {
+        CausalBuffer a = new CausalBuffer(1, LIMIT, m -> { });
+        CausalBuffer b = new CausalBuffer(2, LIMIT, m -> { });
+        List<ChatMessage> fromA = send(a, 1, 2);
+        // b saw both of a's messages before replying
+        fromA.forEach(b::receive);
+        List<ChatMessage> fromB = send(b, 2, 1);
+
+        receiver.receive(fromA.get(0));
+        receiver.receive(fromB.get(0));
+        assertEquals(List.of(fromA.get(0)), delivered);
+
+        receiver.forgetSender(1);
+        assertEquals(List.of(fromA.get(0), fromB.get(0)), delivered);
+        assertEquals(0, receiver.size());
+    }
+
+    // Repair requests are answered after receive returns, as the node does on its scheduler
+    private CausalBuffer repairingReceiver(CausalBuffer sender) {
+        return new CausalBuffer(9, 0, LIMIT, (senderId, from, to) -> repairs.add(new long[] {senderId, from, to}),
+            delivered::add);
+    }
+
+    // A null sender is unreachable
+    private void answerRepairs(CausalBuffer receiver, CausalBuffer sender) {
+        while (!repairs.isEmpty()) {
+            long[] request = repairs.remove(0);
+            if (sender == null) {
+                receiver.onRepairFailed((int) request[0]);
+            } else {
+                receiver.onRepair((int) request[0], sender.resend(request[1], request[2]));
+            }
+        }
+    }
+
+    private static ChatMessage copy(ChatMessage message) {
+        ChatMessage copy = new ChatMessage(message.getContent(), message.getSender(), message.getSenderID(),
+            message.getLogicalTimestamp());
+        copy.setCausalClock(message.getCausalClock());
+        return copy;
+    }
+
+    private static List<String> texts(List<ChatMessage> messages) {
+        List<String> texts = new ArrayList<>();
+        for (ChatMessage message : messages) {
+            texts.add(message.getContent());
+        }
+        return texts;
+    }
+
+    private static List<ChatMessage> send(CausalBuffer sender, int senderId, int count) {
+        List<ChatMessage> messages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ChatMessage message = new ChatMessage("m" + i, "node-" + senderId, senderId, i + 1);
+            sender.stampOutgoing(message);
+            messages.add(message);
+        }
+        return messages;
+    }
+}
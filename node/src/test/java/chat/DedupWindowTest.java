@@ -0,0 +1,62 @@
+// DedupWindowTest.java - Per-sender duplicate detection within a sliding window
+package chat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class DedupWindowTest {
+    private final DedupWindow window = new DedupWindow(128);
+
+    @Test
+    void secondCopyIsADuplicate() {
+        assertTrue(window.markSeen(1, 10));
+        assertFalse(window.markSeen(1, 10));
+        // Senders are tracked separately
+        assertTrue(window.markSeen(2, 10));
+        assertEquals(1, window.getDuplicates());
+    }
+
+    @Test
+    void outOfOrderArrivalsWithinTheWindowAreFirstDeliveries() {
+        assertTrue(window.markSeen(1, 100));
+        assertTrue(window.markSeen(1, 98));
+        assertTrue(window.markSeen(1, 99));
+        assertFalse(window.markSeen(1, 98));
+        assertTrue(window.markSeen(1, 101));
+    }
+
+    @Test
+    void sequencesOlderThanTheWindowCountAsSeen() {
+        assertTrue(window.markSeen(1, 200));
+        assertFalse(window.markSeen(1, 200 - 128));
+        assertTrue(window.markSeen(1, 200 - 127));
+    }
+
+    @Test
+    void slotsReusedAsTheWindowSlidesStartClear() {
+        assertTrue(window.markSeen(1, 1));
+        assertTrue(window.markSeen(1, 2));
+        // 129 and 130 map to the slots of 1 and 2
+        assertTrue(window.markSeen(1, 130));
+        assertTrue(window.markSeen(1, 129));
+    }
+
+    @Test
+    void jumpPastTheWindowStartsOverAndForgetDropsTheSender() {
+        assertTrue(window.markSeen(1, 5));
+        assertTrue(window.markSeen(1, ChatMessage.firstSenderSequence(2) + 1));
+        assertTrue(window.markSeen(1, ChatMessage.firstSenderSequence(2) + 2));
+        window.forget(1);
+        assertTrue(window.markSeen(1, 5));
+    }
+
+    @Test
+    void windowSizeMustBeWholeWords() {
+        assertThrows(IllegalArgumentException.class, () -> new DedupWindow(100));
+        assertThrows(IllegalArgumentException.class, () -> new DedupWindow(0));
+    }
+}
@@ -0,0 +1,130 @@
+// GossipDisseminationTest.java - Room-scoped fan-out and per-room anti-entropy digests
+package chat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+
+class GossipDisseminationTest {
+    private final Map<Integer, Node> nodes = new TreeMap<>();
+    private final List<Integer> sentTo = new ArrayList<>();
+    private boolean dropPushes;
+
+    @Test
+    void messagesOnlySpreadAmongTheRoomsMembers() {
+        for (int id = 1; id <= 8; id++) {
+            node(id, id <= 3 ? Set.of("a") : Set.of("b"));
+        }
+        nodes.get(1).publish("a", 1, 1);
+        for (Node node : nodes.values()) {
+            assertEquals(node.rooms.contains("a") ? 1 : 0, node.delivered.size(), "node " + node.id);
+        }
+        assertTrue(sentTo.stream().allMatch(id -> id <= 3), "sent outside the room: " + sentTo);
+        // ln(3) + 1 for the 3 members of the room; the 8 nodes of the cluster would give 4
+        assertEquals(3, nodes.get(1).gossip.fanout("a"));
+    }
+
+    @Test
+    void messagesInOtherRoomsLeaveNoGapInTheDigest() {
+        Node both = node(1, Set.of("a", "b"));
+        Node onlyA = node(2, Set.of("a"));
+        dropPushes = true;
+        both.publish("a", 1, 1);
+        both.publish("b", 2, 1);
+        both.publish("a", 3, 2);
+        assertEquals(0, onlyA.delivered.size());
+
+        onlyA.gossip.antiEntropy();
+        assertEquals(List.of(1L, 3L), senderSequences(onlyA.delivered));
+        assertEquals(Map.of(1, 2L), onlyA.gossip.digest("a"));
+        // Nothing left to repair, so the next round pulls nothing
+        assertEquals(List.of(), both.gossip.pull("a", onlyA.gossip.digest("a"), GossipDissemination.PULL_BATCH));
+    }
+
+    @Test
+    void catchUpMarksMessagesSoPullsSkipThem() {
+        Node source = node(1, Set.of("a"));
+        Node joiner = node(2, Set.of("a"));
+        dropPushes = true;
+        source.publish("a", 1, 1);
+        source.publish("a", 2, 2);
+        joiner.gossip.markDelivered(message("a", 1, 1, 1));
+        joiner.gossip.antiEntropy();
+        assertEquals(List.of(2L), senderSequences(joiner.delivered));
+    }
+
+    private Node node(int id, Set<String> rooms) {
+        Node node = new Node(id, rooms);
+        nodes.put(id, node);
+        return node;
+    }
+
+    private static List<Long> senderSequences(List<ChatMessage> messages) {
+        List<Long> sequences = new ArrayList<>();
+        for (ChatMessage message : messages) {
+            sequences.add(message.getSenderSequence());
+        }
+        return sequences;
+    }
+
+    private static ChatMessage message(String room, int senderId, long senderSequence, long roomSequence) {
+        ChatMessage message = new ChatMessage("m" + senderSequence, "node-" + senderId, senderId, senderSequence);
+        message.setRoom(room);
+        message.setSenderSequence(senderSequence);
+        message.setRoomSequence(roomSequence);
+        return message;
+    }
+
+    private class Node implements GossipDissemination.Network {
+        final int id;
+        final Set<String> rooms;
+        final List<ChatMessage> delivered = new ArrayList<>();
+        final GossipDissemination gossip;
+
+        Node(int id, Set<String> rooms) {
+            this.id = id;
+            this.rooms = rooms;
+            this.gossip = new GossipDissemination(id, 2, 1000, null, this, delivered::add);
+        }
+
+        void publish(String room, long senderSequence, long roomSequence) {
+            gossip.publish(message(room, id, senderSequence, roomSequence));
+        }
+
+        @Override
+        public Collection<String> rooms() {
+            return rooms;
+        }
+
+        @Override
+        public Collection<Integer> members(String room) {
+            List<Integer> members = new ArrayList<>();
+            for (Node node : nodes.values()) {
+                if (node.rooms.contains(room)) {
+                    members.add(node.id);
+                }
+            }
+            return members;
+        }
+
+        @Override
+        public void send(int peerId, ChatMessage message) {
+            sentTo.add(peerId);
+            if (!dropPushes) {
+                nodes.get(peerId).gossip.onPush(message);
+            }
+        }
+
+        @Override
+        public List<ChatMessage> pull(int peerId, String room, Map<Integer, Long> digest, int maxMessages) {
+            return nodes.get(peerId).gossip.pull(room, digest, maxMessages);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+// HashRingTest.java - Room ownership on the consistent-hash ring
+package chat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class HashRingTest {
+    private static final int KEYS = 10_000;
+
+    @Test
+    void emptyRingHasNoOwner() {
+        HashRing ring = new HashRing(64);
+        assertEquals(-1, ring.owner("general"));
+        assertEquals(0, ring.size());
+    }
+
+    @Test
+    void ownershipDependsOnlyOnTheMembers() {
+        HashRing one = ring(3, 1, 2);
+        HashRing other = ring(1, 2, 3);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(one.owner("room-" + i), other.owner("room-" + i));
+        }
+        assertFalse(one.add(2));
+        assertEquals(3, one.size());
+    }
+
+    @Test
+    void keysAreSpreadEvenly() {
+        Map<Integer, Integer> counts = owners(ring(1, 2, 3, 4, 5));
+        for (int count : counts.values()) {
+            // An even share is 2,000
+            assertTrue(count > 1_300 && count < 2_700, counts.toString());
+        }
+    }
+
+    @Test
+    void addingANodeOnlyMovesKeysToIt() {
+        HashRing ring = ring(1, 2, 3, 4);
+        Map<String, Integer> before = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            before.put("room-" + i, ring.owner("room-" + i));
+        }
+        ring.add(5);
+        int moved = 0;
+        for (Map.Entry<String, Integer> key : before.entrySet()) {
+            int owner = ring.owner(key.getKey());
+            if (owner != key.getValue()) {
+                assertEquals(5, owner);
+                moved++;
+            }
+        }
+        // About a fifth of the keys
+        assertTrue(moved > KEYS / 8 && moved < KEYS / 3, moved + " keys moved");
+    }
+
+    @Test
+    void removingANodeOnlyMovesItsKeys() {
+        HashRing ring = ring(1, 2, 3, 4);
+        Map<String, Integer> before = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            before.put("room-" + i, ring.owner("room-" + i));
+        }
+        assertTrue(ring.remove(3));
+        assertFalse(ring.remove(3));
+        for (Map.Entry<String, Integer> key : before.entrySet()) {
+            int owner = ring.owner(key.getKey());
+            if (key.getValue() != 3) {
+                assertEquals(key.getValue(), owner);
+            } else {
+                assertTrue(owner != 3);
+            }
+        }
+    }
+
+    private static HashRing ring(int... nodeIds) {
+        HashRing ring = new HashRing(64);
+        for (int nodeId : nodeIds) {
+            ring.add(nodeId);
+        }
+        return ring;
+    }
+
+    private static Map<Integer, Integer> owners(HashRing ring) {
+        Map<Integer, Integer> counts = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            counts.merge(ring.owner("room-" + i), 1, Integer::sum);
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,117 @@
+// HoldBackQueueTest.java - Total order with our own sends racing peer messages, and the timeout release
+package chat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class HoldBackQueueTest {
+    private final LamportClock clock = new LamportClock();
+    private final List<ChatMessage> delivered = Collections.synchronizedList(new ArrayList<>());
+    private long now;
+
+    @Test
+    void ownMessageIsDeliveredBeforeALaterPeerMessage() {
+        HoldBackQueue queue = new HoldBackQueue(1, List.of(1, 2, 3), clock, 1000, () -> now, delivered::add);
+        clock.advanceTo(4);
+        ChatMessage own = queue.addOwn(timestamp -> message(1, timestamp));
+        assertEquals(5, own.getLogicalTimestamp());
+        // Node 2 stamped its message after seeing ours go out; it arrives before anything else from node 3
+        queue.add(message(2, 6));
+        queue.advance(3, 10);
+        queue.drain();
+        assertEquals(List.of(own.getLogicalTimestamp(), 6L), timestamps());
+        assertEquals(0, queue.getDeliveredLateCount());
+    }
+
+    @Test
+    void peerMessageQueuedFirstOrdersBeforeTheNextOwnMessage() {
+        HoldBackQueue queue = new HoldBackQueue(1, List.of(1, 2), clock, 1000, () -> now, delivered::add);
+        queue.add(message(2, 6));
+        ChatMessage own = queue.addOwn(timestamp -> message(1, timestamp));
+        assertEquals(8, own.getLogicalTimestamp());
+        queue.advance(2, 8);
+        queue.drain();
+        assertEquals(List.of(6L, 8L), timestamps());
+    }
+
+    @Test
+    void concurrentSendsAndReceivesAreDeliveredInTotalOrder() throws Exception {
+        int perThread = 2000;
+        HoldBackQueue queue = new HoldBackQueue(1, List.of(1, 2), clock, 60_000, delivered::add);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        CountDownLatch start = new CountDownLatch(1);
+        executor.execute(() -> {
+            await(start);
+            for (int i = 0; i < perThread; i++) {
+                queue.addOwn(timestamp -> message(1, timestamp));
+                queue.drain();
+            }
+        });
+        executor.execute(() -> {
+            await(start);
+            // Node 2 answers each time with a timestamp past whatever it has seen from us
+            for (int i = 0; i < perThread; i++) {
+                queue.add(message(2, clock.get() + 1));
+                queue.drain();
+            }
+        });
+        start.countDown();
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+        queue.advance(2, Long.MAX_VALUE);
+        queue.drain();
+
+        assertEquals(2 * perThread, delivered.size());
+        for (int i = 1; i < delivered.size(); i++) {
+            assertEquals(-1, Integer.signum(delivered.get(i - 1).compareTo(delivered.get(i))), "delivered out of order at " + i);
+        }
+        assertEquals(0, queue.getDeliveredLateCount());
+    }
+
+    @Test
+    void silentPeerOnlyHoldsMessagesUntilTheTimeout() {
+        HoldBackQueue queue = new HoldBackQueue(1, List.of(1, 2, 3), clock, 500, () -> now, delivered::add);
+        queue.add(message(2, 3));
+        queue.drain();
+        assertEquals(0, delivered.size());
+
+        now += TimeUnit.MILLISECONDS.toNanos(500);
+        queue.drain();
+        assertEquals(List.of(3L), timestamps());
+        assertEquals(1, queue.getDeliveredByTimeoutCount());
+
+        // Node 3 was only slow: its earlier message is delivered late and counted, not silently reordered
+        queue.add(message(3, 2));
+        queue.drain();
+        assertEquals(List.of(3L, 2L), timestamps());
+        assertEquals(1, queue.getDeliveredLateCount());
+    }
+
+    private List<Long> timestamps() {
+        List<Long> timestamps = new ArrayList<>();
+        for (ChatMessage message : delivered) {
+            timestamps.add(message.getLogicalTimestamp());
+        }
+        return timestamps;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ChatMessage message(int senderId, long timestamp) {
+        return new ChatMessage("m" + timestamp, "node-" + senderId, senderId, timestamp);
+    }
+}
@@ -0,0 +1,81 @@
+// MembershipListTest.java - Merge precedence, deltas, refutation, tombstones and listener calls
+package chat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class MembershipListTest {
+    private final List<String> changes = new ArrayList<>();
+    private MembershipList list;
+
+    MembershipListTest() {
+        list = new MembershipList(1, "node-1", 100, Set.of("general"), (entry, previous) -> {
+            assertFalse(Thread.holdsLock(list), "listener called under the list lock");
+            changes.add(entry.getNodeId() + ":" + entry.getState() + "@" + entry.getIncarnation());
+        });
+    }
+
+    @Test
+    void higherIncarnationOrLaterStateWins() {
+        list.merge(List.of(alive(2, 5)));
+        list.merge(List.of(entry(2, MemberEntry.State.DEAD, 5)));
+        list.merge(List.of(entry(2, MemberEntry.State.SUSPECT, 5), alive(2, 4)));
+        assertEquals(MemberEntry.State.DEAD, list.get(2).getState());
+        list.merge(List.of(alive(2, 6)));
+        assertEquals(MemberEntry.State.ALIVE, list.get(2).getState());
+        assertEquals(List.of("2:ALIVE@5", "2:DEAD@5", "2:ALIVE@6"), changes);
+    }
+
+    @Test
+    void changedSinceOnlyReturnsNewerEntries() {
+        list.merge(List.of(alive(2, 1), alive(3, 1)));
+        long seen = list.getVersion();
+        assertEquals(3, list.changedSince(0).size());
+        assertEquals(List.of(), list.changedSince(seen));
+        list.suspect(3);
+        List<MemberEntry> delta = list.changedSince(seen);
+        assertEquals(1, delta.size());
+        assertEquals(MemberEntry.State.SUSPECT, delta.get(0).getState());
+    }
+
+    @Test
+    void rumourAboutSelfIsRefutedWithAHigherIncarnation() {
+        list.merge(List.of(entry(1, MemberEntry.State.SUSPECT, 100)));
+        assertEquals(MemberEntry.State.ALIVE, list.self().getState());
+        assertEquals(101, list.self().getIncarnation());
+        assertEquals(Set.of("general"), list.self().getRooms());
+    }
+
+    @Test
+    void staleRumourDoesNotReviveAPurgedNode() {
+        list.merge(List.of(alive(2, 5)));
+        list.suspect(2);
+        list.reap(0, 0);
+        assertEquals(MemberEntry.State.DEAD, list.get(2).getState());
+        list.reap(0, 0);
+        assertNull(list.get(2));
+
+        list.merge(List.of(alive(2, 5)));
+        list.merge(List.of(alive(2, 0)));
+        assertNull(list.get(2));
+
+        // A restart comes back with a higher incarnation
+        list.merge(List.of(alive(2, 7)));
+        assertEquals(MemberEntry.State.ALIVE, list.get(2).getState());
+        assertEquals(List.of("2:ALIVE@5", "2:SUSPECT@5", "2:DEAD@5", "2:ALIVE@7"), changes);
+    }
+
+    private static MemberEntry alive(int nodeId, long incarnation) {
+        return entry(nodeId, MemberEntry.State.ALIVE, incarnation);
+    }
+
+    private static MemberEntry entry(int nodeId, MemberEntry.State state, long incarnation) {
+        return new MemberEntry(nodeId, "node-" + nodeId, state, incarnation);
+    }
+}
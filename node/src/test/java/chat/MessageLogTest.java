@@ -0,0 +1,190 @@
+// MessageLogTest.java - Append, timestamp seek, recovery and retention of the mapped log
+package chat;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MessageLogTest {
+    private static final int SEGMENT = 8192;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void appendedRecordsReadBackInLogOrder() throws Exception {
+        try (MessageLog log = new MessageLog(directory, SEGMENT, Long.MAX_VALUE, Long.MAX_VALUE, 10)) {
+            append(log, 1, 200);
+            assertEquals(0, log.getFirstSequence());
+            assertEquals(200, log.getNextSequence());
+            assertEquals(200, log.getMaxTimestamp());
+            List<ChatMessage> read = log.read(Long.MIN_VALUE, 0, 1000);
+            assertEquals(200, read.size());
+            for (int i = 0; i < read.size(); i++) {
+                assertEquals("message " + (i + 1), read.get(i).getContent());
+                assertEquals(i + 1, read.get(i).getSenderSequence());
+            }
+            assertEquals(List.of("message 191", "message 192"), contents(log.readBefore(192, 2)));
+            assertEquals(List.of("message 200"), contents(log.tail(1)));
+        }
+    }
+
+    @Test
+    void scanSeeksByTimestampAndSequenceAcrossSegments() throws Exception {
+        try (MessageLog log = new MessageLog(directory, SEGMENT, Long.MAX_VALUE, Long.MAX_VALUE, 10)) {
+            append(log, 1, 300);
+            List<Long> timestamps = new ArrayList<>();
+            log.scan(250, 0, (sequence, timestamp, record) -> {
+                timestamps.add(timestamp);
+                return true;
+            });
+            assertEquals(51, timestamps.size());
+            assertEquals(250, timestamps.get(0));
+
+            List<Long> sequences = new ArrayList<>();
+            log.scan(100, 280, (sequence, timestamp, record) -> {
+                sequences.add(sequence);
+                return sequences.size() < 3;
+            });
+            assertEquals(List.of(280L, 281L, 282L), sequences);
+        }
+    }
+
+    @Test
+    void reopenedLogRecoversItsPositionAndRecords() throws Exception {
+        try (MessageLog log = new MessageLog(directory, SEGMENT, Long.MAX_VALUE, Long.MAX_VALUE, 10)) {
+            append(log, 1, 250);
+            log.flush();
+        }
+        try (MessageLog log = new MessageLog(directory, SEGMENT, Long.MAX_VALUE, Long.MAX_VALUE, 10)) {
+            assertEquals(250, log.getNextSequence());
+            assertEquals(250, log.getMaxTimestamp());
+            assertEquals(250, log.append(message(251)));
+            assertEquals(List.of("message 250", "message 251"), contents(log.tail(2)));
+            assertEquals(List.of(170L), timestamps(log.read(170, 0, 1)));
+        }
+    }
+
+    @Test
+    void roomChunksOnlyCarryThatRoom() throws Exception {
+        try (MessageLog log = new MessageLog(directory, SEGMENT, Long.MAX_VALUE, Long.MAX_VALUE, 10)) {
+            for (long timestamp = 1; timestamp <= 30; timestamp++) {
+                ChatMessage message = message(timestamp);
+                if (timestamp % 3 == 0) {
+                    message.setRoom("dev");
+                }
+                log.append(message);
+            }
+            HistoryChunk chunk = log.readChunk("dev", Long.MIN_VALUE, 0, 1 << 20, 0);
+            assertTrue(chunk.isComplete());
+            assertEquals(10, chunk.getCount());
+            assertEquals(30, chunk.getNextCursor());
+            ByteBuffer records = ByteBuffer.wrap(chunk.getRecords());
+            while (records.hasRemaining()) {
+                assertEquals("dev", MessageLog.roomOf(records));
+                assertEquals("dev", MessageLog.decode(records).getRoom());
+                records.position(records.position() + 4 + records.getInt(records.position()));
+            }
+        }
+    }
+
+    @Test
+    void recordsWrittenBeforeRoomsStillDecode() {
+        byte[] sender = "node-1".getBytes(StandardCharsets.UTF_8);
+        byte[] content = "old".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(MessageLog.RECORD_HEADER + sender.length + content.length);
+        record.putInt(record.capacity() - 4).putLong(5).putLong(77).putInt(1).putLong(9).putLong(1234);
+        record.putInt(sender.length).put(sender).putInt(content.length).put(content);
+        record.flip();
+
+        assertEquals(ChatMessage.DEFAULT_ROOM, MessageLog.roomOf(record));
+        ChatMessage message = MessageLog.decode(record);
+        assertEquals("old", message.getContent());
+        assertEquals(77, message.getLogicalTimestamp());
+        assertEquals(9, message.getSenderSequence());
+        assertEquals(ChatMessage.DEFAULT_ROOM, message.getRoom());
+        assertEquals(0, message.getRoomSequence());
+        assertEquals(0, message.getGlobalSequence());
+        assertNull(message.getCausalClock());
+        assertEquals(0, record.position());
+    }
+
+    @Test
+    void retentionGoesByTheLastAppendNotTheFileTime() throws Exception {
+        try (MessageLog log = new MessageLog(directory, SEGMENT, Long.MAX_VALUE, 200, 10)) {
+            // About 95 bytes a record: most of two segments
+            append(log, 1, 150);
+            Thread.sleep(300);
+            // Something touched the segment files; their records are still old
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+                }
+            }
+            append(log, 151, 150);
+            assertTrue(log.getFirstSequence() > 0, "first segment was not deleted");
+            assertEquals(300, log.getNextSequence());
+        }
+    }
+
+    @Test
+    void recordsKeepTheOrderingPositionsACatchUpSeedsFrom() throws Exception {
+        VectorClock vector = new VectorClock();
+        vector.set(1, 7);
+        vector.set(3, 2);
+        try (MessageLog log = new MessageLog(directory, SEGMENT, Long.MAX_VALUE, Long.MAX_VALUE, 10)) {
+            ChatMessage causal = message(1);
+            causal.setCausalClock(vector.encode(1, null));
+            log.append(causal);
+            ChatMessage sequenced = message(2);
+            sequenced.setGlobalSequence(42);
+            log.append(sequenced);
+
+            List<ChatMessage> read = log.tail(2);
+            assertArrayEquals(causal.getCausalClock(), read.get(0).getCausalClock());
+            assertEquals(vector.asMap(), VectorClock.decode(read.get(0).getCausalClock(), null).asMap());
+            assertEquals(42, read.get(1).getGlobalSequence());
+            assertNull(read.get(1).getCausalClock());
+        }
+    }
+
+    private static void append(MessageLog log, long firstTimestamp, int count) {
+        for (long timestamp = firstTimestamp; timestamp < firstTimestamp + count; timestamp++) {
+            log.append(message(timestamp));
+        }
+    }
+
+    private static List<String> contents(List<ChatMessage> messages) {
+        List<String> contents = new ArrayList<>();
+        for (ChatMessage message : messages) {
+            contents.add(message.getContent());
+        }
+        return contents;
+    }
+
+    private static List<Long> timestamps(List<ChatMessage> messages) {
+        List<Long> timestamps = new ArrayList<>();
+        for (ChatMessage message : messages) {
+            timestamps.add(message.getLogicalTimestamp());
+        }
+        return timestamps;
+    }
+
+    private static ChatMessage message(long timestamp) {
+        ChatMessage message = new ChatMessage("message " + timestamp, "node-1", 1, timestamp);
+        message.setSenderSequence(timestamp);
+        return message;
+    }
+}
@@ -0,0 +1,89 @@
+// MessageTextTest.java - Text encoding, compression threshold and serialized form
+package chat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+class MessageTextTest {
+    private static final String REPETITIVE = "all work and no play ".repeat(50);
+
+    @Test
+    void shortTextIsSentAsPlainUtf8() {
+        MessageText text = MessageText.of("grüße");
+        assertFalse(text.isCompressed());
+        assertEquals("grüße".getBytes(StandardCharsets.UTF_8).length, text.wireLength());
+        assertEquals(text.wireLength(), text.utf8Length());
+    }
+
+    @Test
+    void textFromTheThresholdOnIsDeflated() {
+        assertFalse(MessageText.of("a".repeat(MessageText.COMPRESS_THRESHOLD - 1)).isCompressed());
+        MessageText text = MessageText.of("a".repeat(MessageText.COMPRESS_THRESHOLD));
+        assertTrue(text.isCompressed());
+        assertTrue(text.wireLength() < text.utf8Length());
+        assertEquals(MessageText.COMPRESS_THRESHOLD, text.utf8Length());
+    }
+
+    @Test
+    void receivedTextIsOnlyDecodedWhenRead() {
+        MessageText received = wireCopy(MessageText.of(REPETITIVE));
+        assertFalse(received.isMaterialized());
+        assertEquals(REPETITIVE.length(), received.utf8Length());
+        assertEquals(REPETITIVE, received.get());
+        assertTrue(received.isMaterialized());
+    }
+
+    @Test
+    void putUtf8InflatesStraightIntoTheBuffer() {
+        MessageText received = wireCopy(MessageText.of(REPETITIVE));
+        ByteBuffer out = ByteBuffer.allocate(received.utf8Length() + 2);
+        out.put((byte) 1);
+        received.putUtf8(out);
+        out.put((byte) 2);
+        assertEquals(REPETITIVE, new String(out.array(), 1, received.utf8Length(), StandardCharsets.UTF_8));
+        assertEquals(2, out.get(out.position() - 1));
+        assertFalse(received.isMaterialized());
+    }
+
+    @Test
+    void corruptCompressedTextIsRejected() {
+        byte[] garbage = {1, 2, 3, 4, 5, 6, 7, 8};
+        MessageText text = MessageText.read(ByteBuffer.wrap(garbage), garbage.length, true, 100);
+        assertThrows(IllegalArgumentException.class, text::get);
+        assertThrows(IllegalArgumentException.class,
+            () -> MessageText.read(ByteBuffer.wrap(garbage), garbage.length, false, 100));
+    }
+
+    @Test
+    void serializedFormIsTheWireForm() throws Exception {
+        MessageText text = MessageText.of(REPETITIVE);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(text);
+        }
+        assertTrue(bytes.size() < REPETITIVE.length() / 2, bytes.size() + " bytes");
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            MessageText copy = (MessageText) in.readObject();
+            assertTrue(copy.isCompressed());
+            assertEquals(REPETITIVE, copy.get());
+        }
+    }
+
+    // As a peer receives it: the encoded bytes, not the String
+    private static MessageText wireCopy(MessageText text) {
+        ByteBuffer wire = ByteBuffer.allocate(text.wireLength());
+        text.putWire(wire);
+        wire.flip();
+        return MessageText.read(wire, wire.remaining(), text.isCompressed(), text.utf8Length());
+    }
+}
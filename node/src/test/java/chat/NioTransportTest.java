@@ -0,0 +1,24 @@
+// NioTransportTest.java - Listening ports for any node ID
+package chat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+class NioTransportTest {
+    @Test
+    void defaultPortStaysInRange() {
+        assertEquals(NioTransport.BASE_PORT + 7, NioTransport.portFor(7));
+        assertEquals(NioTransport.MAX_PORT, NioTransport.portFor(NioTransport.MAX_PORT - NioTransport.BASE_PORT));
+        assertEquals(NioTransport.ANY_PORT, NioTransport.portFor(NioTransport.MAX_PORT - NioTransport.BASE_PORT + 1));
+        assertEquals(NioTransport.ANY_PORT, NioTransport.portFor(Integer.MAX_VALUE));
+        assertEquals(NioTransport.ANY_PORT, NioTransport.portFor(-1));
+    }
+
+    @Test
+    void explicitPortMustBeValid() {
+        assertThrows(IllegalArgumentException.class, () -> new NioTransport("localhost", 65536));
+        assertThrows(IllegalArgumentException.class, () -> new NioTransport("localhost", -2));
+    }
+}
@@ -0,0 +1,134 @@
+// PeerSenderTest.java - Send window policies and control messages outside the window
+package chat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class PeerSenderTest {
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final List<ChatMessage> received = new ArrayList<>();
+    private final CountDownLatch released = new CountDownLatch(1);
+    private volatile boolean stalled;
+
+    @AfterEach
+    void shutdown() {
+        released.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void relayFailsFastWhenABlockingWindowIsFull() {
+        PeerSender sender = stalledSender(OverflowPolicy.BLOCK, 2);
+        sender.enqueue(message(1), false);
+        sender.enqueue(message(2), false);
+        long start = System.nanoTime();
+        CompletableFuture<Void> relay = sender.enqueue(message(3), false);
+        assertTrue(relay.isCompletedExceptionally());
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(PeerSender.BLOCK_TIMEOUT_MS / 2));
+        sender.stop();
+    }
+
+    @Test
+    void controlMessagesDoNotEvictQueuedMessages() throws Exception {
+        PeerSender sender = stalledSender(OverflowPolicy.DROP_OLDEST, 2);
+        CompletableFuture<Void> first = sender.enqueue(message(1));
+        CompletableFuture<Void> second = sender.enqueue(message(2));
+        for (int i = 0; i < 100; i++) {
+            sender.sendControl(ChatMessage.clockBeacon("peer", 1, 100 + i));
+        }
+        assertEquals(0, sender.getDropped());
+        release();
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        awaitReceived(3);
+        synchronized (received) {
+            // Only the latest beacon is sent, and only behind the messages queued before it
+            assertEquals(List.of(1L, 2L, 199L), timestamps());
+        }
+        sender.stop();
+    }
+
+    @Test
+    void controlMessageWakesAnIdleSender() throws Exception {
+        PeerSender sender = new PeerSender(2, recordingStub(), 4, OverflowPolicy.BLOCK, null);
+        sender.start(executor);
+        sender.sendControl(ChatMessage.clockBeacon("peer", 1, 42));
+        awaitReceived(1);
+        synchronized (received) {
+            assertEquals(List.of(42L), timestamps());
+        }
+        sender.stop();
+    }
+
+    // The first batch blocks in the stub until release(), so later messages stay queued
+    private PeerSender stalledSender(OverflowPolicy policy, int window) {
+        stalled = true;
+        PeerSender sender = new PeerSender(2, recordingStub(), window, policy, null);
+        sender.enqueue(message(0));
+        sender.start(executor);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (sender.getQueueDepth() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.onSpinWait();
+        }
+        return sender;
+    }
+
+    private void release() {
+        stalled = false;
+        released.countDown();
+    }
+
+    private ChatNode recordingStub() {
+        return (ChatNode) Proxy.newProxyInstance(ChatNode.class.getClassLoader(), new Class<?>[] {ChatNode.class},
+            (proxy, method, args) -> {
+                if (method.getName().equals("receiveMessages")) {
+                    if (stalled) {
+                        released.await();
+                    }
+                    @SuppressWarnings("unchecked")
+                    List<ChatMessage> batch = (List<ChatMessage>) args[0];
+                    synchronized (received) {
+                        for (ChatMessage message : batch) {
+                            if (message.getLogicalTimestamp() != 0) {
+                                received.add(message);
+                            }
+                        }
+                        received.notifyAll();
+                    }
+                }
+                return null;
+            });
+    }
+
+    private void awaitReceived(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        synchronized (received) {
+            while (received.size() < count && System.currentTimeMillis() < deadline) {
+                received.wait(50);
+            }
+        }
+    }
+
+    private List<Long> timestamps() {
+        List<Long> timestamps = new ArrayList<>();
+        for (ChatMessage message : received) {
+            timestamps.add(message.getLogicalTimestamp());
+        }
+        return timestamps;
+    }
+
+    private static ChatMessage message(long timestamp) {
+        return new ChatMessage("m" + timestamp, "peer", 1, timestamp);
+    }
+}
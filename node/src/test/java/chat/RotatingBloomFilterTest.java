@@ -0,0 +1,75 @@
+// RotatingBloomFilterTest.java - No false negatives, bounded false positives, two-generation rotation
+package chat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class RotatingBloomFilterTest {
+    private static final int CAPACITY = 10_000;
+
+    @Test
+    void addedKeysAreAlwaysFound() {
+        RotatingBloomFilter filter = new RotatingBloomFilter(CAPACITY, 0.01, 60_000);
+        for (int i = 0; i < CAPACITY - 1; i++) {
+            filter.add(i % 7, i);
+        }
+        for (int i = 0; i < CAPACITY - 1; i++) {
+            assertTrue(filter.mightContain(i % 7, i));
+        }
+        assertEquals(0, filter.getRotations());
+    }
+
+    @Test
+    void falsePositivesStayNearTheConfiguredRate() {
+        RotatingBloomFilter filter = new RotatingBloomFilter(CAPACITY, 0.01, 60_000);
+        for (int i = 0; i < CAPACITY - 1; i++) {
+            filter.add(1, i);
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain(2, i)) {
+                falsePositives++;
+            }
+        }
+        // Expected about 1,000 for a full generation; allow for the hash not being ideal
+        assertTrue(falsePositives < 2_000, falsePositives + " false positives");
+    }
+
+    @Test
+    void keysSurviveOneRotationAndAreForgottenAfterTwo() {
+        RotatingBloomFilter filter = new RotatingBloomFilter(100, 0.001, 60_000);
+        filter.add(1, 1);
+        // Filling the current generation retires it on the next add
+        for (int i = 0; i < 100; i++) {
+            filter.add(2, i);
+        }
+        filter.add(3, 0);
+        assertEquals(1, filter.getRotations());
+        assertTrue(filter.mightContain(1, 1));
+        for (int i = 0; i < 100; i++) {
+            filter.add(4, i);
+        }
+        assertEquals(2, filter.getRotations());
+        assertFalse(filter.mightContain(1, 1));
+    }
+
+    @Test
+    void generationsRotateByAge() throws Exception {
+        RotatingBloomFilter filter = new RotatingBloomFilter(CAPACITY, 0.01, 10);
+        filter.add(1, 1);
+        Thread.sleep(20);
+        filter.add(1, 2);
+        assertEquals(1, filter.getRotations());
+        assertTrue(filter.mightContain(1, 1));
+    }
+
+    @Test
+    void sizeFollowsCapacityAndRate() {
+        // m = -n ln p / (ln 2)^2: about 9.6 bits per key at 1%, for each of two generations
+        int bytes = new RotatingBloomFilter(CAPACITY, 0.01, 60_000).getSizeBytes();
+        assertTrue(bytes >= 2 * CAPACITY * 9.5 / 8 && bytes <= 2 * CAPACITY * 9.7 / 8 + 16, bytes + " bytes");
+    }
+}
@@ -0,0 +1,95 @@
+// SequenceBufferTest.java - Global-sequence delivery, gaps, retransmission and catch-up positions
+package chat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class SequenceBufferTest {
+    private final List<Long> delivered = new ArrayList<>();
+    private final SequenceBuffer buffer = new SequenceBuffer(4, m -> delivered.add(m.getGlobalSequence()));
+
+    @Test
+    void holdsMessagesBehindAGap() {
+        buffer.start(1);
+        buffer.receive(sequenced(1));
+        buffer.receive(sequenced(3));
+        buffer.receive(sequenced(5));
+        assertEquals(List.of(1L), delivered);
+        assertEquals(List.of(2L, 4L), buffer.missing());
+        assertTrue(buffer.gapAgeMillis() >= 0);
+
+        buffer.receive(sequenced(2));
+        buffer.receive(sequenced(4));
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), delivered);
+        assertEquals(-1, buffer.gapAgeMillis());
+        assertEquals(6, buffer.getNextExpected());
+    }
+
+    @Test
+    void startsAtTheFirstMessageWhenNotStarted() {
+        assertFalse(buffer.isStarted());
+        assertTrue(buffer.receive(sequenced(17)));
+        assertEquals(List.of(17L), delivered);
+        // Later start positions are ignored once started
+        buffer.start(1);
+        assertEquals(18, buffer.getNextExpected());
+    }
+
+    @Test
+    void duplicatesAreNotDeliveredAgain() {
+        buffer.start(1);
+        assertTrue(buffer.receive(sequenced(2)));
+        assertFalse(buffer.receive(sequenced(2)));
+        assertTrue(buffer.receive(sequenced(1)));
+        assertFalse(buffer.receive(sequenced(1)));
+        assertEquals(List.of(1L, 2L), delivered);
+    }
+
+    @Test
+    void retainsTheMostRecentMessagesForRetransmission() {
+        buffer.start(1);
+        for (long sequence = 1; sequence <= 6; sequence++) {
+            buffer.receive(sequenced(sequence));
+        }
+        buffer.receive(sequenced(8));
+        assertEquals(List.of(3L, 4L, 5L, 6L, 8L), sequences(buffer.fetch(1, 10)));
+        assertEquals(List.of(5L, 6L), sequences(buffer.fetch(5, 2)));
+        // 0 asks for the newest delivered ones
+        assertEquals(List.of(5L, 6L), sequences(buffer.fetch(0, 2)));
+    }
+
+    @Test
+    void caughtUpHistoryMovesThePositionPastHeldMessages() {
+        buffer.start(1);
+        buffer.receive(sequenced(1));
+        buffer.receive(sequenced(3));
+        buffer.receive(sequenced(6));
+        buffer.markDelivered(4);
+        assertEquals(List.of(1L), delivered);
+        assertEquals(5, buffer.getNextExpected());
+        buffer.receive(sequenced(5));
+        assertEquals(List.of(1L, 5L, 6L), delivered);
+        // Positions already behind are left alone
+        buffer.markDelivered(2);
+        assertEquals(7, buffer.getNextExpected());
+    }
+
+    private static ChatMessage sequenced(long globalSequence) {
+        ChatMessage message = new ChatMessage("m" + globalSequence, "node-1", 1, globalSequence);
+        message.setGlobalSequence(globalSequence);
+        return message;
+    }
+
+    private static List<Long> sequences(List<ChatMessage> messages) {
+        List<Long> sequences = new ArrayList<>();
+        for (ChatMessage message : messages) {
+            sequences.add(message.getGlobalSequence());
+        }
+        return sequences;
+    }
+}
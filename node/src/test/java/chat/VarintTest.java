@@ -0,0 +1,56 @@
+// VarintTest.java - LEB128 round trips, sizes and malformed input
+package chat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+class VarintTest {
+    private static final long[] VALUES = {0, 1, 127, 128, 16_383, 16_384, Integer.MAX_VALUE, 1L << 20, Long.MAX_VALUE, -1};
+
+    @Test
+    void valuesRoundTripInTheSizeTheyAreCountedAt() {
+        ByteBuffer buffer = ByteBuffer.allocate(VALUES.length * 10);
+        for (long value : VALUES) {
+            int before = buffer.position();
+            Varint.write(buffer, value);
+            assertEquals(Varint.size(value), buffer.position() - before, "size of " + value);
+        }
+        buffer.flip();
+        for (long value : VALUES) {
+            assertEquals(value, Varint.read(buffer));
+        }
+        assertEquals(0, buffer.remaining());
+    }
+
+    @Test
+    void streamAndBufferWritersAgree() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteBuffer buffer = ByteBuffer.allocate(VALUES.length * 10);
+        for (long value : VALUES) {
+            Varint.write(out, value);
+            Varint.write(buffer, value);
+        }
+        assertEquals(ByteBuffer.wrap(out.toByteArray()), buffer.flip());
+    }
+
+    @Test
+    void sizeGrowsEverySevenBits() {
+        assertEquals(1, Varint.size(127));
+        assertEquals(2, Varint.size(128));
+        assertEquals(3, Varint.size(1L << 14));
+        // Negative values use all 64 bits
+        assertEquals(10, Varint.size(-1));
+    }
+
+    @Test
+    void overlongEncodingIsRejected() {
+        byte[] bytes = new byte[11];
+        Arrays.fill(bytes, (byte) 0x80);
+        assertThrows(IllegalArgumentException.class, () -> Varint.read(ByteBuffer.wrap(bytes)));
+    }
+}
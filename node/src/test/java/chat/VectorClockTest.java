@@ -0,0 +1,59 @@
+// VectorClockTest.java - Full and delta encodings of vector clocks
+package chat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class VectorClockTest {
+    @Test
+    void fullEncodingDecodesWithoutABase() {
+        VectorClock clock = clock(Map.of(1, 5L, 2, 3L, 40, 1L << 21));
+        byte[] encoded = clock.encode(1, null);
+        assertTrue(VectorClock.isFull(encoded));
+        assertEquals(5, VectorClock.sequenceOf(encoded));
+        assertEquals(clock.asMap(), VectorClock.decode(encoded, null).asMap());
+        // A base passed for a full encoding is ignored
+        assertEquals(clock.asMap(), VectorClock.decode(encoded, clock(Map.of(7, 9L))).asMap());
+    }
+
+    @Test
+    void deltaCarriesOnlyWhatChanged() {
+        VectorClock previous = clock(Map.of(1, 5L, 2, 3L, 3, 8L, 4, 2L));
+        VectorClock next = new VectorClock(previous);
+        next.increment(1);
+        next.set(3, 10);
+        byte[] delta = next.encode(1, previous);
+        assertFalse(VectorClock.isFull(delta));
+        assertEquals(6, VectorClock.sequenceOf(delta));
+        assertTrue(delta.length < next.encode(1, null).length);
+        assertEquals(next.asMap(), VectorClock.decode(delta, previous).asMap());
+    }
+
+    @Test
+    void deltaWithoutChangesOnlyCarriesTheSequence() {
+        VectorClock previous = clock(Map.of(1, 5L, 2, 3L));
+        VectorClock next = new VectorClock(previous);
+        next.increment(1);
+        assertEquals(next.asMap(), VectorClock.decode(next.encode(1, previous), previous).asMap());
+    }
+
+    @Test
+    void copiesAreIndependent() {
+        VectorClock clock = clock(Map.of(1, 1L));
+        VectorClock copy = new VectorClock(clock);
+        copy.increment(1);
+        assertEquals(1, clock.get(1));
+        assertEquals(2, copy.get(1));
+        assertEquals(0, copy.get(99));
+    }
+
+    private static VectorClock clock(Map<Integer, Long> entries) {
+        VectorClock clock = new VectorClock();
+        entries.forEach(clock::set);
+        return clock;
+    }
+}
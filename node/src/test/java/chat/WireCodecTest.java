@@ -0,0 +1,118 @@
+// WireCodecTest.java - MESSAGES frame round trips, the sender-name dictionary and size accounting
+package chat;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class WireCodecTest {
+    @Test
+    void everyFieldRoundTrips() {
+        ChatMessage message = new ChatMessage("héllo, wörld ✓", "node-1", 1, 42);
+        message.setSenderSequence(ChatMessage.firstSenderSequence(3) + 7);
+        message.setGlobalSequence(99);
+        message.setRoomSequence(12);
+        message.setOriginTimeMillis(1_700_000_000_000L);
+        message.setRoom("dev");
+        message.setCausalClock(new byte[] {7, 0, 1, 1, 7});
+        ChatMessage plain = new ChatMessage("", "node-2", 2, 43);
+
+        List<ChatMessage> read = roundTrip(List.of(message, plain), new HashMap<>(), new HashMap<>());
+        ChatMessage copy = read.get(0);
+        assertEquals(message.getContent(), copy.getContent());
+        assertEquals("node-1", copy.getSender());
+        assertEquals(1, copy.getSenderID());
+        assertEquals(42, copy.getLogicalTimestamp());
+        assertEquals(message.getSenderSequence(), copy.getSenderSequence());
+        assertEquals(99, copy.getGlobalSequence());
+        assertEquals(12, copy.getRoomSequence());
+        assertEquals(message.getOriginTimeMillis(), copy.getOriginTimeMillis());
+        assertEquals("dev", copy.getRoom());
+        assertArrayEquals(message.getCausalClock(), copy.getCausalClock());
+
+        ChatMessage second = read.get(1);
+        assertEquals("", second.getContent());
+        assertEquals(ChatMessage.DEFAULT_ROOM, second.getRoom());
+        assertEquals(null, second.getCausalClock());
+        assertEquals(0, second.getRoomSequence());
+    }
+
+    @Test
+    void clockBeaconsStayBeacons() {
+        ChatMessage beacon = roundTrip(List.of(ChatMessage.clockBeacon("node-1", 1, 500)), new HashMap<>(),
+            new HashMap<>()).get(0);
+        assertTrue(beacon.isClockBeacon());
+        assertEquals(500, beacon.getLogicalTimestamp());
+    }
+
+    @Test
+    void senderNamesAreSentOncePerConnection() {
+        Map<Integer, String> sent = new HashMap<>();
+        Map<Integer, String> received = new HashMap<>();
+        List<ChatMessage> batch = List.of(new ChatMessage("a", "a-rather-long-node-name", 1, 1));
+        int first = WireCodec.messagesFrameSize(batch, sent);
+        assertEquals("a-rather-long-node-name", roundTrip(batch, sent, received).get(0).getSender());
+        int second = WireCodec.messagesFrameSize(batch, sent);
+        assertTrue(second < first);
+        assertEquals("a-rather-long-node-name", roundTrip(batch, sent, received).get(0).getSender());
+
+        // A reader that missed the first frame cannot name the sender
+        assertThrows(IllegalArgumentException.class, () -> roundTrip(batch, sent, new HashMap<>()));
+    }
+
+    @Test
+    void renamedSenderIsSentAgain() {
+        Map<Integer, String> sent = new HashMap<>();
+        Map<Integer, String> received = new HashMap<>();
+        roundTrip(List.of(new ChatMessage("a", "old", 1, 1)), sent, received);
+        assertEquals("new", roundTrip(List.of(new ChatMessage("b", "new", 1, 2)), sent, received).get(0).getSender());
+    }
+
+    @Test
+    void longTextIsCompressedAndStaysEncodedUntilRead() {
+        String text = "the quick brown fox jumps over the lazy dog ".repeat(40);
+        ChatMessage message = new ChatMessage(text, "node-1", 1, 1);
+        int size = WireCodec.messagesFrameSize(List.of(message));
+        assertTrue(size < text.length() / 2, size + " bytes");
+
+        ChatMessage copy = roundTrip(List.of(message), new HashMap<>(), new HashMap<>()).get(0);
+        assertTrue(copy.getText().isCompressed());
+        assertFalse(copy.getText().isMaterialized());
+        assertEquals(text.length(), copy.getText().utf8Length());
+        assertEquals(text, copy.getContent());
+    }
+
+    @Test
+    void frameSizeIsExactForDistinctSenders() {
+        ChatMessage one = new ChatMessage("x".repeat(600), "node-1", 1, 1);
+        one.setRoom("ops");
+        one.setCausalClock(new byte[] {1, 0, 0});
+        List<ChatMessage> batch = List.of(one, new ChatMessage("y", "node-2", 2, 1L << 40));
+        ByteBuffer buffer = ByteBuffer.allocate(WireCodec.messagesFrameSize(batch));
+        WireCodec.writeMessages(buffer, 5, batch);
+        assertEquals(buffer.capacity(), buffer.position());
+        assertEquals(buffer.capacity() - WireCodec.LENGTH_FIELD, buffer.getInt(0));
+    }
+
+    // Writes one MESSAGES frame and reads it back past the length field and header
+    private static List<ChatMessage> roundTrip(List<ChatMessage> messages, Map<Integer, String> sentNames,
+                                               Map<Integer, String> senderNames) {
+        ByteBuffer buffer = ByteBuffer.allocate(WireCodec.messagesFrameSize(messages, sentNames));
+        WireCodec.writeMessages(buffer, 7, messages, sentNames);
+        buffer.flip();
+        assertEquals(buffer.remaining() - WireCodec.LENGTH_FIELD, buffer.getInt());
+        assertEquals(WireCodec.MESSAGES, buffer.get());
+        assertEquals(7, buffer.getInt());
+        List<ChatMessage> read = WireCodec.readMessages(buffer, senderNames);
+        assertEquals(0, buffer.remaining());
+        return read;
+    }
+}
@@ -0,0 +1,400 @@
+// ClusterSimulator.java - Deterministic discrete-event simulation of a chat cluster
+package chat.sim;
+
+import chat.ChatMessage;
+import chat.DeliveryMode;
+import chat.LatencyHistogram;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Runs hundreds of nodes in one thread on virtual time. Every source of
+ * nondeterminism - network latency, loss, heartbeat jitter, which node sends
+ * next - is drawn from Randoms seeded from the run's seed, and events that
+ * fall on the same instant run in the order they were scheduled, so the same
+ * configuration always produces the same report.
+ */
+public class ClusterSimulator {
+    private final SimConfig config;
+    private final SimScheduler scheduler = new SimScheduler();
+    private final SimNetwork network;
+    private final Random workloadRandom;
+    private final List<SimNode> nodes = new ArrayList<>();
+
+    private final Map<ChatMessage, PendingMessage> inFlight = new IdentityHashMap<>();
+    private final LatencyHistogram deliveryLatency = new LatencyHistogram();
+    private final LatencyHistogram completionLatency = new LatencyHistogram();
+    private final LatencyHistogram failoverLatency = new LatencyHistogram();
+    private final LatencyHistogram detectionLatency = new LatencyHistogram();
+    private final List<Failover> failovers = new ArrayList<>();
+    private long messagesSent;
+    private long deliveries;
+    private long wallNanos;
+    private long bootAgreementNanos = -1;
+    private long lastElectionMessageNanos = -1;
+
+    public ClusterSimulator(SimConfig config) {
+        this.config = config;
+        Random seeds = new Random(config.getSeed());
+        this.network = new SimNetwork(scheduler, new Random(seeds.nextLong()), config.getLatencyMicros(),
+            config.getJitterMicros(), config.getLossRate());
+        this.workloadRandom = new Random(seeds.nextLong());
+        List<Integer> roster = new ArrayList<>();
+        for (int id = 1; id <= config.getNodes(); id++) {
+            roster.add(id);
+        }
+        for (int id : roster) {
+            nodes.add(new SimNode(id, roster, this, new Random(seeds.nextLong())));
+        }
+    }
+
+    public SimConfig getConfig() {
+        return config;
+    }
+
+    public SimScheduler getScheduler() {
+        return scheduler;
+    }
+
+    public SimNetwork getNetwork() {
+        return network;
+    }
+
+    public List<SimNode> getNodes() {
+        return nodes;
+    }
+
+    public SimNode getNode(int nodeId) {
+        return nodes.get(nodeId - 1);
+    }
+
+    public SimReport run() {
+        for (SimNode node : nodes) {
+            node.start();
+        }
+        scheduleNextMessage();
+        for (long[] crash : config.getCrashes()) {
+            SimNode node = getNode((int) crash[0]);
+            scheduler.schedule(() -> crash(node), crash[1], TimeUnit.MILLISECONDS);
+        }
+        for (long atMillis : config.getCoordinatorCrashes()) {
+            scheduler.schedule(() -> {
+                SimNode coordinator = currentCoordinator();
+                if (coordinator != null) {
+                    crash(coordinator);
+                }
+            }, atMillis, TimeUnit.MILLISECONDS);
+        }
+        for (double[] partition : config.getPartitions()) {
+            Set<Integer> side = new HashSet<>();
+            long count = Math.round(config.getNodes() * partition[2]);
+            for (int id = 1; id <= count; id++) {
+                side.add(id);
+            }
+            scheduler.schedule(() -> network.partition(side), (long) partition[0], TimeUnit.MILLISECONDS);
+            scheduler.schedule(network::heal, (long) partition[1], TimeUnit.MILLISECONDS);
+        }
+        long started = System.nanoTime();
+        scheduler.runUntil(TimeUnit.MILLISECONDS.toNanos(config.getDurationMillis()));
+        wallNanos = System.nanoTime() - started;
+        scheduler.shutdownNow();
+        return new SimReport(this);
+    }
+
+    private void scheduleNextMessage() {
+        double rate = config.getMessagesPerSecond();
+        if (rate <= 0) {
+            return;
+        }
+        // Poisson arrivals across the whole cluster
+        long delayNanos = (long) (-Math.log(1 - workloadRandom.nextDouble()) / rate * 1e9);
+        scheduler.schedule(() -> {
+            SimNode sender = randomLiveNode();
+            if (sender != null) {
+                sender.send("msg-" + (messagesSent + 1));
+                scheduleNextMessage();
+            }
+        }, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private SimNode randomLiveNode() {
+        List<SimNode> live = liveNodes();
+        return live.isEmpty() ? null : live.get(workloadRandom.nextInt(live.size()));
+    }
+
+    private List<SimNode> liveNodes() {
+        List<SimNode> live = new ArrayList<>();
+        for (SimNode node : nodes) {
+            if (!node.isCrashed()) {
+                live.add(node);
+            }
+        }
+        return live;
+    }
+
+    // The coordinator most live nodes currently follow
+    private SimNode currentCoordinator() {
+        Map<Integer, Integer> votes = new TreeMap<>();
+        for (SimNode node : liveNodes()) {
+            votes.merge(node.getCoordinatorId(), 1, Integer::sum);
+        }
+        int best = -1;
+        int bestVotes = 0;
+        for (Map.Entry<Integer, Integer> entry : votes.entrySet()) {
+            if (entry.getValue() > bestVotes && !getNode(entry.getKey()).isCrashed()) {
+                best = entry.getKey();
+                bestVotes = entry.getValue();
+            }
+        }
+        return best < 0 ? null : getNode(best);
+    }
+
+    private void crash(SimNode node) {
+        if (node.isCrashed()) {
+            return;
+        }
+        boolean wasCoordinator = node == currentCoordinator();
+        node.crash();
+        // Messages still on their way to the crashed node are done once every live recipient has them
+        Iterator<PendingMessage> pending = inFlight.values().iterator();
+        while (pending.hasNext()) {
+            PendingMessage message = pending.next();
+            message.waiting.clear(node.getNodeId());
+            if (message.waiting.isEmpty()) {
+                pending.remove();
+                if (message.lastDeliveryNanos >= 0) {
+                    completionLatency.record(message.lastDeliveryNanos - message.sentNanos);
+                }
+            }
+        }
+        if (wasCoordinator) {
+            failovers.add(new Failover(node.getNodeId(), scheduler.nanoTime()));
+        }
+    }
+
+    void onSent(ChatMessage message, Collection<Integer> recipients) {
+        messagesSent++;
+        BitSet waiting = new BitSet();
+        for (int id : recipients) {
+            if (!getNode(id).isCrashed()) {
+                waiting.set(id);
+            }
+        }
+        inFlight.put(message, new PendingMessage(scheduler.nanoTime(), waiting));
+    }
+
+    void onDelivered(SimNode node, ChatMessage message) {
+        deliveries++;
+        PendingMessage pending = inFlight.get(message);
+        if (pending == null) {
+            return;
+        }
+        long latency = scheduler.nanoTime() - pending.sentNanos;
+        deliveryLatency.record(latency);
+        pending.lastDeliveryNanos = scheduler.nanoTime();
+        pending.waiting.clear(node.getNodeId());
+        if (pending.waiting.isEmpty()) {
+            inFlight.remove(message);
+            completionLatency.record(latency);
+        }
+    }
+
+    void onSuspected(SimNode node, int peerId) {
+        for (Failover failover : failovers) {
+            if (failover.crashedId == peerId && failover.detectedNanos < 0) {
+                failover.detectedNanos = scheduler.nanoTime();
+                detectionLatency.record(failover.detectedNanos - failover.crashedNanos);
+            }
+        }
+    }
+
+    void onElectionMessageSent() {
+        lastElectionMessageNanos = scheduler.nanoTime();
+    }
+
+    // A failover is over once every live node follows the same live coordinator
+    void onCoordinatorChanged() {
+        Set<Integer> coordinators = new TreeSet<>();
+        for (SimNode node : liveNodes()) {
+            coordinators.add(node.getCoordinatorId());
+        }
+        if (coordinators.size() != 1 || getNode(coordinators.iterator().next()).isCrashed()) {
+            return;
+        }
+        if (bootAgreementNanos < 0) {
+            bootAgreementNanos = scheduler.nanoTime();
+        }
+        for (Failover failover : failovers) {
+            if (failover.recoveredNanos < 0) {
+                failover.recoveredNanos = scheduler.nanoTime();
+                failoverLatency.record(failover.recoveredNanos - failover.crashedNanos);
+            }
+        }
+    }
+
+    long getMessagesSent() {
+        return messagesSent;
+    }
+
+    long getDeliveries() {
+        return deliveries;
+    }
+
+    int getIncompleteMessages() {
+        return inFlight.size();
+    }
+
+    long getBootAgreementNanos() {
+        return bootAgreementNanos;
+    }
+
+    long getLastElectionMessageNanos() {
+        return lastElectionMessageNanos;
+    }
+
+    long getWallNanos() {
+        return wallNanos;
+    }
+
+    LatencyHistogram.Snapshot getDeliveryLatency() {
+        return deliveryLatency.snapshot();
+    }
+
+    LatencyHistogram.Snapshot getCompletionLatency() {
+        return completionLatency.snapshot();
+    }
+
+    LatencyHistogram.Snapshot getFailoverLatency() {
+        return failoverLatency.snapshot();
+    }
+
+    LatencyHistogram.Snapshot getDetectionLatency() {
+        return detectionLatency.snapshot();
+    }
+
+    List<Failover> getFailovers() {
+        return Collections.unmodifiableList(failovers);
+    }
+
+    static class PendingMessage {
+        final long sentNanos;
+        final BitSet waiting;
+        long lastDeliveryNanos = -1;
+
+        PendingMessage(long sentNanos, BitSet waiting) {
+            this.sentNanos = sentNanos;
+            this.waiting = waiting;
+        }
+    }
+
+    static class Failover {
+        final int crashedId;
+        final long crashedNanos;
+        long detectedNanos = -1;
+        long recoveredNanos = -1;
+
+        Failover(int crashedId, long crashedNanos) {
+            this.crashedId = crashedId;
+            this.crashedNanos = crashedNanos;
+        }
+    }
+
+    public static void main(String[] args) {
+        SimConfig config = new SimConfig();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String option = args[i];
+                if (option.equals("--boot-election")) {
+                    config.setBootElection(true);
+                    continue;
+                }
+                if (i + 1 >= args.length) {
+                    usage("Missing value for " + option);
+                    return;
+                }
+                String value = args[++i];
+                switch (option) {
+                    case "--nodes":
+                        config.setNodes(Integer.parseInt(value));
+                        break;
+                    case "--seed":
+                        config.setSeed(Long.parseLong(value));
+                        break;
+                    case "--duration":
+                        config.setDurationMillis(seconds(value));
+                        break;
+                    case "--order":
+                        config.setDeliveryMode(DeliveryMode.valueOf(value.toUpperCase()));
+                        break;
+                    case "--rate":
+                        config.setMessagesPerSecond(Double.parseDouble(value));
+                        break;
+                    case "--latency":
+                        config.setLatencyMicros(Long.parseLong(value));
+                        break;
+                    case "--jitter":
+                        config.setJitterMicros(Long.parseLong(value));
+                        break;
+                    case "--loss":
+                        config.setLossRate(Double.parseDouble(value));
+                        break;
+                    case "--heartbeat":
+                        config.setHeartbeatIntervalMillis(Long.parseLong(value));
+                        break;
+                    case "--crash": {
+                        String[] parts = value.split("@");
+                        config.addCrash(Integer.parseInt(parts[0]), seconds(parts[1]));
+                        break;
+                    }
+                    case "--crash-coordinator":
+                        config.addCoordinatorCrash(seconds(value));
+                        break;
+                    case "--partition": {
+                        String[] window = value.split(":");
+                        String[] times = window[0].split("-");
+                        config.addPartition(seconds(times[0]), seconds(times[1]), Double.parseDouble(window[1]));
+                        break;
+                    }
+                    default:
+                        usage("Unknown option: " + option);
+                        return;
+                }
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            usage("Invalid arguments: " + e.getMessage());
+            return;
+        }
+        for (long[] crash : config.getCrashes()) {
+            if (crash[0] < 1 || crash[0] > config.getNodes()) {
+                usage("No node " + crash[0] + " in a cluster of " + config.getNodes());
+                return;
+            }
+        }
+        System.out.print(new ClusterSimulator(config).run().format());
+    }
+
+    private static long seconds(String value) {
+        return Math.round(Double.parseDouble(value) * 1000);
+    }
+
+    private static void usage(String problem) {
+        System.out.println(problem);
+        System.out.println("Usage: java -jar chat-simulator.jar [--nodes N] [--seed S] [--duration SECONDS]"
+            + " [--order total|causal] [--rate MSG_PER_SEC] [--latency MICROS] [--jitter MICROS] [--loss RATE]"
+            + " [--heartbeat MS] [--crash ID@SECONDS]... [--crash-coordinator SECONDS]..."
+            + " [--partition FROM-TO:FRACTION]... [--boot-election]");
+        System.exit(1);
+    }
+}
@@ -0,0 +1,199 @@
+// SimConfig.java - Cluster size, workload, network and fault schedule of a simulation run
+package chat.sim;
+
+import chat.DeliveryMode;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Protocol timings default to the values ChatNodeImpl uses, so a simulated
+ * election or failover takes as long as it would on real nodes.
+ */
+public class SimConfig {
+    private int nodes = 100;
+    private long seed = 1;
+    private long durationMillis = 10_000;
+    private DeliveryMode deliveryMode = DeliveryMode.TOTAL;
+    private double messagesPerSecond = 50;
+    private long latencyMicros = 500;
+    private long jitterMicros = 250;
+    private double lossRate;
+    private boolean bootElection;
+    private final List<long[]> crashes = new ArrayList<>();
+    private final List<Long> coordinatorCrashes = new ArrayList<>();
+    private final List<double[]> partitions = new ArrayList<>();
+
+    // Node timings, as in ChatNodeImpl
+    private long heartbeatIntervalMillis = 200;
+    private double phiThreshold = 8.0;
+    private double minHeartbeatStdDevMillis = 50;
+    private double acceptableHeartbeatPauseMillis = 150;
+    private long suspectTimeoutMillis = 3000;
+    private long electionOkTimeoutMillis = 500;
+    private long electionCoordinatorTimeoutMillis = 2000;
+    private long holdBackTimeoutMillis = 500;
+    private long beaconDelayMillis = 20;
+    private int causalBufferLimit = 10_000;
+
+    public int getNodes() {
+        return nodes;
+    }
+
+    public SimConfig setNodes(int nodes) {
+        this.nodes = nodes;
+        return this;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public SimConfig setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public SimConfig setDurationMillis(long durationMillis) {
+        this.durationMillis = durationMillis;
+        return this;
+    }
+
+    public DeliveryMode getDeliveryMode() {
+        return deliveryMode;
+    }
+
+    // Total and causal order are simulated; the sequencer and gossip modes are not
+    public SimConfig setDeliveryMode(DeliveryMode deliveryMode) {
+        if (deliveryMode != DeliveryMode.TOTAL && deliveryMode != DeliveryMode.CAUSAL) {
+            throw new IllegalArgumentException("The simulator supports total and causal order, not " + deliveryMode);
+        }
+        this.deliveryMode = deliveryMode;
+        return this;
+    }
+
+    // Chat messages sent per second across the whole cluster, each from a random live node
+    public double getMessagesPerSecond() {
+        return messagesPerSecond;
+    }
+
+    public SimConfig setMessagesPerSecond(double messagesPerSecond) {
+        this.messagesPerSecond = messagesPerSecond;
+        return this;
+    }
+
+    // One-way delay of every packet: latency plus a uniformly drawn share of the jitter
+    public long getLatencyMicros() {
+        return latencyMicros;
+    }
+
+    public SimConfig setLatencyMicros(long latencyMicros) {
+        this.latencyMicros = latencyMicros;
+        return this;
+    }
+
+    public long getJitterMicros() {
+        return jitterMicros;
+    }
+
+    public SimConfig setJitterMicros(long jitterMicros) {
+        this.jitterMicros = jitterMicros;
+        return this;
+    }
+
+    public double getLossRate() {
+        return lossRate;
+    }
+
+    public SimConfig setLossRate(double lossRate) {
+        this.lossRate = lossRate;
+        return this;
+    }
+
+    // Every node starts an election at time zero instead of agreeing on the highest node up front
+    public boolean isBootElection() {
+        return bootElection;
+    }
+
+    public SimConfig setBootElection(boolean bootElection) {
+        this.bootElection = bootElection;
+        return this;
+    }
+
+    public List<long[]> getCrashes() {
+        return crashes;
+    }
+
+    public SimConfig addCrash(int nodeId, long atMillis) {
+        crashes.add(new long[] {nodeId, atMillis});
+        return this;
+    }
+
+    public List<Long> getCoordinatorCrashes() {
+        return coordinatorCrashes;
+    }
+
+    // Crashes whichever node is coordinator at that moment
+    public SimConfig addCoordinatorCrash(long atMillis) {
+        coordinatorCrashes.add(atMillis);
+        return this;
+    }
+
+    public List<double[]> getPartitions() {
+        return partitions;
+    }
+
+    // Cuts the lowest `fraction` of node IDs off from the rest between the two times
+    public SimConfig addPartition(long fromMillis, long toMillis, double fraction) {
+        partitions.add(new double[] {fromMillis, toMillis, fraction});
+        return this;
+    }
+
+    public long getHeartbeatIntervalMillis() {
+        return heartbeatIntervalMillis;
+    }
+
+    public SimConfig setHeartbeatIntervalMillis(long heartbeatIntervalMillis) {
+        this.heartbeatIntervalMillis = heartbeatIntervalMillis;
+        return this;
+    }
+
+    public double getPhiThreshold() {
+        return phiThreshold;
+    }
+
+    public double getMinHeartbeatStdDevMillis() {
+        return minHeartbeatStdDevMillis;
+    }
+
+    public double getAcceptableHeartbeatPauseMillis() {
+        return acceptableHeartbeatPauseMillis;
+    }
+
+    public long getSuspectTimeoutMillis() {
+        return suspectTimeoutMillis;
+    }
+
+    public long getElectionOkTimeoutMillis() {
+        return electionOkTimeoutMillis;
+    }
+
+    public long getElectionCoordinatorTimeoutMillis() {
+        return electionCoordinatorTimeoutMillis;
+    }
+
+    public long getHoldBackTimeoutMillis() {
+        return holdBackTimeoutMillis;
+    }
+
+    public long getBeaconDelayMillis() {
+        return beaconDelayMillis;
+    }
+
+    public int getCausalBufferLimit() {
+        return causalBufferLimit;
+    }
+}
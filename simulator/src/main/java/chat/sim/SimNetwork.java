@@ -0,0 +1,161 @@
+// SimNetwork.java - Simulated links with seeded latency, loss, partitions and crashed nodes
+package chat.sim;
+
+import chat.PeerSender;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Two kinds of traffic, matching what the node does over RMI or NIO:
+ * - send() is a single call (ping, election message). A lost or partitioned
+ *   one is simply gone, as when the remote call fails.
+ * - sendReliable() is a chat message or clock beacon going through a peer's
+ *   send window. Lost attempts are retried with PeerSender's backoff, and each
+ *   link stays FIFO: later messages wait behind a message being retried.
+ * Packets to a crashed node vanish. Packets across a partition are dropped;
+ * retried ones try again until the partition heals or a side crashes.
+ */
+public class SimNetwork {
+    private final SimScheduler scheduler;
+    private final Random random;
+    private final long latencyNanos;
+    private final long jitterNanos;
+    private final double lossRate;
+    private final Set<Integer> crashed = new HashSet<>();
+    private final Map<Integer, Map<Integer, Link>> links = new HashMap<>();
+    private Set<Integer> isolated;
+
+    private long packetsSent;
+    private long packetsLost;
+    private long packetsBlocked;
+    private long retransmissions;
+
+    public SimNetwork(SimScheduler scheduler, Random random, long latencyMicros, long jitterMicros, double lossRate) {
+        this.scheduler = scheduler;
+        this.random = random;
+        this.latencyNanos = TimeUnit.MICROSECONDS.toNanos(latencyMicros);
+        this.jitterNanos = TimeUnit.MICROSECONDS.toNanos(jitterMicros);
+        this.lossRate = lossRate;
+    }
+
+    public void send(int from, int to, Runnable deliver) {
+        packetsSent++;
+        if (isBlocked(from, to)) {
+            packetsBlocked++;
+            return;
+        }
+        if (isLost()) {
+            packetsLost++;
+            return;
+        }
+        scheduler.schedule(() -> arrive(to, deliver), latency(), TimeUnit.NANOSECONDS);
+    }
+
+    public void sendReliable(int from, int to, Runnable deliver) {
+        if (from == to) {
+            scheduler.execute(() -> arrive(to, deliver));
+            return;
+        }
+        Link link = links.computeIfAbsent(from, key -> new HashMap<>()).computeIfAbsent(to, key -> new Link());
+        if (link.retrying) {
+            link.waiting.add(deliver);
+        } else {
+            transmit(from, to, link, deliver, PeerSender.RETRY_INITIAL_BACKOFF_MS);
+        }
+    }
+
+    public void crash(int nodeId) {
+        crashed.add(nodeId);
+    }
+
+    public boolean isCrashed(int nodeId) {
+        return crashed.contains(nodeId);
+    }
+
+    // Cuts the given nodes off from everyone else until heal()
+    public void partition(Set<Integer> side) {
+        isolated = new HashSet<>(side);
+    }
+
+    public void heal() {
+        isolated = null;
+    }
+
+    public long getPacketsSent() {
+        return packetsSent;
+    }
+
+    public long getPacketsLost() {
+        return packetsLost;
+    }
+
+    public long getPacketsBlocked() {
+        return packetsBlocked;
+    }
+
+    public long getRetransmissions() {
+        return retransmissions;
+    }
+
+    private void transmit(int from, int to, Link link, Runnable deliver, long backoffMillis) {
+        if (crashed.contains(from) || crashed.contains(to)) {
+            link.waiting.clear();
+            link.retrying = false;
+            return;
+        }
+        packetsSent++;
+        boolean blocked = isBlocked(from, to);
+        if (blocked || isLost()) {
+            if (blocked) {
+                packetsBlocked++;
+            } else {
+                packetsLost++;
+            }
+            retransmissions++;
+            // Messages sent meanwhile wait behind this one
+            link.retrying = true;
+            long next = Math.min(backoffMillis * 2, PeerSender.RETRY_MAX_BACKOFF_MS);
+            scheduler.schedule(() -> transmit(from, to, link, deliver, next), backoffMillis, TimeUnit.MILLISECONDS);
+            return;
+        }
+        long arrival = Math.max(scheduler.nanoTime() + latency(), link.lastArrival);
+        link.lastArrival = arrival;
+        scheduler.schedule(() -> arrive(to, deliver), arrival - scheduler.nanoTime(), TimeUnit.NANOSECONDS);
+        if (link.retrying) {
+            link.retrying = false;
+            Runnable waiting;
+            while (!link.retrying && (waiting = link.waiting.poll()) != null) {
+                transmit(from, to, link, waiting, PeerSender.RETRY_INITIAL_BACKOFF_MS);
+            }
+        }
+    }
+
+    private void arrive(int to, Runnable deliver) {
+        if (!crashed.contains(to)) {
+            deliver.run();
+        }
+    }
+
+    private boolean isBlocked(int from, int to) {
+        return crashed.contains(to) || (isolated != null && isolated.contains(from) != isolated.contains(to));
+    }
+
+    private boolean isLost() {
+        return lossRate > 0 && random.nextDouble() < lossRate;
+    }
+
+    private long latency() {
+        return latencyNanos + (jitterNanos > 0 ? (long) (random.nextDouble() * jitterNanos) : 0);
+    }
+
+    private static class Link {
+        final ArrayDeque<Runnable> waiting = new ArrayDeque<>();
+        boolean retrying;
+        long lastArrival;
+    }
+}
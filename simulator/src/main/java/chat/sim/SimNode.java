@@ -0,0 +1,313 @@
+// SimNode.java - One chat node's protocol state machines, driven by simulated time and network
+package chat.sim;
+
+import chat.BullyElection;
+import chat.CausalBuffer;
+import chat.ChatMessage;
+import chat.DeliveryMode;
+import chat.ElectionMessage;
+import chat.HoldBackQueue;
+import chat.LamportClock;
+import chat.PhiAccrualFailureDetector;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Wires the components ChatNodeImpl wires - Lamport clock, hold-back queue or
+ * causal buffer, phi-accrual failure detector and bully election - the same
+ * way, but timers run on the simulation's scheduler and remote calls are
+ * packets on the simulated network. Membership is simplified: every node
+ * pings the whole roster, a peer suspected for the suspect timeout leaves this
+ * node's view (as gossip would declare it dead), and it comes back once it
+ * answers a ping again.
+ */
+public class SimNode implements BullyElection.Listener {
+    private static final long DRAIN_INTERVAL_MS = 50;
+
+    private final int nodeId;
+    private final String nodeName;
+    private final ClusterSimulator cluster;
+    private final SimConfig config;
+    private final SimScheduler scheduler;
+    private final SimNetwork network;
+    private final Random random;
+    private final LamportClock clock = new LamportClock();
+    private final Set<Integer> members = new TreeSet<>();
+    private final Map<Integer, Long> suspectedSince = new HashMap<>();
+    private final PhiAccrualFailureDetector detector;
+    private final BullyElection election;
+    private final HoldBackQueue holdBackQueue;
+    private final CausalBuffer causalBuffer;
+    private ScheduledFuture<?> drainTask;
+    private int coordinatorId;
+    private boolean crashed;
+    private boolean beaconScheduled;
+    private long outgoingSequence;
+    private long suspicions;
+    private long falseSuspicions;
+
+    public SimNode(int nodeId, Collection<Integer> roster, ClusterSimulator cluster, Random random) {
+        this.nodeId = nodeId;
+        this.nodeName = "node-" + nodeId;
+        this.cluster = cluster;
+        this.config = cluster.getConfig();
+        this.scheduler = cluster.getScheduler();
+        this.network = cluster.getNetwork();
+        this.random = random;
+        this.members.addAll(roster);
+        this.detector = new PhiAccrualFailureDetector(config.getPhiThreshold(), config.getMinHeartbeatStdDevMillis(),
+            config.getAcceptableHeartbeatPauseMillis(), config.getHeartbeatIntervalMillis());
+        this.election = new BullyElection(nodeId, new BullyElection.Messenger() {
+            @Override
+            public Collection<Integer> peers() {
+                return members;
+            }
+
+            @Override
+            public void send(int peerId, ElectionMessage message) {
+                SimNode target = cluster.getNode(peerId);
+                cluster.onElectionMessageSent();
+                network.send(nodeId, peerId, () -> target.onElectionMessage(message));
+            }
+        }, this, scheduler, config.getElectionOkTimeoutMillis(), config.getElectionCoordinatorTimeoutMillis());
+        this.holdBackQueue = new HoldBackQueue(nodeId, members, clock, config.getHoldBackTimeoutMillis(),
+            scheduler::nanoTime, this::deliver);
+        this.causalBuffer = new CausalBuffer(nodeId, config.getCausalBufferLimit(), this::deliver);
+        this.coordinatorId = nodeId;
+    }
+
+    public void start() {
+        if (config.isBootElection()) {
+            scheduler.execute(election::startElection);
+        } else {
+            int highest = ((TreeSet<Integer>) members).last();
+            election.observeCoordinator(highest, 1);
+            coordinatorId = highest;
+        }
+        if (config.getDeliveryMode() == DeliveryMode.TOTAL) {
+            drainTask = scheduler.scheduleWithFixedDelay(holdBackQueue::drain, DRAIN_INTERVAL_MS, DRAIN_INTERVAL_MS,
+                TimeUnit.MILLISECONDS);
+        }
+        scheduleHeartbeat();
+    }
+
+    public void crash() {
+        crashed = true;
+        network.crash(nodeId);
+        if (drainTask != null) {
+            drainTask.cancel(false);
+        }
+    }
+
+    public int getNodeId() {
+        return nodeId;
+    }
+
+    public int getCoordinatorId() {
+        return coordinatorId;
+    }
+
+    public boolean isCrashed() {
+        return crashed;
+    }
+
+    public BullyElection getElection() {
+        return election;
+    }
+
+    public long getSuspicions() {
+        return suspicions;
+    }
+
+    public long getFalseSuspicions() {
+        return falseSuspicions;
+    }
+
+    public int getMemberCount() {
+        return members.size();
+    }
+
+    public long getDeliveredByTimeout() {
+        return holdBackQueue.getDeliveredByTimeoutCount();
+    }
+
+    public long getDeliveredLate() {
+        return holdBackQueue.getDeliveredLateCount();
+    }
+
+    public int getHeldBack() {
+        return config.getDeliveryMode() == DeliveryMode.TOTAL ? holdBackQueue.size() : causalBuffer.size();
+    }
+
+    // Broadcasts a chat message to every member this node knows, itself included
+    public void send(String text) {
+        if (crashed) {
+            return;
+        }
+        boolean total = config.getDeliveryMode() == DeliveryMode.TOTAL;
+        ChatMessage message;
+        if (total) {
+            // Queued here as it is stamped, like ChatNodeImpl, rather than looped back through the network
+            message = holdBackQueue.addOwn(timestamp -> newMessage(text, timestamp));
+        } else {
+            message = newMessage(text, clock.tick());
+            causalBuffer.stampOutgoing(message);
+        }
+        cluster.onSent(message, members);
+        for (int peer : members) {
+            if (peer == nodeId && total) {
+                continue;
+            }
+            SimNode target = cluster.getNode(peer);
+            network.sendReliable(nodeId, peer, () -> target.receive(message));
+        }
+        if (total) {
+            holdBackQueue.drain();
+        }
+    }
+
+    private ChatMessage newMessage(String text, long timestamp) {
+        ChatMessage message = new ChatMessage(text, nodeName, nodeId, timestamp);
+        message.setSenderSequence(++outgoingSequence);
+        message.setOriginTimeMillis(scheduler.currentTimeMillis());
+        return message;
+    }
+
+    private void receive(ChatMessage message) {
+        if (crashed) {
+            return;
+        }
+        if (config.getDeliveryMode() == DeliveryMode.CAUSAL) {
+            if (!message.isClockBeacon()) {
+                clock.update(message.getLogicalTimestamp());
+                causalBuffer.receive(message);
+            }
+            return;
+        }
+        if (message.isClockBeacon()) {
+            holdBackQueue.advance(message.getSenderID(), message.getLogicalTimestamp());
+        } else {
+            holdBackQueue.add(message);
+            if (message.getSenderID() != nodeId) {
+                scheduleClockBeacon();
+            }
+        }
+        holdBackQueue.drain();
+    }
+
+    private void deliver(ChatMessage message) {
+        cluster.onDelivered(this, message);
+    }
+
+    private void scheduleClockBeacon() {
+        if (beaconScheduled) {
+            return;
+        }
+        beaconScheduled = true;
+        scheduler.schedule(() -> {
+            beaconScheduled = false;
+            if (crashed) {
+                return;
+            }
+            ChatMessage beacon = ChatMessage.clockBeacon(nodeName, nodeId, clock.get());
+            for (int peer : members) {
+                if (peer != nodeId) {
+                    SimNode target = cluster.getNode(peer);
+                    network.sendReliable(nodeId, peer, () -> target.receive(beacon));
+                }
+            }
+        }, config.getBeaconDelayMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void onElectionMessage(ElectionMessage message) {
+        if (!crashed) {
+            election.handle(message);
+        }
+    }
+
+    @Override
+    public void onCoordinatorElected(int newCoordinatorId, long epoch, long convergenceMillis) {
+        coordinatorId = newCoordinatorId;
+        cluster.onCoordinatorChanged();
+    }
+
+    private void scheduleHeartbeat() {
+        // +/-20% jitter keeps nodes from pinging in lockstep, as in HeartbeatMonitor
+        long interval = config.getHeartbeatIntervalMillis();
+        long delayMicros = interval * 800 + (long) (random.nextDouble() * interval * 400);
+        scheduler.schedule(this::heartbeatRound, delayMicros, TimeUnit.MICROSECONDS);
+    }
+
+    private void heartbeatRound() {
+        if (crashed) {
+            return;
+        }
+        for (SimNode peer : cluster.getNodes()) {
+            if (peer != this) {
+                network.send(nodeId, peer.nodeId, () -> peer.onPing(this));
+            }
+        }
+        evaluate();
+        scheduleHeartbeat();
+    }
+
+    private void onPing(SimNode from) {
+        if (!crashed) {
+            network.send(nodeId, from.nodeId, () -> from.onPong(nodeId));
+        }
+    }
+
+    private void onPong(int peerId) {
+        if (crashed) {
+            return;
+        }
+        detector.heartbeat(peerId, scheduler.currentTimeMillis());
+        if (members.add(peerId) && peerId > nodeId && coordinatorId == nodeId) {
+            // A higher node is back (e.g. after a partition healed) and must take over
+            election.startElection();
+        }
+    }
+
+    private void evaluate() {
+        long now = scheduler.currentTimeMillis();
+        Iterator<Integer> peers = members.iterator();
+        while (peers.hasNext()) {
+            int peer = peers.next();
+            if (peer == nodeId) {
+                continue;
+            }
+            detector.watch(peer, now);
+            double phi = detector.phi(peer, now);
+            if (phi >= detector.getThreshold()) {
+                Long since = suspectedSince.putIfAbsent(peer, now);
+                if (since == null) {
+                    suspicions++;
+                    cluster.onSuspected(this, peer);
+                    if (peer == coordinatorId && coordinatorId != nodeId) {
+                        election.startElection();
+                    }
+                } else if (now - since >= config.getSuspectTimeoutMillis()) {
+                    // Declared dead: stop waiting for it in the hold-back queue and causal buffer
+                    peers.remove();
+                    suspectedSince.remove(peer);
+                    holdBackQueue.forgetPeer(peer);
+                    causalBuffer.forgetSender(peer);
+                    detector.remove(peer);
+                    holdBackQueue.drain();
+                }
+            } else if (suspectedSince.remove(peer) != null) {
+                falseSuspicions++;
+                if (peer > nodeId && coordinatorId == nodeId) {
+                    election.startElection();
+                }
+            }
+        }
+    }
+}
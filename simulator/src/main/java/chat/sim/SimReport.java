@@ -0,0 +1,138 @@
+// SimReport.java - Throughput, latency, failover and election statistics of a simulation run
+package chat.sim;
+
+import chat.LatencyHistogram;
+
+public class SimReport {
+    private final SimConfig config;
+    private final long virtualMillis;
+    private final long eventsExecuted;
+    private final long wallNanos;
+    private final long messagesSent;
+    private final long deliveries;
+    private final int incompleteMessages;
+    private final LatencyHistogram.Snapshot deliveryLatency;
+    private final LatencyHistogram.Snapshot completionLatency;
+    private final LatencyHistogram.Snapshot detectionLatency;
+    private final LatencyHistogram.Snapshot failoverLatency;
+    private final long bootAgreementNanos;
+    private final long lastElectionMessageNanos;
+    private final int coordinatorCrashes;
+    private final long unrecovered;
+    private final int liveNodes;
+    private final long finalCoordinators;
+    private long electionsStarted;
+    private long electionsSuppressed;
+    private long electionMessages;
+    private long suspicions;
+    private long falseSuspicions;
+    private long deliveredByTimeout;
+    private long deliveredLate;
+    private long heldBack;
+    private final long packetsSent;
+    private final long packetsLost;
+    private final long packetsBlocked;
+    private final long retransmissions;
+
+    SimReport(ClusterSimulator simulator) {
+        SimScheduler scheduler = simulator.getScheduler();
+        SimNetwork network = simulator.getNetwork();
+        this.config = simulator.getConfig();
+        this.virtualMillis = scheduler.nanoTime() / 1_000_000;
+        this.eventsExecuted = scheduler.getExecuted();
+        this.wallNanos = simulator.getWallNanos();
+        this.messagesSent = simulator.getMessagesSent();
+        this.deliveries = simulator.getDeliveries();
+        this.incompleteMessages = simulator.getIncompleteMessages();
+        this.deliveryLatency = simulator.getDeliveryLatency();
+        this.completionLatency = simulator.getCompletionLatency();
+        this.detectionLatency = simulator.getDetectionLatency();
+        this.failoverLatency = simulator.getFailoverLatency();
+        this.bootAgreementNanos = simulator.getBootAgreementNanos();
+        this.lastElectionMessageNanos = simulator.getLastElectionMessageNanos();
+        this.coordinatorCrashes = simulator.getFailovers().size();
+        this.unrecovered = simulator.getFailovers().stream().filter(f -> f.recoveredNanos < 0).count();
+        int live = 0;
+        for (SimNode node : simulator.getNodes()) {
+            electionsStarted += node.getElection().getElectionsStarted();
+            electionsSuppressed += node.getElection().getElectionsSuppressed();
+            electionMessages += node.getElection().getMessagesSent();
+            suspicions += node.getSuspicions();
+            falseSuspicions += node.getFalseSuspicions();
+            deliveredByTimeout += node.getDeliveredByTimeout();
+            deliveredLate += node.getDeliveredLate();
+            if (!node.isCrashed()) {
+                live++;
+                heldBack += node.getHeldBack();
+            }
+        }
+        this.liveNodes = live;
+        this.finalCoordinators = simulator.getNodes().stream().filter(n -> !n.isCrashed())
+            .mapToInt(SimNode::getCoordinatorId).distinct().count();
+        this.packetsSent = network.getPacketsSent();
+        this.packetsLost = network.getPacketsLost();
+        this.packetsBlocked = network.getPacketsBlocked();
+        this.retransmissions = network.getRetransmissions();
+    }
+
+    public long getDeliveries() {
+        return deliveries;
+    }
+
+    public LatencyHistogram.Snapshot getDeliveryLatency() {
+        return deliveryLatency;
+    }
+
+    public LatencyHistogram.Snapshot getFailoverLatency() {
+        return failoverLatency;
+    }
+
+    public long getElectionMessages() {
+        return electionMessages;
+    }
+
+    public String format() {
+        StringBuilder sb = new StringBuilder();
+        double virtualSeconds = Math.max(virtualMillis, 1) / 1000.0;
+        sb.append(config.getNodes()).append(" nodes, ").append(config.getDeliveryMode()).append(" order, seed ")
+            .append(config.getSeed()).append(", ").append(virtualMillis / 1000.0).append("s simulated\n");
+        sb.append("  workload: ").append(messagesSent).append(" messages sent, ").append(deliveries)
+            .append(String.format(" deliveries (%.0f/s), %d not delivered everywhere%n", deliveries / virtualSeconds,
+                incompleteMessages));
+        sb.append("  delivery latency: ").append(latency(deliveryLatency)).append('\n');
+        sb.append("  delivered to all: ").append(latency(completionLatency)).append('\n');
+        sb.append("  hold-back: ").append(deliveredByTimeout).append(" released by timeout, ").append(deliveredLate)
+            .append(" out of order, ").append(heldBack).append(" still held\n");
+        if (config.isBootElection()) {
+            sb.append("  boot election: ").append(bootAgreementNanos < 0 ? "no agreement"
+                : "every node agreed after " + millis(bootAgreementNanos)).append(", last election message at ")
+                .append(millis(lastElectionMessageNanos)).append('\n');
+        }
+        sb.append("  coordinator crashes: ").append(coordinatorCrashes).append(", not recovered ").append(unrecovered)
+            .append('\n');
+        sb.append("    detection: ").append(latency(detectionLatency)).append('\n');
+        sb.append("    failover: ").append(latency(failoverLatency)).append('\n');
+        sb.append("  elections: started ").append(electionsStarted).append(", suppressed ").append(electionsSuppressed)
+            .append(", messages ").append(electionMessages).append('\n');
+        sb.append("  suspicions: ").append(suspicions).append(" (false ").append(falseSuspicions).append(")\n");
+        sb.append("  end state: ").append(liveNodes).append(" live nodes following ").append(finalCoordinators)
+            .append(finalCoordinators == 1 ? " coordinator\n" : " coordinators\n");
+        sb.append("  network: ").append(packetsSent).append(" packets, lost ").append(packetsLost).append(", blocked ")
+            .append(packetsBlocked).append(", retransmitted ").append(retransmissions).append('\n');
+        sb.append(String.format("  %d events in %.2fs wall time (%.1fx real time)%n", eventsExecuted, wallNanos / 1e9,
+            virtualMillis / Math.max(wallNanos / 1e6, 0.001)));
+        return sb.toString();
+    }
+
+    private static String latency(LatencyHistogram.Snapshot snapshot) {
+        if (snapshot.getCount() == 0) {
+            return "no samples";
+        }
+        return snapshot.getCount() + " samples, p50 " + millis(snapshot.getP50Nanos()) + ", p99 "
+            + millis(snapshot.getP99Nanos()) + ", max " + millis(snapshot.getMaxNanos());
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.1fms", nanos / 1e6);
+    }
+}
@@ -0,0 +1,163 @@
+// SimScheduler.java - Virtual clock and single-threaded event queue for the cluster simulator
+package chat.sim;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Tasks run one at a time on the thread that calls runUntil, ordered by due
+ * time and then by the order they were scheduled, so a run depends only on
+ * what was scheduled and never on thread timing. Time only moves when the
+ * next task is taken, so idle stretches cost nothing. It is a
+ * ScheduledExecutorService, so protocol components that take a scheduler
+ * (BullyElection) run on it unchanged.
+ */
+public class SimScheduler extends AbstractExecutorService implements ScheduledExecutorService {
+    // The virtual wall clock starts at a fixed instant so runs are reproducible
+    private static final long EPOCH_MILLIS = 1_700_000_000_000L;
+
+    private final PriorityQueue<Task<?>> queue = new PriorityQueue<>();
+    private long nowNanos;
+    private long nextSequence;
+    private long executed;
+    private boolean shutdown;
+
+    public long nanoTime() {
+        return nowNanos;
+    }
+
+    public long currentTimeMillis() {
+        return EPOCH_MILLIS + nowNanos / 1_000_000;
+    }
+
+    public long getExecuted() {
+        return executed;
+    }
+
+    public int getPending() {
+        return queue.size();
+    }
+
+    // Runs every task due up to the given virtual time and leaves the clock there
+    public void runUntil(long nanos) {
+        Task<?> task;
+        while ((task = queue.peek()) != null && task.time <= nanos) {
+            queue.poll();
+            nowNanos = task.time;
+            executed++;
+            task.run();
+        }
+        nowNanos = Math.max(nowNanos, nanos);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        schedule(command, 0, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        return add(new Task<>(Executors.callable(command), delay(delay, unit), 0));
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        return add(new Task<>(callable, delay(delay, unit), 0));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        return add(new Task<>(Executors.callable(command), delay(initialDelay, unit), unit.toNanos(period)));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+        return add(new Task<>(Executors.callable(command), delay(initialDelay, unit), -unit.toNanos(delay)));
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown = true;
+        List<Runnable> pending = new ArrayList<>(queue);
+        queue.clear();
+        return pending;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return shutdown && queue.isEmpty();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) {
+        return isTerminated();
+    }
+
+    private long delay(long delay, TimeUnit unit) {
+        return nowNanos + Math.max(0, unit.toNanos(delay));
+    }
+
+    private <V> Task<V> add(Task<V> task) {
+        if (shutdown) {
+            throw new RejectedExecutionException("Simulation scheduler is shut down");
+        }
+        queue.add(task);
+        return task;
+    }
+
+    private class Task<V> extends FutureTask<V> implements ScheduledFuture<V> {
+        private long time;
+        private long sequence = nextSequence++;
+        // 0 runs once; > 0 is a fixed rate, < 0 a fixed delay
+        private final long period;
+
+        Task(Callable<V> callable, long time, long period) {
+            super(callable);
+            this.time = time;
+            this.period = period;
+        }
+
+        @Override
+        public void run() {
+            if (period == 0) {
+                super.run();
+            } else if (runAndReset() && !shutdown) {
+                time = period > 0 ? time + period : nowNanos - period;
+                sequence = nextSequence++;
+                queue.add(this);
+            }
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(time - nowNanos, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            Task<?> task = (Task<?>) other;
+            int byTime = Long.compare(time, task.time);
+            return byTime != 0 ? byTime : Long.compare(sequence, task.sequence);
+        }
+    }
+}